@@ -16,7 +16,9 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
+import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
@@ -33,6 +35,9 @@ import com.ibm.streams.operator.metrics.Metric;
 import com.ibm.streams.operator.metrics.Metric.Kind;
 import com.ibm.streams.operator.model.CustomMetric;
 import com.ibm.streams.operator.model.Parameter;
+import com.ibm.streamsx.monitoring.jmx.internal.DelegatingConnection;
+import com.ibm.streamsx.monitoring.jmx.internal.JmxConnectionPool;
+import com.ibm.streamsx.monitoring.jmx.internal.NotificationRegistry;
 
 /**
  * Abstract class for the JMX operators.
@@ -106,10 +111,19 @@ public abstract class AbstractJmxOperator extends AbstractOperator {
 	 * The base directory of the application
 	 */	
 	protected File baseDir = null;
+
+	/**
+	 * The primary MBean server connection, which forwards the calls to the
+	 * connection of the current JMX connector.
+	 */
+	private DelegatingConnection _primaryConnection = null;
 	
 	private Metric isConnected;
 	private Metric nJMXConnectionAttempts;
 	private Metric nBrokenJMXConnections;
+	private Metric nScanOverruns;
+	private Metric lastScanDurationMs;
+	private Metric maxScanDurationMs;
 
     public Metric get_nJMXConnectionAttempts() {
         return this.nJMXConnectionAttempts;
@@ -122,6 +136,18 @@ public abstract class AbstractJmxOperator extends AbstractOperator {
     public Metric get_nBrokenJMXConnections() {
         return this.nBrokenJMXConnections;
     }
+
+    public Metric get_nScanOverruns() {
+        return this.nScanOverruns;
+    }
+
+    public Metric get_lastScanDurationMs() {
+        return this.lastScanDurationMs;
+    }
+
+    public Metric get_maxScanDurationMs() {
+        return this.maxScanDurationMs;
+    }
     
     @CustomMetric(name="nBrokenJMXConnections", kind = Kind.COUNTER, description = "Number of broken JMX connections that have occurred. Notifications may have been lost.")
     public void set_nConnectionLosts(Metric nBrokenJMXConnections) {
@@ -138,6 +164,21 @@ public abstract class AbstractJmxOperator extends AbstractOperator {
         this.isConnected = isConnected;
     }
 
+    @CustomMetric(name="nScanOverruns", kind = Kind.COUNTER, description = "Number of scan cycles that took longer than the scan period.")
+    public void set_nScanOverruns(Metric nScanOverruns) {
+        this.nScanOverruns = nScanOverruns;
+    }
+
+    @CustomMetric(name="lastScanDurationMs", kind = Kind.GAUGE, description = "Duration of the last scan cycle in milliseconds.")
+    public void set_lastScanDurationMs(Metric lastScanDurationMs) {
+        this.lastScanDurationMs = lastScanDurationMs;
+    }
+
+    @CustomMetric(name="maxScanDurationMs", kind = Kind.GAUGE, description = "Maximum duration of a scan cycle in milliseconds.")
+    public void set_maxScanDurationMs(Metric maxScanDurationMs) {
+        this.maxScanDurationMs = maxScanDurationMs;
+    }
+
 	@Parameter(
 			optional=true,
 			description=AbstractJmxOperator.DESC_PARAM_CONNECTION_URL
@@ -349,24 +390,90 @@ public abstract class AbstractJmxOperator extends AbstractOperator {
 		/*
 		 * Setup the JMX connector and MBean connection.
 		 */
-		String[] urls = connectionURL.split(","); // comma separated list of JMX servers is supported
-		// In Streaming Analytics service the variable urls contains 3 JMX servers. The third JMX is the prefered one. 
+		final String[] urls = connectionURL.split(","); // comma separated list of JMX servers is supported
+		JMXConnector previousConnector = _operatorConfiguration.get_jmxConnector();
+		try {
+			_operatorConfiguration.set_jmxConnector(connect(urls, env));
+			get_isConnected().setValue(1);
+		} catch (IOException e) {
+			get_isConnected().setValue(0);
+			throw e;
+		}
+		if (previousConnector != null) {
+			try {
+				previousConnector.close();
+			}
+			catch (IOException ignore) {
+				// The previous connection is broken anyway.
+			}
+		}
+		/*
+		 * The handlers use the delegating connection, so their MXBean proxies
+		 * stay valid if the connection is replaced after a reconnect.
+		 */
+		if (_primaryConnection == null) {
+			_primaryConnection = new DelegatingConnection(_operatorConfiguration.get_jmxConnector().getMBeanServerConnection());
+			// Count the JMX calls for the scan statistics.
+			_operatorConfiguration.set_mbeanServerConnection(_operatorConfiguration.get_scanStatistics().newCountingConnection(_primaryConnection.newConnection()));
+			_operatorConfiguration.set_notificationRegistry(new NotificationRegistry(_operatorConfiguration.get_mbeanServerConnection()));
+		}
+		else {
+			_primaryConnection.setDelegate(_operatorConfiguration.get_jmxConnector().getMBeanServerConnection());
+		}
+
+		/*
+		 * Setup the pool of JMX connections that are used for the MXBean
+		 * proxies. The pooled connections are established on first use and
+		 * reconnect themselves, so the pool is kept after a reconnect.
+		 */
+		if (_operatorConfiguration.get_jmxConnectionPool() != null) {
+			return;
+		}
+		final HashMap<String, Object> poolEnv = env;
+		_operatorConfiguration.set_jmxConnectionPool(new JmxConnectionPool(
+				_operatorConfiguration.get_mbeanServerConnection(),
+				_operatorConfiguration.get_jmxConnections(),
+				new Callable<JMXConnector>() {
+
+					@Override
+					public JMXConnector call() throws Exception {
+						return connect(urls, poolEnv);
+					}
+
+				},
+				_operatorConfiguration.get_scanStatistics()));
+	}
+
+	/**
+	 * Connect to the first available JMX server.
+	 * 
+	 * @param urls
+	 * The JMX server URLs. In Streaming Analytics service, the URLs contain
+	 * 3 JMX servers. The last JMX server is the preferred one.
+	 * 
+	 * @param env
+	 * The JMX environment settings.
+	 * 
+	 * @return
+	 * The connected JMX connector.
+	 * 
+	 * @throws IOException
+	 * Throws if no connection can be established.
+	 */
+	private JMXConnector connect(String[] urls, Map<String, Object> env) throws IOException {
 		for (int i=urls.length-1; i>=0; i--) {
 			try {
 				get_nJMXConnectionAttempts().increment(); // update metric
 				_trace.info("Connect to : " + urls[i]);
-				_operatorConfiguration.set_jmxConnector(JMXConnectorFactory.connect(new JMXServiceURL(urls[i]), env));
-				get_isConnected().setValue(1);
-				break; // exit loop here since a valid connection is established, otherwise exception is thrown.
+				return JMXConnectorFactory.connect(new JMXServiceURL(urls[i]), env);
 			} catch (IOException e) {
 				_trace.error("connect failed: " + e.getMessage());
 				if (i == 0) {
-					get_isConnected().setValue(0);
 					throw e;
 				}
 			}
 		}
-		_operatorConfiguration.set_mbeanServerConnection(_operatorConfiguration.get_jmxConnector().getMBeanServerConnection());
+		throw new IOException(MISSING_VALUE + PARAMETER_CONNECTION_URL);
 	}
 	
 
@@ -11,16 +11,27 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.management.ObjectName;
 
 import org.apache.log4j.Logger;
 
+import com.ibm.streams.management.ObjectNameBuilder;
 import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.StreamingOutput;
 import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration.OpType;
 import com.ibm.streamsx.monitoring.jmx.internal.ConnectionNotificationTupleContainer;
+import com.ibm.streamsx.monitoring.jmx.internal.FilterDocumentWatcher;
 import com.ibm.streamsx.monitoring.jmx.internal.InstanceHandler;
+import com.ibm.streamsx.monitoring.jmx.internal.InstanceScope;
 import com.ibm.streamsx.monitoring.jmx.internal.JobStatusTupleContainer;
 import com.ibm.streamsx.monitoring.jmx.internal.LogTupleContainer;
 import com.ibm.streamsx.monitoring.jmx.internal.MetricsTupleContainer;
@@ -87,6 +98,22 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 	
 	protected InstanceHandler _instanceHandler = null;
 
+	/**
+	 * The handlers of the other instances that match the filters, ordered by
+	 * instance id, if all matching instances are monitored. The handler of
+	 * the configured instance is _instanceHandler. The handlers are added
+	 * and removed by the thread that scans the instances.
+	 */
+	protected Map<String /* instanceId */, InstanceHandler> _otherInstanceHandlers = new TreeMap<>();
+
+	/**
+	 * The ids of the instances, which the thread that checks the instances
+	 * periodically queried, or null if no query result is pending. The
+	 * handlers are added and removed by the thread that scans the instances,
+	 * between two scans.
+	 */
+	private volatile Set<String /* instanceId */> _detectedInstanceIds = null;
+
 	/**
 	 * If the application configuration is used (applicationConfigurationName
 	 * parameter is set), save the active filterDocument (as JSON string) to
@@ -94,6 +121,28 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 	 */
 	protected String activeFilterDocumentFromApplicationConfiguration = null;
 
+	/**
+	 * The time in milliseconds without further changes of the filter document
+	 * file, after which the file is read again.
+	 */
+	private static final long FILTER_DOCUMENT_DEBOUNCE_PERIOD = 1000l;
+
+	/**
+	 * The absolute path of the filter document, if the filters are read from
+	 * a file, else null.
+	 */
+	private String _filterDocumentFile = null;
+
+	private FilterDocumentWatcher _filterDocumentWatcher = null;
+
+	/**
+	 * Specifies whether the filters changed, and the handlers must be
+	 * reconciled with them. The filters are replaced by the thread that
+	 * detects the change, but the handlers are reconciled by the thread that
+	 * scans the instance.
+	 */
+	private volatile boolean _isFilterReconciliationPending = false;
+
 	/**
 	 * Initialize this operator. Called once before any tuples are processed.
 	 * @param context OperatorContext for this operator.
@@ -117,6 +166,9 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 			if (!isValidInstance) {
 				throw new com.ibm.streams.operator.DataException("The " + _operatorConfiguration.get_instanceId() + " instance does not match the specified filter criteria in " + _operatorConfiguration.get_filterDocument());
 			}
+			if (_filterDocumentFile != null) {
+				watchFilterDocument();
+			}
 		}		
 		
 		final StreamingOutput<OutputTuple> port = getOutput(0);
@@ -127,7 +179,12 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 			_operatorConfiguration.set_tupleContainerLogSource(new LogTupleContainer(getOperatorContext(), port));
 		}
 		if (OpType.METRICS_SOURCE == _operatorConfiguration.get_OperatorType()) {			
-			_operatorConfiguration.set_tupleContainerMetricsSource(new MetricsTupleContainer(port));
+			_operatorConfiguration.set_tupleContainerMetricsSource(new MetricsTupleContainer(port, _operatorConfiguration.get_batchMetricTuples()));
+			_operatorConfiguration.get_tupleContainerMetricsSource().setMetricState(_operatorConfiguration.get_metricStateStore(), _operatorConfiguration.get_scanStatistics());
+			// check if the dictionary output port is present
+			if (2 < context.getNumberOfStreamingOutputs()) {
+				_operatorConfiguration.get_tupleContainerMetricsSource().setDictionaryPort(getOutput(2));
+			}
 		}
 		// check if second output port is present
 		if (1 < context.getNumberOfStreamingOutputs()) {
@@ -167,16 +224,232 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 				}
 			}
 			if (isChanged) {
-				_instanceHandler.close();
-				_instanceHandler = null;
 				setupFilters();
-				scanInstance();
+				_isFilterReconciliationPending = true;
+			}
+		}
+	}
+
+	/**
+	 * Watch the filter document file, and set up the filters again after the
+	 * file changed. If the changed document is invalid, the previous filters
+	 * stay active.
+	 */
+	private void watchFilterDocument() throws IOException {
+		_filterDocumentWatcher = new FilterDocumentWatcher(Paths.get(_filterDocumentFile), FILTER_DOCUMENT_DEBOUNCE_PERIOD,
+				new Runnable() {
+					@Override
+					public void run() {
+						try {
+							setupFilters();
+							_isFilterReconciliationPending = true;
+						}
+						catch (Exception e) {
+							_trace.error("The changed filter document is not applied: " + _filterDocumentFile, e);
+						}
+					}
+				}, getOperatorContext().getThreadFactory());
+	}
+
+	/**
+	 * Reconcile the handlers with the filters if the filter document changed.
+	 * Only the handlers and metrics whose filter decisions changed are closed
+	 * or added. The other handlers keep their state.
+	 * <p>
+	 * Must be called by the thread that scans the instance, between two
+	 * scans.
+	 * </p>
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails. The reconciliation stays pending and is
+	 * retried after the operator reconnected.
+	 */
+	protected void reconcileChangedFilters() throws Exception {
+		if (_isFilterReconciliationPending) {
+			_isFilterReconciliationPending = false;
+			if (_trace.isInfoEnabled()) {
+				_trace.info("Reconcile the handlers with the changed filters");
+			}
+			try {
+				if (_instanceHandler != null) {
+					_instanceHandler.reconcileFilters();
+					for (InstanceHandler handler : new ArrayList<>(_otherInstanceHandlers.values())) {
+						if (_operatorConfiguration.get_filters().matchesInstanceId(handler.getInstanceId())) {
+							handler.reconcileFilters();
+						}
+					}
+					// Closes the handlers of the instances that do not match anymore.
+					discoverInstances();
+				}
+				else {
+					scanInstance();
+				}
+			}
+			catch (Exception e) {
+				// Reconcile again after the reconnect, so the changed filters are not lost.
+				_isFilterReconciliationPending = true;
+				throw e;
 			}
 		}
 	}
 	
 	protected void scanInstance() {
 		_instanceHandler = new InstanceHandler(_operatorConfiguration, _operatorConfiguration.get_instanceId());
+		discoverInstances();
+	}
+
+	/**
+	 * Add handlers for the instances that match the filters, and close the
+	 * handlers of the instances that were removed or do not match anymore,
+	 * if all matching instances are monitored.
+	 * <p>
+	 * There are no notifications for added and removed instances, so the
+	 * instance MBeans are queried with one JMX call. Must be called by the
+	 * thread that scans the instances, for example, after a reconnect.
+	 * </p>
+	 */
+	protected void discoverInstances() {
+		if (InstanceScope.matching != _operatorConfiguration.get_instanceScope()) {
+			return;
+		}
+		Set<String> instanceIds = queryInstanceIds();
+		if (instanceIds != null) {
+			updateOtherInstanceHandlers(instanceIds);
+		}
+	}
+
+	/**
+	 * Query the instances, if all matching instances are monitored. The
+	 * handlers are updated with the result before the next scan, so the
+	 * query does not delay the scan. Called by the thread that runs the
+	 * periodic checks.
+	 */
+	protected void detectInstances() {
+		if (InstanceScope.matching != _operatorConfiguration.get_instanceScope()) {
+			return;
+		}
+		Set<String> instanceIds = queryInstanceIds();
+		if (instanceIds != null) {
+			_detectedInstanceIds = instanceIds;
+		}
+	}
+
+	/**
+	 * Update the handlers of the other instances with the instances that
+	 * detectInstances() queried since the last scan, if any.
+	 */
+	protected void applyDetectedInstances() {
+		Set<String> instanceIds = _detectedInstanceIds;
+		if (instanceIds != null) {
+			_detectedInstanceIds = null;
+			updateOtherInstanceHandlers(instanceIds);
+		}
+	}
+
+	/**
+	 * Query the ids of the instances, which are visible on the JMX
+	 * connection.
+	 * 
+	 * @return
+	 * The instance ids, or null if the query failed.
+	 */
+	private Set<String> queryInstanceIds() {
+		Set<String> instanceIds = new HashSet<>();
+		try {
+			ObjectName pattern = new ObjectName(ObjectNameBuilder.STREAMS + ":" + ObjectNameBuilder.TYPE + "=" + ObjectNameBuilder.INSTANCE + ",*");
+			for (ObjectName name : _operatorConfiguration.get_mbeanServerConnection().queryNames(pattern, null)) {
+				String instanceId = name.getKeyProperty(ObjectNameBuilder.NAME);
+				if ((instanceId != null) && instanceId.startsWith("\"")) {
+					instanceId = ObjectName.unquote(instanceId);
+				}
+				if (instanceId != null) {
+					instanceIds.add(instanceId);
+				}
+			}
+		}
+		catch (Exception e) {
+			_trace.error("Cannot discover the instances: " + e);
+			return null;
+		}
+		return instanceIds;
+	}
+
+	/**
+	 * Add handlers for the given instances that match the filters, and
+	 * close the handlers of the other instances.
+	 */
+	private void updateOtherInstanceHandlers(Set<String> instanceIds) {
+		instanceIds = new HashSet<>(instanceIds);
+		instanceIds.remove(_operatorConfiguration.get_instanceId());
+		for (String instanceId : new ArrayList<>(_otherInstanceHandlers.keySet())) {
+			if (!instanceIds.contains(instanceId) || !_operatorConfiguration.get_filters().matchesInstanceId(instanceId)) {
+				if (_trace.isInfoEnabled()) {
+					_trace.info("The following instance was removed or does not meet the filter criteria anymore and is therefore, not monitored: instance=" + instanceId);
+				}
+				closeOtherInstanceHandler(instanceId);
+			}
+		}
+		for (String instanceId : instanceIds) {
+			if (!_otherInstanceHandlers.containsKey(instanceId) && _operatorConfiguration.get_filters().matchesInstanceId(instanceId)) {
+				if (_trace.isInfoEnabled()) {
+					_trace.info("The following instance meets the filter criteria and is therefore, monitored: instance=" + instanceId);
+				}
+				try {
+					_otherInstanceHandlers.put(instanceId, new InstanceHandler(_operatorConfiguration, instanceId, false));
+				}
+				catch (Exception e) {
+					_trace.error("Cannot monitor the instance: instance=" + instanceId + ": " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Capture the metrics of the configured instance, and of the other
+	 * instances that match the filters. The instances are captured one
+	 * after the other. Within an instance, the jobs are captured
+	 * concurrently if a scan executor is configured.
+	 * <p>
+	 * If capturing another instance fails because the instance was
+	 * removed, its handler is closed. Other exceptions are thrown, so the
+	 * operator reconnects if the JMX connection is broken.
+	 * </p>
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	protected void captureInstanceMetrics() throws Exception {
+		_instanceHandler.healthCheck();
+		_instanceHandler.captureMetrics();
+		applyDetectedInstances();
+		for (InstanceHandler handler : new ArrayList<>(_otherInstanceHandlers.values())) {
+			try {
+				handler.healthCheck();
+				handler.captureMetrics();
+			}
+			catch (Exception e) {
+				String instanceId = handler.getInstanceId();
+				if (_operatorConfiguration.get_mbeanServerConnection().isRegistered(ObjectNameBuilder.instance(instanceId))) {
+					throw e;
+				}
+				if (_trace.isInfoEnabled()) {
+					_trace.info("The following instance was removed: instance=" + instanceId);
+				}
+				closeOtherInstanceHandler(instanceId);
+			}
+		}
+	}
+
+	private void closeOtherInstanceHandler(String instanceId) {
+		InstanceHandler handler = _otherInstanceHandlers.remove(instanceId);
+		if (handler != null) {
+			try {
+				handler.close();
+			}
+			catch (Exception e) {
+				_trace.warn("Cannot close the handler of the instance: instance=" + instanceId + ": " + e);
+			}
+		}
 	}
 
 	/**
@@ -204,7 +477,7 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 	 * specified as parameter (file path), nor in the application configuration
 	 * (JSON string).
 	 */
-	protected void setupFilters() throws Exception {
+	protected synchronized void setupFilters() throws Exception {
 		boolean done = false;
 		String applicationConfigurationName = _operatorConfiguration.get_applicationConfigurationName();
 		if (applicationConfigurationName != null) {
@@ -234,6 +507,7 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 			File fdoc = new File(fileAbsolute);
 			if (fdoc.exists()) {
 				_operatorConfiguration.set_filters(Filters.setupFilters(fileAbsolute, _operatorConfiguration.get_OperatorType()));
+				_filterDocumentFile = fileAbsolute;
 			}
 			else {
 				_trace.debug("filterDocument is not a file");
@@ -245,6 +519,19 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 		}
 	}
 
+	/**
+	 * Shutdown this operator.
+	 * @throws Exception Operator failure, will cause the enclosing PE to terminate.
+	 */
+	@Override
+	public synchronized void shutdown() throws Exception {
+		if (_filterDocumentWatcher != null) {
+			_filterDocumentWatcher.close();
+			_filterDocumentWatcher = null;
+		}
+		super.shutdown();
+	}
+
 	protected void closeInstanceHandler() {
 		try {
 			_instanceHandler.close();
@@ -252,6 +539,23 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 		catch (Exception ignore) {
 		}
 		_instanceHandler = null;
+		for (InstanceHandler handler : _otherInstanceHandlers.values()) {
+			try {
+				handler.close();
+			}
+			catch (Exception ignore) {
+			}
+		}
+		_otherInstanceHandlers.clear();
+		// Remove the registrations that a failing handler may have left.
+		_operatorConfiguration.get_notificationRegistry().close();
+		setDisconnected();
+	}
+
+	/**
+	 * Update the connection metrics after the JMX connection broke.
+	 */
+	protected void setDisconnected() {
 		if (1 == get_isConnected().getValue()) {
 			// update metric to indicate connection is broken
 			get_nBrokenJMXConnections().increment();
@@ -259,6 +563,55 @@ public abstract class AbstractJmxSource extends AbstractJmxOperator {
 			get_isConnected().setValue(0);
 		}
 	}
+
+	/**
+	 * Restore the instance handler after a new JMX connection is established.
+	 * The handlers, and the state of the metric evaluators are kept. Only the
+	 * notification listeners are registered again, and the jobs that were
+	 * submitted or cancelled meanwhile are added or removed. If there is no
+	 * instance handler, a new one is created.
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	protected void reconnectInstanceHandler() throws Exception {
+		if (_instanceHandler == null) {
+			scanInstance();
+		}
+		else if (_otherInstanceHandlers.isEmpty()) {
+			_instanceHandler.reconnect();
+			discoverInstances();
+		}
+		else {
+			/*
+			 * The instances share the notification registry, which is
+			 * reconnected once after the jobs of all instances are
+			 * registered again.
+			 */
+			Map<InstanceHandler, Set<String>> jobIds = new HashMap<>();
+			jobIds.put(_instanceHandler, _instanceHandler.restoreJobRegistrations());
+			for (InstanceHandler handler : new ArrayList<>(_otherInstanceHandlers.values())) {
+				try {
+					jobIds.put(handler, handler.restoreJobRegistrations());
+				}
+				catch (Exception e) {
+					String instanceId = handler.getInstanceId();
+					if (_operatorConfiguration.get_mbeanServerConnection().isRegistered(ObjectNameBuilder.instance(instanceId))) {
+						throw e;
+					}
+					if (_trace.isInfoEnabled()) {
+						_trace.info("The following instance was removed while disconnected: instance=" + instanceId);
+					}
+					closeOtherInstanceHandler(instanceId);
+				}
+			}
+			_operatorConfiguration.get_notificationRegistry().reconnect();
+			for (Map.Entry<InstanceHandler, Set<String>> entry : jobIds.entrySet()) {
+				entry.getKey().restoreJobs(entry.getValue());
+			}
+			discoverInstances();
+		}
+	}
 	
 	
 }
@@ -7,14 +7,28 @@
 
 package com.ibm.streamsx.monitoring.jmx;
 
+import java.util.concurrent.ExecutorService;
+
 import javax.management.MBeanServerConnection;
 import javax.management.remote.JMXConnector;
 
+import com.ibm.streamsx.monitoring.jmx.internal.ChannelAggregationMode;
 import com.ibm.streamsx.monitoring.jmx.internal.ConnectionNotificationTupleContainer;
+import com.ibm.streamsx.monitoring.jmx.internal.CounterRateMetricEvaluator;
 import com.ibm.streamsx.monitoring.jmx.internal.DeltaMetricEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.DiscoveryMode;
 import com.ibm.streamsx.monitoring.jmx.internal.EmitMetricTupleMode;
 import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.InstanceScope;
+import com.ibm.streamsx.monitoring.jmx.internal.JmxConnectionPool;
+import com.ibm.streamsx.monitoring.jmx.internal.MetricKindEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.MetricTupleBatchMode;
+import com.ibm.streamsx.monitoring.jmx.internal.NotificationRegistry;
+import com.ibm.streamsx.monitoring.jmx.internal.MetricsRetrievalMode;
+import com.ibm.streamsx.monitoring.jmx.internal.MetricStateStore;
 import com.ibm.streamsx.monitoring.jmx.internal.PeriodicMetricEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.ScanOverrunPolicy;
+import com.ibm.streamsx.monitoring.jmx.internal.ScanStatistics;
 import com.ibm.streamsx.monitoring.jmx.internal.filters.Filters;
 import com.ibm.streamsx.monitoring.jmx.internal.MetricsTupleContainer;
 import com.ibm.streamsx.monitoring.jmx.internal.JobStatusTupleContainer;
@@ -69,6 +83,12 @@ public class OperatorConfiguration {
 	 * default is 5.0 seconds.
 	 */
 	private Double _scanPeriod = Double.valueOf(5.0);
+
+	/**
+	 * Specifies how the scan schedule continues if a scan cycle takes longer
+	 * than the scan period. The default is to skip the missed scan cycles.
+	 */
+	private ScanOverrunPolicy _scanOverrunPolicy = ScanOverrunPolicy.skip;
 	
 	/**
 	 * Specifies the period after which a filter document update check is initiated. The
@@ -76,11 +96,75 @@ public class OperatorConfiguration {
 	 */	
 	private Double _checkPeriod = Double.valueOf(5.0);
 
+	/**
+	 * Specifies the number of threads that capture the job metrics
+	 * concurrently. The default is 1, which means that the jobs are
+	 * captured sequentially.
+	 */
+	private Integer _scanThreads = Integer.valueOf(1);
+
+	/**
+	 * The executor that runs the concurrent job scans, or null if the jobs
+	 * are captured sequentially.
+	 */
+	private ExecutorService _scanExecutor = null;
+
+	/**
+	 * The statistics of the current scan cycle.
+	 */
+	private ScanStatistics _scanStatistics = new ScanStatistics();
+
+	/**
+	 * The state of all captured metrics.
+	 */
+	private MetricStateStore _metricStateStore = new MetricStateStore();
+
+	/**
+	 * The channel index and the number of channels if the operator runs in a
+	 * parallel region. In this case, the operator monitors only the jobs
+	 * that are assigned to its channel.
+	 */
+	private int _channel = -1;
+
+	private int _maxChannels = 0;
+
+	/**
+	 * Specifies the period after which the cached placement attributes
+	 * (channel, PE, and resource) of the operators and PEs are refreshed,
+	 * even if no PE or connection change is notified. The default is 60.0
+	 * seconds.
+	 */
+	private Double _placementRefreshPeriod = Double.valueOf(60.0);
+
 	private JMXConnector _jmxConnector = null;
 	
 	private MBeanServerConnection _mbeanServerConnection = null;
 
-	private Filters _filters = new Filters();
+	/**
+	 * Specifies the number of JMX connections that are used to retrieve the
+	 * metrics. The default is 1, which means that all requests use the
+	 * primary connection.
+	 */
+	private Integer _jmxConnections = Integer.valueOf(1);
+
+	/**
+	 * The pool of JMX connections that the handlers use to create their
+	 * MXBean proxies.
+	 */
+	private JmxConnectionPool _jmxConnectionPool = null;
+
+	/**
+	 * The registry that adds the notification listeners of all handlers to
+	 * the primary connection.
+	 */
+	private NotificationRegistry _notificationRegistry = null;
+
+	/**
+	 * The filter tree is immutable and evaluated by the scan threads and
+	 * the notification threads without locking. The field is volatile, so
+	 * a replaced filter tree is safely published to these threads.
+	 */
+	private volatile Filters _filters = new Filters();
 
 	private String _defaultFilterInstance = null;
 	
@@ -93,6 +177,46 @@ public class OperatorConfiguration {
 	private ConnectionNotificationTupleContainer _tupleContainerConnectionNotification = null;
 
 	private EmitMetricTupleMode _emitMetricTuple = EmitMetricTupleMode.onChangedValue;
+
+	/**
+	 * In onSignificantChange mode, the minimum absolute change of a gauge
+	 * metric.
+	 */
+	private Long _gaugeDeadband = Long.valueOf(1);
+
+	/**
+	 * In onSignificantChange mode, the minimum change of the rate of a
+	 * counter metric in percent.
+	 */
+	private Double _counterRateChange = Double.valueOf(10.0);
+
+	/**
+	 * The evaluator of the onSignificantChange mode, which is created when
+	 * it is used first.
+	 */
+	private volatile IMetricEvaluator _metricKindEvaluator = null;
+
+	/**
+	 * Specifies whether the metrics of the channels of parallel regions are
+	 * emitted per channel, aggregated per logical operator, or both.
+	 */
+	private ChannelAggregationMode _channelAggregation = ChannelAggregationMode.perChannel;
+
+	/**
+	 * Specifies whether a batch of metric tuples is emitted for each job or
+	 * for each scan cycle, if the output port has a notifications attribute.
+	 */
+	private MetricTupleBatchMode _batchMetricTuples = MetricTupleBatchMode.perScan;
+
+	private MetricsRetrievalMode _metricsRetrievalMode = MetricsRetrievalMode.perObject;
+
+	private DiscoveryMode _discoveryMode = DiscoveryMode.perObject;
+
+	/**
+	 * Specifies whether only the configured instance is monitored, or all
+	 * instances that match the filters.
+	 */
+	private InstanceScope _instanceScope = InstanceScope.configured;
 	
 	private OpType _opType = OpType.METRICS_SOURCE;
 
@@ -195,6 +319,58 @@ public class OperatorConfiguration {
 		this._scanPeriod = scanPeriod;
 	}
 
+	public ScanOverrunPolicy get_scanOverrunPolicy() {
+		return _scanOverrunPolicy;
+	}
+
+	public void set_scanOverrunPolicy(ScanOverrunPolicy scanOverrunPolicy) {
+		this._scanOverrunPolicy = scanOverrunPolicy;
+	}
+
+	public Integer get_scanThreads() {
+		return _scanThreads;
+	}
+
+	public void set_scanThreads(Integer scanThreads) {
+		this._scanThreads = scanThreads;
+	}
+
+	public ExecutorService get_scanExecutor() {
+		return _scanExecutor;
+	}
+
+	public void set_scanExecutor(ExecutorService scanExecutor) {
+		this._scanExecutor = scanExecutor;
+	}
+
+	public int get_channel() {
+		return _channel;
+	}
+
+	public void set_channel(int channel) {
+		this._channel = channel;
+	}
+
+	public int get_maxChannels() {
+		return _maxChannels;
+	}
+
+	public void set_maxChannels(int maxChannels) {
+		this._maxChannels = maxChannels;
+	}
+
+	public ScanStatistics get_scanStatistics() {
+		return _scanStatistics;
+	}
+
+	public Double get_placementRefreshPeriod() {
+		return _placementRefreshPeriod;
+	}
+
+	public void set_placementRefreshPeriod(Double placementRefreshPeriod) {
+		this._placementRefreshPeriod = placementRefreshPeriod;
+	}
+
 	public JMXConnector get_jmxConnector() {
 		return _jmxConnector;
 	}
@@ -211,6 +387,43 @@ public class OperatorConfiguration {
 		this._mbeanServerConnection = mbeanServerConnection;
 	}
 
+	/**
+	 * Get the connection for a new MXBean proxy. If a connection pool is
+	 * set, the proxies are spread across the pooled connections, else the
+	 * primary connection is returned. Notification listeners must be added
+	 * to the primary connection.
+	 */
+	public MBeanServerConnection get_pooledMbeanServerConnection() {
+		if (_jmxConnectionPool != null) {
+			return _jmxConnectionPool.nextConnection();
+		}
+		return _mbeanServerConnection;
+	}
+
+	public Integer get_jmxConnections() {
+		return _jmxConnections;
+	}
+
+	public void set_jmxConnections(Integer jmxConnections) {
+		this._jmxConnections = jmxConnections;
+	}
+
+	public JmxConnectionPool get_jmxConnectionPool() {
+		return _jmxConnectionPool;
+	}
+
+	public void set_jmxConnectionPool(JmxConnectionPool jmxConnectionPool) {
+		this._jmxConnectionPool = jmxConnectionPool;
+	}
+
+	public NotificationRegistry get_notificationRegistry() {
+		return _notificationRegistry;
+	}
+
+	public void set_notificationRegistry(NotificationRegistry notificationRegistry) {
+		this._notificationRegistry = notificationRegistry;
+	}
+
 	public Filters get_filters() {
 		return _filters;
 	}
@@ -251,16 +464,91 @@ public class OperatorConfiguration {
 		return _tupleContainerConnectionNotification;
 	}
 	
+	public EmitMetricTupleMode get_emitMetricTuple() {
+		return _emitMetricTuple;
+	}
+
 	public void set_emitMetricTuple(EmitMetricTupleMode mode) {
 		_emitMetricTuple = mode;
 	}
 
-	public IMetricEvaluator newDefaultMetricEvaluator() {
+	public ChannelAggregationMode get_channelAggregation() {
+		return _channelAggregation;
+	}
+
+	public void set_channelAggregation(ChannelAggregationMode mode) {
+		_channelAggregation = mode;
+	}
+
+	public MetricTupleBatchMode get_batchMetricTuples() {
+		return _batchMetricTuples;
+	}
+
+	public void set_batchMetricTuples(MetricTupleBatchMode mode) {
+		_batchMetricTuples = mode;
+	}
+
+	public Long get_gaugeDeadband() {
+		return _gaugeDeadband;
+	}
+
+	public void set_gaugeDeadband(Long gaugeDeadband) {
+		_gaugeDeadband = gaugeDeadband;
+	}
+
+	public Double get_counterRateChange() {
+		return _counterRateChange;
+	}
+
+	public void set_counterRateChange(Double counterRateChange) {
+		_counterRateChange = counterRateChange;
+	}
+
+	public MetricsRetrievalMode get_metricsRetrievalMode() {
+		return _metricsRetrievalMode;
+	}
+
+	public void set_metricsRetrievalMode(MetricsRetrievalMode mode) {
+		_metricsRetrievalMode = mode;
+	}
+
+	public DiscoveryMode get_discoveryMode() {
+		return _discoveryMode;
+	}
+
+	public void set_discoveryMode(DiscoveryMode mode) {
+		_discoveryMode = mode;
+	}
+
+	public InstanceScope get_instanceScope() {
+		return _instanceScope;
+	}
+
+	public void set_instanceScope(InstanceScope scope) {
+		_instanceScope = scope;
+	}
+
+	public MetricStateStore get_metricStateStore() {
+		return _metricStateStore;
+	}
+
+	/**
+	 * Get the evaluator for the metrics. The evaluators are stateless and
+	 * shared by all metrics.
+	 */
+	public IMetricEvaluator get_defaultMetricEvaluator() {
 		switch(_emitMetricTuple) {
 		case onChangedValue:
-			return new DeltaMetricEvaluator();
+			return DeltaMetricEvaluator.getDefault();
 		case periodic:
 			return PeriodicMetricEvaluator.getSingleton();
+		case onSignificantChange:
+			if (_metricKindEvaluator == null) {
+				_metricKindEvaluator = new MetricKindEvaluator(
+						new CounterRateMetricEvaluator(_counterRateChange.doubleValue()),
+						new DeltaMetricEvaluator(_gaugeDeadband.longValue()));
+			}
+			return _metricKindEvaluator;
 		default:
 			return null;
 		}
@@ -0,0 +1,280 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.ibm.streams.management.Metric;
+import com.ibm.streams.management.MetricMetadata.Kind;
+import com.ibm.streams.management.MetricMetadata.Type;
+import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration;
+
+/**
+ * Aggregates the metrics of the channels of the parallel regions of a job.
+ * The channels of a logical operator, or of a port of a logical operator,
+ * form a group. During a scan cycle, the metric handlers of the channels
+ * add their metric values to the aggregates of their group, independent of
+ * whether the value changed. After all operators of the job are captured,
+ * the aggregates are submitted like metrics of the logical operator:
+ * <ul>
+ *   <li>Counter metrics are summed up.</li>
+ *   <li>Gauge metrics are aggregated to the maximum value.</li>
+ *   <li>Time and other metrics are aggregated to the average value.</li>
+ * </ul>
+ * <p>
+ * Each aggregate has a slot in the metric state store, which holds the
+ * last submitted value, and which assigns the series id. The aggregate is
+ * evaluated with the evaluator of the channels' metric, so the emit policy
+ * of the filter document applies to the aggregate like to a metric of a
+ * single channel. The evaluator is taken from the first channel that
+ * contributes after the aggregate is created or the filters changed.
+ * </p>
+ * <p>
+ * If no channel contributes to an aggregate for several scan cycles, for
+ * example, because the channels are removed or the metric does not match
+ * the filters anymore, the aggregate is removed and its slot is released.
+ * </p>
+ */
+final class ChannelAggregator {
+
+	/**
+	 * The number of scan cycles without contributions after which an
+	 * aggregate is removed.
+	 */
+	private static final int MAX_IDLE_SCANS = 3;
+
+	/**
+	 * The aggregates of the channels of a logical operator or port.
+	 */
+	static final class Group {
+
+		private final String _logicalName;
+
+		private final String _origin;
+
+		private final int _portIndex;
+
+		private final Map<String /* metricName */, Aggregate> _aggregates = new HashMap<>();
+
+		private Group(String logicalName, String origin, int portIndex) {
+			_logicalName = logicalName;
+			_origin = origin;
+			_portIndex = portIndex;
+		}
+
+	}
+
+	/**
+	 * The aggregate of a metric across the channels during a scan cycle.
+	 */
+	private static final class Aggregate {
+
+		private final String _metricName;
+
+		private final int _slot;
+
+		/**
+		 * The evaluator of the channels' metric, which decides whether the
+		 * aggregate is submitted, or null if it is taken from the next
+		 * contribution.
+		 */
+		private IMetricEvaluator _evaluator = null;
+
+		/**
+		 * The number of consecutive scan cycles without contributions.
+		 */
+		private int _idleScans = 0;
+
+		private Type _metricType = null;
+
+		private Kind _metricKind = null;
+
+		private long _sum = 0;
+
+		private long _max = 0;
+
+		private int _count = 0;
+
+		private long _lastTimeRetrieved = 0;
+
+		private Aggregate(String metricName, int slot) {
+			_metricName = metricName;
+			_slot = slot;
+		}
+
+		private long getValue() {
+			if (Kind.COUNTER == _metricKind) {
+				return _sum;
+			}
+			if (Kind.GAUGE == _metricKind) {
+				return _max;
+			}
+			return _sum / _count;
+		}
+
+	}
+
+	private final OperatorConfiguration _operatorConfiguration;
+
+	private final Map<String /* group key */, Group> _groups = new HashMap<>();
+
+	ChannelAggregator(OperatorConfiguration operatorConfiguration) {
+		_operatorConfiguration = operatorConfiguration;
+	}
+
+	/**
+	 * Get the group of a logical operator or port, which is created on first
+	 * use.
+	 */
+	Group getGroup(String logicalName, String origin, int portIndex) {
+		String key = logicalName + '\0' + origin + '\0' + portIndex;
+		Group group = _groups.get(key);
+		if (group == null) {
+			group = new Group(logicalName, origin, portIndex);
+			_groups.put(key, group);
+		}
+		return group;
+	}
+
+	/**
+	 * Add the value of a channel's metric to the aggregate of the group.
+	 * 
+	 * @param evaluator
+	 * The evaluator of the channel's metric, which implements the emit
+	 * policy of the metric.
+	 */
+	void add(Group group, Metric metric, IMetricEvaluator evaluator) {
+		Aggregate aggregate = group._aggregates.get(metric.getName());
+		if (aggregate == null) {
+			aggregate = new Aggregate(metric.getName(), _operatorConfiguration.get_metricStateStore().allocate());
+			group._aggregates.put(metric.getName(), aggregate);
+		}
+		long value = metric.getValueAsLong();
+		if ((aggregate._count == 0) || (value > aggregate._max)) {
+			aggregate._max = value;
+		}
+		aggregate._sum += value;
+		aggregate._count++;
+		aggregate._lastTimeRetrieved = Math.max(aggregate._lastTimeRetrieved, metric.getLastTimeRetrieved());
+		aggregate._metricType = metric.getMetricType();
+		aggregate._metricKind = metric.getMetricKind();
+		if (aggregate._evaluator == null) {
+			aggregate._evaluator = evaluator;
+		}
+	}
+
+	/**
+	 * Submit a tuple for each aggregate, to which a channel contributed
+	 * during this scan cycle, if the evaluator of the metric decides that
+	 * the aggregate is submittable, or offer it to the top-K candidates.
+	 * Afterwards, the aggregates are reset for the next scan cycle, and the
+	 * aggregates that were idle for too many scan cycles are removed.
+	 * <p>
+	 * The tuples have the logical operator name, the channel -1, an empty
+	 * resource, and the PE id 0. The instance and job attributes must
+	 * already be set.
+	 * </p>
+	 */
+	void submit(MetricsTupleContainer tc) throws Exception {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		tc.setChannel(-1);
+		tc.setPeId("0");
+		tc.setResource("");
+		for (Iterator<Group> groups = _groups.values().iterator(); groups.hasNext(); ) {
+			Group group = groups.next();
+			tc.setOperatorName(group._logicalName);
+			tc.setOrigin(group._origin);
+			tc.setPortIndex(group._portIndex);
+			for (Iterator<Aggregate> aggregates = group._aggregates.values().iterator(); aggregates.hasNext(); ) {
+				Aggregate aggregate = aggregates.next();
+				if (aggregate._count == 0) {
+					if (++aggregate._idleScans >= MAX_IDLE_SCANS) {
+						store.release(aggregate._slot);
+						aggregates.remove();
+					}
+					continue;
+				}
+				aggregate._idleScans = 0;
+				int slot = aggregate._slot;
+				Metric metric = new SnapshotMetric(aggregate._metricName, aggregate._metricKind, aggregate._metricType, aggregate.getValue(), aggregate._lastTimeRetrieved);
+				IMetricEvaluator evaluator = (aggregate._evaluator != null) ? aggregate._evaluator : _operatorConfiguration.get_defaultMetricEvaluator();
+				if (evaluator instanceof TopKMetricEvaluator) {
+					setMetricAttributes(tc, metric, slot);
+					tc.offer((TopKMetricEvaluator)evaluator, metric.getValueAsLong(), slot, 1);
+				}
+				else if (evaluator.isSubmittable(metric, store, slot)) {
+					setMetricAttributes(tc, metric, slot);
+					if (tc.hasDictionary() && (store.getDictionaryGeneration(slot) == 0)) {
+						tc.submitDictionaryEntry();
+						store.setDictionaryGeneration(slot, 1);
+					}
+					evaluator.updateStatus(metric, store, slot);
+					tc.submit();
+					_operatorConfiguration.get_scanStatistics().incrementTuplesEmitted();
+				}
+				store.setSample(slot, metric.getValueAsLong(), metric.getLastTimeRetrieved());
+				aggregate._sum = 0;
+				aggregate._count = 0;
+				aggregate._lastTimeRetrieved = 0;
+			}
+			if (group._aggregates.isEmpty()) {
+				groups.remove();
+			}
+		}
+	}
+
+	/**
+	 * Apply a changed filter document. The aggregates keep their slots, but
+	 * take the evaluator from the next contribution, so a changed emit
+	 * policy applies to them. Aggregates of metrics that do not match the
+	 * filters anymore are removed after they were idle.
+	 */
+	void reconcileFilters() {
+		for (Group group : _groups.values()) {
+			for (Aggregate aggregate : group._aggregates.values()) {
+				aggregate._evaluator = null;
+			}
+		}
+	}
+
+	/**
+	 * Set the metric-relevant tuple attributes of an aggregate. The rate is
+	 * computed from the sample of the previous scan cycle, so the attributes
+	 * must be set before the status of the aggregate is updated.
+	 */
+	private void setMetricAttributes(MetricsTupleContainer tc, Metric metric, int slot) {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		double rate = Double.NaN;
+		if (Kind.COUNTER == metric.getMetricKind()) {
+			rate = store.getRate(slot, metric.getValueAsLong(), metric.getLastTimeRetrieved());
+		}
+		tc.setSeriesId(store.getSeriesId(slot));
+		tc.setMetricType(metric.getMetricType());
+		tc.setMetricKind(metric.getMetricKind());
+		tc.setMetricName(metric.getName());
+		tc.setMetricValue(metric.getValueAsLong());
+		tc.setLastTimeRetrieved(metric.getLastTimeRetrieved());
+		tc.setMetricRate(rate);
+	}
+
+	/**
+	 * Release the slots of all aggregates.
+	 */
+	void close() {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		for (Group group : _groups.values()) {
+			for (Aggregate aggregate : group._aggregates.values()) {
+				store.release(aggregate._slot);
+			}
+		}
+		_groups.clear();
+	}
+
+}
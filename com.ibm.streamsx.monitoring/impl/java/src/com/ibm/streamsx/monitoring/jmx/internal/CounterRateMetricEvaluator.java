@@ -0,0 +1,62 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import com.ibm.streams.management.Metric;
+
+/**
+ * This metric evaluator is intended for counter metrics, like
+ * nTuplesProcessed, which change during nearly each scan cycle. It marks a
+ * metric as submittable if the per-second rate since the previous scan
+ * cycle differs by at least the specified percentage from the rate when the
+ * last tuple was submitted.
+ * <p>
+ * If the counter decreased, for example, because the PE restarted, the
+ * counter was reset. The new value is submittable, and the rate is
+ * determined again from the following scan cycles.
+ * </p>
+ */
+public class CounterRateMetricEvaluator implements IMetricEvaluator {
+
+	private final double _percentage;
+
+	public CounterRateMetricEvaluator(double percentage) {
+		if (percentage <= 0.0) {
+			throw new IllegalArgumentException("CounterRateMetricEvaluator(percentage=" + percentage + ")");
+		}
+		_percentage = percentage;
+	}
+
+	@Override
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot) {
+		long value = metric.getValueAsLong();
+		if (!store.hasValue(slot) || store.isReset(slot, value)) {
+			return true;
+		}
+		double rate = store.getRate(slot, value, metric.getLastTimeRetrieved());
+		if (Double.isNaN(rate)) {
+			return false;
+		}
+		double lastRate = store.getLastRate(slot);
+		if (Double.isNaN(lastRate)) {
+			return true;
+		}
+		if (lastRate == 0.0) {
+			return rate > 0.0;
+		}
+		return (Math.abs(rate - lastRate) * 100.0) >= (_percentage * lastRate);
+	}
+
+	@Override
+	public void updateStatus(Metric metric, MetricStateStore store, int slot) {
+		long value = metric.getValueAsLong();
+		store.setLastRate(slot, store.getRate(slot, value, metric.getLastTimeRetrieved()));
+		store.setValue(slot, value, metric.getLastTimeRetrieved());
+	}
+
+}
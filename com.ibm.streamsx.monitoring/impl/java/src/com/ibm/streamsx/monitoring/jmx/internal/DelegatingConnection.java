@@ -0,0 +1,55 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.management.MBeanServerConnection;
+
+/**
+ * Forwards all calls to an MBean server connection that can be replaced.
+ * The MXBean proxies that are created with this connection stay valid if
+ * the operator reconnects and replaces the connection, so the handlers
+ * can be kept.
+ */
+public class DelegatingConnection implements InvocationHandler {
+
+	private volatile MBeanServerConnection _delegate = null;
+
+	public DelegatingConnection(MBeanServerConnection delegate) {
+		_delegate = delegate;
+	}
+
+	public void setDelegate(MBeanServerConnection delegate) {
+		_delegate = delegate;
+	}
+
+	/**
+	 * Create a connection that forwards all calls to the current delegate.
+	 */
+	public MBeanServerConnection newConnection() {
+		return (MBeanServerConnection)Proxy.newProxyInstance(
+				MBeanServerConnection.class.getClassLoader(),
+				new Class<?>[] { MBeanServerConnection.class },
+				this);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(_delegate, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+}
@@ -16,11 +16,23 @@ import com.ibm.streams.management.Metric;
  */
 public class DeltaMetricEvaluator implements IMetricEvaluator {
 
-	private long _delta = 1;
-	
-	private Long _lastValue = null;
+	/**
+	 * The evaluator that marks each changed value as submittable.
+	 */
+	private static final DeltaMetricEvaluator _default = new DeltaMetricEvaluator();
+
+	/**
+	 * @return
+	 * The evaluator that marks each changed value as submittable.
+	 */
+	public static final DeltaMetricEvaluator getDefault() {
+		return _default;
+	}
+
+	private final long _delta;
 	
 	public DeltaMetricEvaluator() {
+		_delta = 1;
 	}
 
 	public DeltaMetricEvaluator(long delta) {
@@ -31,13 +43,13 @@ public class DeltaMetricEvaluator implements IMetricEvaluator {
 	}
 	
 	@Override
-	public boolean isSubmittable(Metric metric) {
-		return (_lastValue == null) || (Math.abs(_lastValue - metric.getValueAsLong()) >= _delta);
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot) {
+		return !store.hasValue(slot) || (Math.abs(store.getLastValue(slot) - metric.getValueAsLong()) >= _delta);
 	}
 
 	@Override
-	public void updateStatus(Metric metric) {
-		_lastValue = metric.getValueAsLong();
+	public void updateStatus(Metric metric, MetricStateStore store, int slot) {
+		store.setValue(slot, metric.getValueAsLong(), metric.getLastTimeRetrieved());
 	}
 
 }
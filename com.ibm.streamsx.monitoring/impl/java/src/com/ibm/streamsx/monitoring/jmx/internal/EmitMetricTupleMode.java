@@ -10,4 +10,5 @@ package com.ibm.streamsx.monitoring.jmx.internal;
 public enum EmitMetricTupleMode {
 	periodic,
 	onChangedValue,
+	onSignificantChange,
 };
@@ -0,0 +1,141 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Watches the filter document file and notifies the operator when the file
+ * changed. The parent directory is watched because a WatchService cannot
+ * watch a single file, and because editors often replace a file by renaming
+ * a temporary file.
+ * <p>
+ * Saving a file typically causes several events. The operator is notified
+ * once, after no further events occurred during the debounce period, so it
+ * does not read a partially written file.
+ * </p>
+ */
+public class FilterDocumentWatcher implements Runnable, Closeable {
+
+	/**
+	 * Logger for tracing.
+	 */
+	private static Logger _trace = Logger.getLogger(FilterDocumentWatcher.class.getName());
+
+	private final Path _file;
+
+	private final long _debouncePeriod;
+
+	private final Runnable _onChange;
+
+	private final WatchService _watchService;
+
+	private final Thread _thread;
+
+	/**
+	 * @param file
+	 * The absolute path of the filter document.
+	 *
+	 * @param debouncePeriod
+	 * The time in milliseconds without further events, after which the
+	 * operator is notified.
+	 *
+	 * @param onChange
+	 * Called on the watcher thread after the file changed.
+	 *
+	 * @param threadFactory
+	 * Creates the watcher thread.
+	 */
+	public FilterDocumentWatcher(Path file, long debouncePeriod, Runnable onChange, ThreadFactory threadFactory) throws IOException {
+		_file = file;
+		_debouncePeriod = debouncePeriod;
+		_onChange = onChange;
+		_watchService = FileSystems.getDefault().newWatchService();
+		_file.getParent().register(_watchService,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		_thread = threadFactory.newThread(this);
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				WatchKey key = _watchService.take();
+				if (!isFileChanged(key)) {
+					continue;
+				}
+				/*
+				 * The change stays pending until no further events of the
+				 * file occurred during the debounce period. Further events
+				 * only restart the debounce period, so an event of another
+				 * file in the directory does not discard the change.
+				 */
+				long debounceEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_debouncePeriod);
+				long remaining = debounceEnd - System.nanoTime();
+				while (remaining > 0) {
+					key = _watchService.poll(remaining, TimeUnit.NANOSECONDS);
+					if ((key != null) && isFileChanged(key)) {
+						debounceEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_debouncePeriod);
+					}
+					remaining = debounceEnd - System.nanoTime();
+				}
+				if (_trace.isInfoEnabled()) {
+					_trace.info("The filter document changed: " + _file);
+				}
+				try {
+					_onChange.run();
+				}
+				catch (RuntimeException e) {
+					_trace.error("Cannot process the changed filter document: " + _file, e);
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e) {
+			// The watcher is closed.
+		}
+	}
+
+	/**
+	 * Determine whether the events of the key refer to the filter document,
+	 * and reset the key to receive further events.
+	 */
+	private boolean isFileChanged(WatchKey key) {
+		boolean isChanged = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (StandardWatchEventKinds.OVERFLOW == event.kind()) {
+				isChanged = true;
+			}
+			else if (_file.getFileName().equals(event.context())) {
+				isChanged = true;
+			}
+		}
+		key.reset();
+		return isChanged;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_thread.interrupt();
+		_watchService.close();
+	}
+
+}
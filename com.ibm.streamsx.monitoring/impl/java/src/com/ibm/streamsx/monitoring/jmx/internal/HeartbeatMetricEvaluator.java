@@ -0,0 +1,58 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import com.ibm.streams.management.Metric;
+
+/**
+ * This metric evaluator marks a metric as submittable if the wrapped
+ * evaluator marks it as submittable, or if no tuple was submitted for the
+ * metric during the specified number of scan cycles. The downstream
+ * operators receive the current value periodically, even if it does not
+ * change.
+ * <p>
+ * The evaluator counts the cycles without a tuple in the metric state
+ * store, so isSubmittable() must be called once per scan cycle.
+ * </p>
+ */
+public class HeartbeatMetricEvaluator implements IMetricEvaluator {
+
+	private final IMetricEvaluator _evaluator;
+
+	private final int _maxSilentCycles;
+
+	/**
+	 * @param evaluator
+	 * The evaluator that decides whether a changed value is submittable.
+	 *
+	 * @param maxSilentCycles
+	 * The number of scan cycles after which an unchanged value is submitted.
+	 */
+	public HeartbeatMetricEvaluator(IMetricEvaluator evaluator, int maxSilentCycles) {
+		if (maxSilentCycles <= 0) {
+			throw new IllegalArgumentException("HeartbeatMetricEvaluator(maxSilentCycles=" + maxSilentCycles + ")");
+		}
+		_evaluator = evaluator;
+		_maxSilentCycles = maxSilentCycles;
+	}
+
+	@Override
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot) {
+		if (_evaluator.isSubmittable(metric, store, slot)) {
+			return true;
+		}
+		return store.incrementSilentCycles(slot) >= _maxSilentCycles;
+	}
+
+	@Override
+	public void updateStatus(Metric metric, MetricStateStore store, int slot) {
+		_evaluator.updateStatus(metric, store, slot);
+		store.resetSilentCycles(slot);
+	}
+
+}
@@ -10,7 +10,9 @@ package com.ibm.streamsx.monitoring.jmx.internal;
 import com.ibm.streams.management.Metric;
 
 /**
- *
+ * Decides whether a tuple is emitted for a metric. The evaluators are
+ * stateless. The state of a metric, like its last value, is held in the
+ * metric state store, so an evaluator can be shared by all metrics.
  */
 public interface IMetricEvaluator {
 
@@ -20,10 +22,16 @@ public interface IMetricEvaluator {
 	 * @param metric
 	 * Specifies the current metric.
 	 * 
+	 * @param store
+	 * The store that holds the state of the metric.
+	 * 
+	 * @param slot
+	 * The slot of the metric in the store.
+	 * 
 	 * @return
 	 * True if a tuple shall be emitted.
 	 */
-	public boolean isSubmittable(Metric metric);
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot);
 	
 	/**
 	 * Save or update any status data that is needed to get a decision for
@@ -32,7 +40,13 @@ public interface IMetricEvaluator {
 	 * 
 	 * @param metric
 	 * Specifies the current metric.
+	 * 
+	 * @param store
+	 * The store that holds the state of the metric.
+	 * 
+	 * @param slot
+	 * The slot of the metric in the store.
 	 */
-	public void updateStatus(Metric metric);
+	public void updateStatus(Metric metric, MetricStateStore store, int slot);
 	
 }
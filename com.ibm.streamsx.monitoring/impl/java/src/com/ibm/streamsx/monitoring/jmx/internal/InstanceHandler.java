@@ -8,15 +8,27 @@
 package com.ibm.streamsx.monitoring.jmx.internal;
 
 import javax.management.Notification;
-import javax.management.NotificationFilterSupport;
 import javax.management.NotificationListener;
 
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.ibm.json.java.JSON;
 import com.ibm.json.java.JSONArray;
@@ -25,6 +37,7 @@ import com.ibm.json.java.JSONObject;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMX;
 import javax.management.ObjectName;
+import com.ibm.streams.management.Metric;
 import com.ibm.streams.management.Notifications;
 import com.ibm.streams.management.ObjectNameBuilder;
 import com.ibm.streams.management.instance.InstanceMXBean;
@@ -64,9 +77,58 @@ public class InstanceHandler implements NotificationListener, Closeable {
 	
 	private InstanceMXBean _instance = null;
 
-	private Map<String /* jobId */, JobHandler> _jobHandlers = new HashMap<>();
+	/**
+	 * The job handlers are added and removed by notifications, while the
+	 * scan iterates them. Therefore, a concurrent map is used.
+	 */
+	private Map<String /* jobId */, JobHandler> _jobHandlers = new ConcurrentHashMap<>();
+
+	/**
+	 * The ids of all jobs that are evaluated, including the jobs that do
+	 * not match the filters or are monitored by another channel. After a
+	 * reconnect, only jobs that are not in this set are evaluated.
+	 */
+	private Set<String /* jobId */> _knownJobIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The handlers of the jobs that were removed by a JOB_REMOVED
+	 * notification. The scan may still capture the metrics of a removed
+	 * job, so the notification thread must not release the metric slots.
+	 * The handlers are closed by the thread that scans the instance, before
+	 * the next scan.
+	 */
+	private Queue<JobHandler> _removedJobHandlers = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The handlers of the resources that match the resource filters, ordered
+	 * by resource id. Resources are added and removed during the scan, when
+	 * the metrics of all resources are retrieved.
+	 */
+	private Map<String /* resourceId */, ResourceHandler> _resourceHandlers = new ConcurrentSkipListMap<>();
+
+	/**
+	 * The ids of all resources that are evaluated, including the resources
+	 * that do not match the filters or are monitored by another channel.
+	 */
+	private Set<String /* resourceId */> _knownResourceIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Specifies whether this handler emits the JMX connection notifications.
+	 * If the operator monitors several instances, only the handler of the
+	 * configured instance listens to the shared JMX connector.
+	 */
+	private boolean _isConnectionListener = true;
 
 	public InstanceHandler(OperatorConfiguration operatorConfiguration, String instanceId) {
+		this(operatorConfiguration, instanceId, true);
+	}
+
+	/**
+	 * @param isConnectionListener
+	 * Specifies whether the handler listens to the JMX connection
+	 * notifications, and emits them to the connection notification port.
+	 */
+	public InstanceHandler(OperatorConfiguration operatorConfiguration, String instanceId, boolean isConnectionListener) {
 
 		boolean isDebugEnabled = _trace.isDebugEnabled();
 		if (isDebugEnabled) {
@@ -75,49 +137,224 @@ public class InstanceHandler implements NotificationListener, Closeable {
 		// Store parameters for later use.
 		_operatorConfiguration = operatorConfiguration;
 		_instanceId = instanceId;
+		_isConnectionListener = isConnectionListener;
 
 		_objName = ObjectNameBuilder.instance(_instanceId);
 		_instance = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), _objName, InstanceMXBean.class, true);
+
+		addNotificationListeners();
 		
 		/*
-		 * Register to get instance-related notifications.
+		 * Register existing jobs.
 		 */
-		NotificationFilterSupport filter = new NotificationFilterSupport();
-		if (OpType.LOG_SOURCE == _operatorConfiguration.get_OperatorType()) {
-			filter.enableType(Notifications.LOG_APPLICATION_ERROR);
-			filter.enableType(Notifications.LOG_APPLICATION_WARNING);		
+		Set<String> jobIds = _instance.getJobs();
+		InstanceTopology topology = null;
+		if ((OpType.METRICS_SOURCE == _operatorConfiguration.get_OperatorType()) &&
+			(DiscoveryMode.bulk == _operatorConfiguration.get_discoveryMode())) {
+			/*
+			 * The jobs must be registered before their operators and ports
+			 * can be queried.
+			 */
+			Set<String> ownedJobIds = new HashSet<>();
+			for(String jobId : jobIds) {
+				if (isOwnedJob(jobId)) {
+					_instance.registerJobById(jobId);
+					ownedJobIds.add(jobId);
+				}
+			}
+			try {
+				topology = InstanceTopology.query(_operatorConfiguration.get_mbeanServerConnection(), _instance, _instanceId, ownedJobIds);
+			}
+			catch (IOException | RuntimeException e) {
+				_trace.error("Cannot discover the topology of instance " + _instanceId + " in bulk, discovering it per object: " + e);
+			}
 		}
-		else {		
-			filter.enableType(Notifications.JOB_ADDED);
-			filter.enableType(Notifications.JOB_REMOVED);
+		for(String jobId : jobIds) {
+			addValidJob(jobId, topology);
 		}
+		
+	}
+
+	/**
+	 * Register to get instance-related notifications and, if requested,
+	 * JMX connection notifications.
+	 */
+	protected void addNotificationListeners() {
 		try {
-			_operatorConfiguration.get_mbeanServerConnection().addNotificationListener(_objName, this, filter, null);
+			if (OpType.LOG_SOURCE == _operatorConfiguration.get_OperatorType()) {
+				_operatorConfiguration.get_notificationRegistry().register(_objName, this, Notifications.LOG_APPLICATION_ERROR, Notifications.LOG_APPLICATION_WARNING);
+			}
+			else {
+				_operatorConfiguration.get_notificationRegistry().register(_objName, this, Notifications.JOB_ADDED, Notifications.JOB_REMOVED);
+			}
 		} catch (InstanceNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		addConnectionNotificationListener();
+	}
 
-		if (null != _operatorConfiguration.get_tupleContainerConnectionNotification()) {
+	/**
+	 * Register to get JMX connection notifications, if requested. The
+	 * listener is added to the current JMX connector.
+	 */
+	protected void addConnectionNotificationListener() {
+		if (_isConnectionListener && (null != _operatorConfiguration.get_tupleContainerConnectionNotification())) {
 			try {
 				if (_trace.isInfoEnabled()) {
 					_trace.info("JMXConnector.addConnectionNotificationListener()");
 				}
 				// listen for potential lost notifications
-				operatorConfiguration.get_jmxConnector().addConnectionNotificationListener(this, null, null);
+				_operatorConfiguration.get_jmxConnector().addConnectionNotificationListener(this, null, null);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}		
-		
+	}
+
+	/**
+	 * Restore the handlers after the operator established a new JMX
+	 * connection. The MXBean proxies stay valid because they use the
+	 * operator's delegating connection, and the metric evaluators keep
+	 * their state. The notification registry registers the listeners of
+	 * all handlers again, and the jobs that were submitted or cancelled
+	 * while the operator was disconnected are added or removed.
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	public void reconnect() throws Exception {
+		Set<String> jobIds = restoreJobRegistrations();
 		/*
-		 * Register existing jobs.
+		 * The MBeans of the registered jobs exist again, so the listeners
+		 * can be registered before handlers for new jobs and PEs are added.
 		 */
-		for(String jobId : _instance.getJobs()) {
-			addValidJob(jobId);
+		_operatorConfiguration.get_notificationRegistry().reconnect();
+		restoreJobs(jobIds);
+	}
+
+	/**
+	 * The first step of reconnect(), which removes the handlers of the jobs
+	 * that were cancelled while the operator was disconnected, and registers
+	 * the monitored jobs again. If several instance handlers share the
+	 * notification registry, the registry must be reconnected once after
+	 * this step was done for all instances.
+	 * 
+	 * @return
+	 * The ids of the current jobs of the instance, which are passed to
+	 * restoreJobs().
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	public Set<String> restoreJobRegistrations() throws Exception {
+		boolean isInfoEnabled = _trace.isInfoEnabled();
+		addConnectionNotificationListener();
+		Set<String> jobIds = new HashSet<>(_instance.getJobs());
+		for (String jobId : new ArrayList<>(_knownJobIds)) {
+			if (!jobIds.contains(jobId)) {
+				_knownJobIds.remove(jobId);
+				JobHandler jobHandler = _jobHandlers.remove(jobId);
+				if (jobHandler != null) {
+					if (isInfoEnabled) {
+						_trace.info("The following job was removed while disconnected: instance=" + _instanceId + ", jobId=" + jobId);
+					}
+					try {
+						jobHandler.close();
+					}
+					catch (Exception ignore) {
+						// The listeners were removed with the broken connection.
+					}
+				}
+			}
+			else if (_jobHandlers.containsKey(jobId)) {
+				// The job registration can be lost if the JMX server restarted.
+				_instance.registerJobById(jobId);
+			}
+		}
+		return jobIds;
+	}
+
+	/**
+	 * The last step of reconnect(), which adds the jobs that were submitted
+	 * while the operator was disconnected, and restores the handlers of the
+	 * other jobs, after the notification registry was reconnected.
+	 * 
+	 * @param jobIds
+	 * The ids that restoreJobRegistrations() returned.
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	public void restoreJobs(Set<String> jobIds) throws Exception {
+		boolean isInfoEnabled = _trace.isInfoEnabled();
+		for (String jobId : jobIds) {
+			if (!_knownJobIds.contains(jobId)) {
+				if (isInfoEnabled) {
+					_trace.info("The following job was added while disconnected: instance=" + _instanceId + ", jobId=" + jobId);
+				}
+				addValidJob(jobId);
+			}
+			else if (_jobHandlers.containsKey(jobId)) {
+				_jobHandlers.get(jobId).reconnect();
+			}
+		}
+	}
+
+	/**
+	 * Apply a changed filter document without rebuilding the handler tree.
+	 * The handlers of jobs that do not meet the filter criteria anymore are
+	 * closed, handlers are added for jobs that meet the criteria now, and
+	 * the handlers of all other jobs reconcile their children. The metric
+	 * evaluators keep their state if their metric is still monitored.
+	 * <p>
+	 * Must be called by the thread that scans the instance, between two
+	 * scans, because it closes handlers and releases metric slots that the
+	 * scan uses. The thread that detects the changed filter document only
+	 * marks the reconciliation as pending.
+	 * </p>
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	public void reconcileFilters() throws Exception {
+		boolean isInfoEnabled = _trace.isInfoEnabled();
+		for (String jobId : new ArrayList<>(_knownJobIds)) {
+			JobHandler jobHandler = _jobHandlers.get(jobId);
+			if (jobHandler == null) {
+				if (isOwnedJob(jobId)) {
+					// Adds a handler if the job meets the filter criteria now.
+					addValidJob(jobId);
+				}
+			}
+			else if (_operatorConfiguration.get_filters().matchesJobName(_instanceId, jobHandler.getJobName())) {
+				jobHandler.reconcileFilters();
+			}
+			else {
+				if (isInfoEnabled) {
+					_trace.info("The following job does not meet the filter criteria anymore and is therefore, not monitored: instance=" + _instanceId + ", job=" + jobHandler.getJobName() + ", jobId=" + jobId);
+				}
+				_jobHandlers.remove(jobId);
+				jobHandler.close();
+			}
+		}
+		for (String resourceId : new ArrayList<>(_knownResourceIds)) {
+			ResourceHandler resourceHandler = _resourceHandlers.get(resourceId);
+			if (resourceHandler == null) {
+				addValidResource(resourceId);
+			}
+			else if (_operatorConfiguration.get_filters().matchesResourceId(_instanceId, resourceId)) {
+				resourceHandler.reconcileMetrics();
+			}
+			else {
+				if (isInfoEnabled) {
+					_trace.info("The following resource does not meet the filter criteria anymore and is therefore, not monitored: instance=" + _instanceId + ", resource=" + resourceId);
+				}
+				_resourceHandlers.remove(resourceId);
+				resourceHandler.close();
+			}
 		}
-		
 	}
 
 	/**
@@ -179,13 +416,24 @@ public class InstanceHandler implements NotificationListener, Closeable {
 						_operatorConfiguration.get_tupleContainerJobStatusSource().submit(tuple);
 					}
 					
-					_jobHandlers.remove(jobId);
+					JobHandler jobHandler = _jobHandlers.remove(jobId);
+					_knownJobIds.remove(jobId);
+					if (jobHandler != null) {
+						_removedJobHandlers.add(jobHandler);
+						if (OpType.METRICS_SOURCE != _operatorConfiguration.get_OperatorType()) {
+							// There is no scan, which uses the handler.
+							closeRemovedJobHandlers();
+						}
+					}
 					if (isInfoEnabled) {
 						_trace.info("received JOB_REMOVED notification for monitored job: jobId=" + jobId);
 					}
 				}
-				else if (isInfoEnabled) {
-					_trace.info("received JOB_REMOVED notification for job that is not monitored: jobId=" + jobId);
+				else {
+					_knownJobIds.remove(jobId);
+					if (isInfoEnabled) {
+						_trace.info("received JOB_REMOVED notification for job that is not monitored: jobId=" + jobId);
+					}
 				}
 			}
 		}
@@ -269,18 +517,69 @@ public class InstanceHandler implements NotificationListener, Closeable {
 
 
 	protected String addValidJob(String jobId) {
+		return addValidJob(jobId, null);
+	}
+
+	/**
+	 * Determine whether the job is monitored by this operator. In a parallel
+	 * region, each channel monitors only its own jobs.
+	 */
+	private boolean isOwnedJob(String jobId) {
+		return (OpType.METRICS_SOURCE != _operatorConfiguration.get_OperatorType()) ||
+				JobSharding.isOwner(jobId, _operatorConfiguration.get_channel(), _operatorConfiguration.get_maxChannels());
+	}
+
+	/**
+	 * Create a handler for the job if it matches the filter criteria.
+	 * 
+	 * @param jobId
+	 * The job id.
+	 * 
+	 * @param topology
+	 * The topology that is discovered in bulk, or null. If the topology is
+	 * specified, the job is already registered.
+	 * 
+	 * @return
+	 * The job name, or null if the job is monitored by another channel.
+	 */
+	protected String addValidJob(String jobId, InstanceTopology topology) {
 
 		boolean isDebugEnabled = _trace.isDebugEnabled();
 		if (isDebugEnabled) {
 			_trace.debug("--> addValidJob(" + jobId + ")");
 		}
+		_knownJobIds.add(jobId);
+		/*
+		 * In a parallel region, each channel monitors only its own jobs.
+		 */
+		if (!isOwnedJob(jobId)) {
+			if (_trace.isInfoEnabled()) {
+				_trace.info("The following job is monitored by another channel: instance=" + _instanceId + ", jobId=" + jobId + ", channel=" + _operatorConfiguration.get_channel());
+			}
+			if (isDebugEnabled) {
+				_trace.debug("<-- addValidJob(" + jobId + ")");
+			}
+			return null;
+		}
+		JobHandler existingHandler = _jobHandlers.get(jobId);
+		if (existingHandler != null) {
+			if (isDebugEnabled) {
+				_trace.debug("<-- addValidJob(" + jobId + ")");
+			}
+			return existingHandler.getJobName();
+		}
 		// Registering the job must be done before attempting to access any of
 		// the job-related beans. 
-		_instance.registerJobById(jobId);
-		// Special handling required because we do not have the job name easily accessible.
-		ObjectName jobObjName = ObjectNameBuilder.job(_instanceId, jobId);
-		JobMXBean job = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), jobObjName, JobMXBean.class, true);
-		String jobName = job.getName();
+		if (topology == null) {
+			_instance.registerJobById(jobId);
+		}
+		String jobName = (topology != null) ? topology.getJobName(jobId) : null;
+		if (jobName == null) {
+			// Special handling required because we do not have the job name easily accessible.
+			ObjectName jobObjName = ObjectNameBuilder.job(_instanceId, jobId);
+			JobMXBean job = JMX.newMXBeanProxy(_operatorConfiguration.get_pooledMbeanServerConnection(), jobObjName, JobMXBean.class, true);
+			jobName = job.getName();
+		}
 		boolean matches = _operatorConfiguration.get_filters().matchesJobName(_instanceId, jobName);
 		if (_trace.isInfoEnabled()) {
 			if (matches) {
@@ -291,16 +590,58 @@ public class InstanceHandler implements NotificationListener, Closeable {
 			}
 		}
 		if (matches) {
-			_jobHandlers.put(jobId, new JobHandler(_operatorConfiguration, _instanceId, jobId));
+			/*
+			 * The JOB_ADDED notification and the scan thread can add the same
+			 * job concurrently. The handler that is not stored is closed, so
+			 * it releases its registrations and metric slots.
+			 */
+			JobHandler jobHandler = new JobHandler(_operatorConfiguration, _instanceId, jobId, jobName, topology);
+			if (_jobHandlers.putIfAbsent(jobId, jobHandler) != null) {
+				try {
+					jobHandler.close();
+				}
+				catch (Exception e) {
+					_trace.error("Cannot close the duplicate handler of job " + jobId + ": " + e);
+				}
+			}
 		}
 		if (isDebugEnabled) {
 			_trace.debug("<-- addValidJob(" + jobId + ")");
 		}
 		return jobName;
 	}
-	
+
+	/**
+	 * Create a handler for the resource if it matches the filter criteria.
+	 * In a parallel region, the resources are distributed to the channels
+	 * like the jobs.
+	 */
+	protected void addValidResource(String resourceId) {
+		_knownResourceIds.add(resourceId);
+		if (!JobSharding.isOwner(resourceId, _operatorConfiguration.get_channel(), _operatorConfiguration.get_maxChannels())) {
+			return;
+		}
+		boolean matches = _operatorConfiguration.get_filters().matchesResourceId(_instanceId, resourceId);
+		if (_trace.isInfoEnabled()) {
+			if (matches) {
+				_trace.info("The following resource meets the filter criteria and is therefore, monitored: instance=" + _instanceId + ", resource=" + resourceId);
+			}
+			else {
+				_trace.info("The following resource does not meet the filter criteria and is therefore, not monitored: instance=" + _instanceId + ", resource=" + resourceId);
+			}
+		}
+		if (matches) {
+			_resourceHandlers.put(resourceId, new ResourceHandler(_operatorConfiguration, _instanceId, resourceId, _instance));
+		}
+	}
+
 	/**
 	 * Iterate all jobs to capture the job metrics.
+	 * <p>
+	 * If a scan executor is configured, the jobs are captured concurrently,
+	 * else sequentially. In both cases, the tuples are submitted job by job,
+	 * ordered by job id.
+	 * 
 	 * @throws Exception 
 	 */
 	public void captureMetrics() throws Exception {
@@ -308,27 +649,181 @@ public class InstanceHandler implements NotificationListener, Closeable {
 		if (isDebugEnabled) {
 			_trace.debug("--> captureMetrics(instance=" + _instanceId + ")");
 		}
-		_operatorConfiguration.get_tupleContainerMetricsSource().setInstanceId(_instanceId);
-		for(String jobId : _jobHandlers.keySet()) {
-			_jobHandlers.get(jobId).captureMetrics();
+		closeRemovedJobHandlers();
+		List<JobHandler> jobHandlers = getSortedJobHandlers();
+		MetricsTupleContainer tc = _operatorConfiguration.get_tupleContainerMetricsSource();
+		ExecutorService executor = _operatorConfiguration.get_scanExecutor();
+		if ((executor == null) || (jobHandlers.size() < 2)) {
+			tc.setInstanceId(_instanceId);
+			for(JobHandler jobHandler : jobHandlers) {
+				jobHandler.captureMetrics(tc);
+				tc.endOfJob();
+			}
+		}
+		else {
+			captureMetricsConcurrently(executor, tc, jobHandlers);
 		}
+		captureResourceMetrics(tc);
 		if (isDebugEnabled) {
 			_trace.debug("<-- captureMetrics(instance=" + _instanceId + ")");
 		}
 	}
 
 	/**
-	 * Remove notification listeners from this and child objects.
+	 * Close the handlers of the jobs that were removed by a notification.
+	 * Must be called by the thread that scans the instance, between two
+	 * scans.
+	 */
+	protected void closeRemovedJobHandlers() {
+		JobHandler jobHandler = _removedJobHandlers.poll();
+		while (jobHandler != null) {
+			try {
+				jobHandler.close();
+			}
+			catch (Exception e) {
+				_trace.warn("Cannot close the handler of the removed job: jobId=" + jobHandler.getJobId() + ": " + e);
+			}
+			jobHandler = _removedJobHandlers.poll();
+		}
+	}
+
+	/**
+	 * Capture the metrics of the resources that match the resource filters.
+	 * The metrics of all resources are retrieved with one call per scan
+	 * cycle. Handlers are added for new resources, and closed for resources
+	 * that were removed from the instance. The resource tuples are
+	 * submitted after the tuples of the jobs, like the tuples of a job.
+	 */
+	protected void captureResourceMetrics(MetricsTupleContainer tc) throws Exception {
+		if ((OpType.METRICS_SOURCE != _operatorConfiguration.get_OperatorType()) ||
+			!_operatorConfiguration.get_filters().hasResourceFilters(_instanceId)) {
+			return;
+		}
+		Map<String, Set<Metric>> metrics = _instance.retrieveResourceMetrics(false);
+		for (String resourceId : new ArrayList<>(_knownResourceIds)) {
+			if (!metrics.containsKey(resourceId)) {
+				_knownResourceIds.remove(resourceId);
+				ResourceHandler resourceHandler = _resourceHandlers.remove(resourceId);
+				if (resourceHandler != null) {
+					if (_trace.isInfoEnabled()) {
+						_trace.info("The following resource was removed: instance=" + _instanceId + ", resource=" + resourceId);
+					}
+					resourceHandler.close();
+				}
+			}
+		}
+		for (String resourceId : metrics.keySet()) {
+			if (!_knownResourceIds.contains(resourceId)) {
+				addValidResource(resourceId);
+			}
+		}
+		if (_resourceHandlers.isEmpty()) {
+			return;
+		}
+		tc.setInstanceId(_instanceId);
+		for (ResourceHandler resourceHandler : _resourceHandlers.values()) {
+			resourceHandler.captureMetrics(tc, metrics.get(resourceHandler.getResourceId()));
+		}
+		tc.endOfJob();
+	}
+
+	/**
+	 * Capture the metrics of all jobs with the worker threads of the given
+	 * executor. Each job buffers its tuples in its own tuple container.
+	 * The buffered tuples are submitted in the order of the job handlers, as
+	 * soon as the corresponding job is captured.
+	 * 
+	 * @throws Exception
+	 * Throws the first exception that occurred while capturing the jobs'
+	 * metrics, after the tuples of all jobs are submitted.
+	 */
+	protected void captureMetricsConcurrently(ExecutorService executor, MetricsTupleContainer tc, List<JobHandler> jobHandlers) throws Exception {
+		List<Future<Void>> futures = new ArrayList<>(jobHandlers.size());
+		for(final JobHandler jobHandler : jobHandlers) {
+			final MetricsTupleContainer jobTc = jobHandler.getBufferedTupleContainer(tc);
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					jobTc.setInstanceId(_instanceId);
+					jobHandler.captureMetrics(jobTc);
+					return null;
+				}
+				
+			}));
+		}
+		Exception firstException = null;
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				}
+				catch (ExecutionException e) {
+					if (firstException == null) {
+						Throwable cause = e.getCause();
+						firstException = (cause instanceof Exception) ? (Exception)cause : e;
+					}
+				}
+				jobHandlers.get(i).getBufferedTupleContainer(tc).flush();
+				tc.endOfJob();
+			}
+		}
+		catch (InterruptedException e) {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+			for (JobHandler jobHandler : jobHandlers) {
+				jobHandler.getBufferedTupleContainer(tc).discard();
+			}
+			throw e;
+		}
+		if (firstException != null) {
+			throw firstException;
+		}
+	}
+
+	/**
+	 * @return
+	 * The job handlers ordered by job id.
+	 */
+	protected List<JobHandler> getSortedJobHandlers() {
+		List<JobHandler> result = new ArrayList<>(_jobHandlers.values());
+		Collections.sort(result, new Comparator<JobHandler>() {
+
+			@Override
+			public int compare(JobHandler o1, JobHandler o2) {
+				return new BigInteger(o1.getJobId()).compareTo(new BigInteger(o2.getJobId()));
+			}
+			
+		});
+		return result;
+	}
+
+	/**
+	 * Remove notification listeners from this and child objects. The owner
+	 * of the notification registry closes it after all instance handlers
+	 * are closed, which removes the registrations that a failing handler may
+	 * have left.
 	 */
 	@Override
 	public void close() throws Exception {
 		// Remove the notification listener.
-		_operatorConfiguration.get_mbeanServerConnection().removeNotificationListener(_objName, this);
+		_operatorConfiguration.get_notificationRegistry().unregister(_objName, this);
 		// Close all resources of all child objects.
+		closeRemovedJobHandlers();
 		for(JobHandler handler : _jobHandlers.values()) {
 			handler.close();
 		}
 		_jobHandlers.clear();
+		for(ResourceHandler handler : _resourceHandlers.values()) {
+			handler.close();
+		}
+		_resourceHandlers.clear();
+		_knownResourceIds.clear();
+	}
+
+	public String getInstanceId() {
+		return _instanceId;
 	}
 
 	public void healthCheck() {
@@ -0,0 +1,299 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import com.ibm.json.java.JSON;
+import com.ibm.json.java.JSONArray;
+import com.ibm.json.java.JSONArtifact;
+import com.ibm.json.java.JSONObject;
+import com.ibm.streams.management.ObjectNameBuilder;
+import com.ibm.streams.management.instance.InstanceMXBean;
+
+/**
+ * Holds the job names, PEs, PE connections, operators, and the operator
+ * and PE ports of all registered jobs of an instance. The topology is
+ * discovered with one {@code InstanceMXBean.snapshotJobs()} call and a few
+ * {@code queryNames()} pattern queries instead of one call per job,
+ * operator, and PE, which reduces the startup time for large instances.
+ * <p>
+ * The jobs must be registered before the topology is queried. If a job,
+ * operator, or PE is not part of the topology, the get methods return
+ * null, and the handlers discover the topology with their MXBeans.
+ * </p>
+ */
+public class InstanceTopology {
+
+	/**
+	 * Logger for tracing.
+	 */
+	private static Logger _trace = Logger.getLogger(InstanceTopology.class.getName());
+
+	private static final String TYPE_OPERATOR = "instance.job.operator";
+
+	private static final String TYPE_OPERATOR_INPUT_PORT = "instance.job.operator.port.input";
+
+	private static final String TYPE_OPERATOR_OUTPUT_PORT = "instance.job.operator.port.output";
+
+	private static final String TYPE_PE_INPUT_PORT = "instance.pe.port.input";
+
+	private static final String TYPE_PE_OUTPUT_PORT = "instance.pe.port.output";
+
+	/**
+	 * The depth of the jobs snapshot, which includes the jobs, their PEs,
+	 * the PE ports, and the connections of the ports.
+	 */
+	private static final int SNAPSHOT_DEPTH = 4;
+
+	private Map<String /* jobId */, String /* jobName */> _jobNames = new HashMap<>();
+
+	private Map<String /* jobId */, Set<String /* peId */>> _pes = new HashMap<>();
+
+	private Map<String /* peId */, Set<String /* connectionId */>> _peConnections = new HashMap<>();
+
+	private Map<String /* jobId */, Set<String /* operatorName */>> _operators = new HashMap<>();
+
+	private Map<String /* jobId + operatorName */, Set<Integer>> _operatorInputPorts = new HashMap<>();
+
+	private Map<String /* jobId + operatorName */, Set<Integer>> _operatorOutputPorts = new HashMap<>();
+
+	private Map<String /* peId */, Set<Integer>> _peInputPorts = new HashMap<>();
+
+	private Map<String /* peId */, Set<Integer>> _peOutputPorts = new HashMap<>();
+
+	private InstanceTopology() {
+	}
+
+	/**
+	 * Query the topology of all registered jobs of the instance.
+	 *
+	 * @param connection
+	 * The MBean server connection.
+	 *
+	 * @param instance
+	 * The MXBean proxy of the instance.
+	 *
+	 * @param instanceId
+	 * The instance id.
+	 *
+	 * @param jobIds
+	 * The ids of the registered jobs.
+	 *
+	 * @throws IOException
+	 * Throws if a query fails.
+	 */
+	public static InstanceTopology query(MBeanServerConnection connection, InstanceMXBean instance, String instanceId, Set<String> jobIds) throws IOException {
+		InstanceTopology result = new InstanceTopology();
+		result.parseJobs(instance.snapshotJobs(jobIds, SNAPSHOT_DEPTH, false));
+		for (ObjectName name : queryNames(connection, instanceId, TYPE_OPERATOR)) {
+			String jobId = value(name, "job");
+			if (!result._operators.containsKey(jobId)) {
+				result._operators.put(jobId, new HashSet<String>());
+			}
+			result._operators.get(jobId).add(value(name, "name"));
+		}
+		for (ObjectName name : queryNames(connection, instanceId, TYPE_OPERATOR_INPUT_PORT)) {
+			addPort(result._operatorInputPorts, operatorKey(value(name, "job"), value(name, "operator")), name);
+		}
+		for (ObjectName name : queryNames(connection, instanceId, TYPE_OPERATOR_OUTPUT_PORT)) {
+			addPort(result._operatorOutputPorts, operatorKey(value(name, "job"), value(name, "operator")), name);
+		}
+		for (ObjectName name : queryNames(connection, instanceId, TYPE_PE_INPUT_PORT)) {
+			addPort(result._peInputPorts, value(name, "pe"), name);
+		}
+		for (ObjectName name : queryNames(connection, instanceId, TYPE_PE_OUTPUT_PORT)) {
+			addPort(result._peOutputPorts, value(name, "pe"), name);
+		}
+		if (_trace.isInfoEnabled()) {
+			_trace.info("Discovered the topology of instance " + instanceId + ": jobs=" + result._jobNames.size() + ", jobsWithOperators=" + result._operators.size() + ", pesWithConnections=" + result._peConnections.size() + ", pesWithPorts=" + result._peInputPorts.size());
+		}
+		return result;
+	}
+
+	/**
+	 * Parse the job names, PEs, and PE connections from the jobs snapshot.
+	 * The connections of a PE are stored only if the snapshot includes the
+	 * connections of all its output ports.
+	 */
+	private void parseJobs(String snapshot) throws IOException {
+		JSONArtifact root = JSON.parse(snapshot);
+		if (!(root instanceof JSONObject)) {
+			_trace.error("The jobs snapshot is not a JSON object: " + snapshot);
+			return;
+		}
+		for (JSONObject job : objects(((JSONObject)root).get("jobs"))) {
+			Object jobId = job.get("id");
+			Object jobName = job.get("name");
+			if ((jobId == null) || (jobName == null)) {
+				continue;
+			}
+			Set<String> peIds = new HashSet<>();
+			for (JSONObject pe : objects(job.get("pes"))) {
+				Object peId = pe.get("id");
+				if (peId == null) {
+					peIds = null;
+					break;
+				}
+				peIds.add(peId.toString());
+				Set<String> connectionIds = parseConnections(pe);
+				if (connectionIds != null) {
+					_peConnections.put(peId.toString(), connectionIds);
+				}
+			}
+			_jobNames.put(jobId.toString(), jobName.toString());
+			if ((peIds != null) && (job.get("pes") instanceof JSONArray)) {
+				_pes.put(jobId.toString(), peIds);
+			}
+		}
+	}
+
+	/**
+	 * Parse the connections of the output ports of a PE.
+	 *
+	 * @return
+	 * The connection ids, or null if the snapshot does not include all of
+	 * them.
+	 */
+	private static Set<String> parseConnections(JSONObject pe) {
+		if (!(pe.get("outputPorts") instanceof JSONArray)) {
+			return null;
+		}
+		Set<String> result = new HashSet<>();
+		for (JSONObject port : objects(pe.get("outputPorts"))) {
+			if (!(port.get("connections") instanceof JSONArray)) {
+				return null;
+			}
+			for (JSONObject connection : objects(port.get("connections"))) {
+				Object connectionId = connection.get("id");
+				if (connectionId == null) {
+					return null;
+				}
+				result.add(connectionId.toString());
+			}
+		}
+		return result;
+	}
+
+	private static List<JSONObject> objects(Object json) {
+		List<JSONObject> result = new ArrayList<>();
+		if (json instanceof JSONArray) {
+			for (Object obj : (JSONArray)json) {
+				if (obj instanceof JSONObject) {
+					result.add((JSONObject)obj);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static Set<ObjectName> queryNames(MBeanServerConnection connection, String instanceId, String type) throws IOException {
+		ObjectName pattern;
+		try {
+			// The domain and the instance key are taken from the builder, so the pattern matches its names.
+			ObjectName instance = ObjectNameBuilder.instance(instanceId);
+			pattern = new ObjectName(instance.getDomain() + ":type=" + type + ",instance=" + instance.getKeyProperty("name") + ",*");
+		}
+		catch (MalformedObjectNameException e) {
+			throw new IOException(e);
+		}
+		return connection.queryNames(pattern, null);
+	}
+
+	private static String value(ObjectName name, String key) {
+		String value = name.getKeyProperty(key);
+		if ((value != null) && value.startsWith("\"")) {
+			value = ObjectName.unquote(value);
+		}
+		return value;
+	}
+
+	private static void addPort(Map<String, Set<Integer>> ports, String key, ObjectName name) {
+		if (!ports.containsKey(key)) {
+			ports.put(key, new HashSet<Integer>());
+		}
+		ports.get(key).add(Integer.valueOf(value(name, "index")));
+	}
+
+	private static String operatorKey(String jobId, String operatorName) {
+		return jobId + "/" + operatorName;
+	}
+
+	public String getJobName(String jobId) {
+		return _jobNames.get(jobId);
+	}
+
+	public Set<String> getPes(String jobId) {
+		return _pes.get(jobId);
+	}
+
+	/**
+	 * Get the connections of a PE, or null if the snapshot does not include
+	 * the connections of the PE.
+	 */
+	public Set<String> getPeConnections(String peId) {
+		return _peConnections.get(peId);
+	}
+
+	public Set<String> getOperators(String jobId) {
+		return _operators.get(jobId);
+	}
+
+	/**
+	 * Get the input ports of an operator. If the job is part of the
+	 * topology, an operator without input ports has an empty set.
+	 */
+	public Set<Integer> getOperatorInputPorts(String jobId, String operatorName) {
+		return getPorts(_operatorInputPorts, jobId, operatorName);
+	}
+
+	public Set<Integer> getOperatorOutputPorts(String jobId, String operatorName) {
+		return getPorts(_operatorOutputPorts, jobId, operatorName);
+	}
+
+	private Set<Integer> getPorts(Map<String, Set<Integer>> ports, String jobId, String operatorName) {
+		if (!_operators.containsKey(jobId)) {
+			return null;
+		}
+		Set<Integer> result = ports.get(operatorKey(jobId, operatorName));
+		return (result != null) ? result : new HashSet<Integer>();
+	}
+
+	/**
+	 * Get the input ports of a PE. PEs that have neither input nor output
+	 * ports are not part of the topology, so null is returned for them.
+	 */
+	public Set<Integer> getPeInputPorts(String peId) {
+		if (!_peInputPorts.containsKey(peId) && !_peOutputPorts.containsKey(peId)) {
+			return null;
+		}
+		Set<Integer> result = _peInputPorts.get(peId);
+		return (result != null) ? result : new HashSet<Integer>();
+	}
+
+	public Set<Integer> getPeOutputPorts(String peId) {
+		if (!_peInputPorts.containsKey(peId) && !_peOutputPorts.containsKey(peId)) {
+			return null;
+		}
+		Set<Integer> result = _peOutputPorts.get(peId);
+		return (result != null) ? result : new HashSet<Integer>();
+	}
+
+}
@@ -0,0 +1,283 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A pool of JMX connections that the handlers use to create their MXBean
+ * proxies. Spreading the proxies across several connections avoids that
+ * all concurrent metrics retrievals are serialized on one socket.
+ * <p>
+ * The first connection of the pool is the operator's primary connection,
+ * which is also used for the notifications. Its health is handled by the
+ * operator. The other connections are owned by the pool. Each of them is
+ * represented by a stable MBeanServerConnection, so the MXBean proxies
+ * survive if the pool replaces a broken connector: If a call fails with an
+ * IOException, the pool reconnects this connection and retries the call
+ * once, without affecting the other connections. If the reconnect fails,
+ * the call is served by the primary connection, and the broken connection
+ * is not reconnected again before the reconnect interval elapsed.
+ * </p>
+ */
+public class JmxConnectionPool implements Closeable {
+
+	/**
+	 * Logger for tracing.
+	 */
+	private static Logger _trace = Logger.getLogger(JmxConnectionPool.class.getName());
+
+	/**
+	 * The minimum time between two reconnect attempts of a broken pooled
+	 * connection.
+	 */
+	private static final long RECONNECT_INTERVAL_MS = 5000;
+
+	/**
+	 * A connection that is owned by the pool.
+	 */
+	private class PooledConnection implements InvocationHandler {
+
+		private final int _index;
+
+		private JMXConnector _connector = null;
+
+		private volatile MBeanServerConnection _delegate = null;
+
+		/**
+		 * Specifies whether the last call succeeded. Broken connections are
+		 * reconnected with the next call.
+		 */
+		private volatile boolean _isHealthy = false;
+
+		private final AtomicInteger _nFailures = new AtomicInteger();
+
+		/**
+		 * The time before which a broken connection is not reconnected.
+		 */
+		private volatile long _nextReconnectTime = 0;
+
+		PooledConnection(int index) {
+			_index = index;
+		}
+
+		/**
+		 * Replace the connector of this connection. Calls that run
+		 * concurrently, keep using the previous delegate until they finish.
+		 *
+		 * @param broken
+		 * The delegate that failed, or null if there is no delegate yet. If
+		 * another thread replaced the delegate meanwhile, nothing is done.
+		 */
+		synchronized MBeanServerConnection connect(MBeanServerConnection broken) throws IOException {
+			if ((_delegate != null) && (_delegate != broken)) {
+				return _delegate;
+			}
+			if (_connector != null) {
+				try {
+					_connector.close();
+				}
+				catch (IOException e) {
+					// The connection is broken anyway.
+				}
+				_connector = null;
+			}
+			_delegate = null;
+			try {
+				_connector = _connectorFactory.call();
+			}
+			catch (Exception e) {
+				throw (e instanceof IOException) ? (IOException)e : new IOException(e);
+			}
+			_delegate = _connector.getMBeanServerConnection();
+			_isHealthy = true;
+			_trace.info("Pooled JMX connection " + _index + " is established.");
+			return _delegate;
+		}
+
+		synchronized void close() {
+			_isHealthy = false;
+			_delegate = null;
+			if (_connector != null) {
+				try {
+					_connector.close();
+				}
+				catch (IOException e) {
+					_trace.warn("Cannot close pooled JMX connection " + _index + ": " + e);
+				}
+				_connector = null;
+			}
+		}
+
+		/**
+		 * Reconnect this connection unless the last reconnect attempt failed
+		 * less than the reconnect interval ago.
+		 *
+		 * @return
+		 * The new delegate, or null if the connection is not available.
+		 */
+		private MBeanServerConnection reconnect(MBeanServerConnection broken) {
+			if (System.currentTimeMillis() < _nextReconnectTime) {
+				return _delegate;
+			}
+			try {
+				return connect(broken);
+			}
+			catch (IOException e) {
+				_isHealthy = false;
+				_nextReconnectTime = System.currentTimeMillis() + RECONNECT_INTERVAL_MS;
+				_trace.warn("Pooled JMX connection " + _index + " cannot be reconnected, using the primary connection: " + e);
+				return null;
+			}
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			MBeanServerConnection delegate = _delegate;
+			if (delegate == null) {
+				delegate = reconnect(null);
+			}
+			if (delegate != null) {
+				try {
+					return method.invoke(delegate, args);
+				}
+				catch (InvocationTargetException e) {
+					if (!(e.getCause() instanceof IOException)) {
+						throw e.getCause();
+					}
+					_isHealthy = false;
+					_nFailures.incrementAndGet();
+					_trace.warn("Pooled JMX connection " + _index + " is broken, reconnecting: " + e.getCause());
+				}
+				delegate = reconnect(delegate);
+			}
+			if (delegate != null) {
+				try {
+					return method.invoke(delegate, args);
+				}
+				catch (InvocationTargetException e) {
+					if (!(e.getCause() instanceof IOException)) {
+						throw e.getCause();
+					}
+					_isHealthy = false;
+					_nFailures.incrementAndGet();
+					_trace.warn("Pooled JMX connection " + _index + " is broken after reconnect, using the primary connection: " + e.getCause());
+				}
+			}
+			try {
+				return method.invoke(_connections[0], args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	private final Callable<JMXConnector> _connectorFactory;
+
+	private final MBeanServerConnection[] _connections;
+
+	private final PooledConnection[] _pooledConnections;
+
+	private final AtomicInteger _next = new AtomicInteger();
+
+	/**
+	 * Create the pool. The pooled connections are established on first use.
+	 *
+	 * @param primary
+	 * The operator's primary MBean server connection.
+	 *
+	 * @param size
+	 * The number of connections including the primary connection.
+	 *
+	 * @param connectorFactory
+	 * Creates and connects a new JMX connector.
+	 *
+	 * @param statistics
+	 * The scan statistics that count the JMX calls.
+	 */
+	public JmxConnectionPool(MBeanServerConnection primary, int size, Callable<JMXConnector> connectorFactory, ScanStatistics statistics) {
+		_connectorFactory = connectorFactory;
+		_connections = new MBeanServerConnection[Math.max(size, 1)];
+		_pooledConnections = new PooledConnection[_connections.length - 1];
+		_connections[0] = primary;
+		for (int i = 1; i < _connections.length; i++) {
+			_pooledConnections[i - 1] = new PooledConnection(i);
+			MBeanServerConnection connection = (MBeanServerConnection)Proxy.newProxyInstance(
+					MBeanServerConnection.class.getClassLoader(),
+					new Class<?>[] { MBeanServerConnection.class },
+					_pooledConnections[i - 1]);
+			_connections[i] = statistics.newCountingConnection(connection);
+		}
+	}
+
+	/**
+	 * Get the next connection of the pool in round-robin order.
+	 */
+	public MBeanServerConnection nextConnection() {
+		if (_connections.length == 1) {
+			return _connections[0];
+		}
+		return _connections[Math.abs(_next.getAndIncrement() % _connections.length)];
+	}
+
+	public int getSize() {
+		return _connections.length;
+	}
+
+	/**
+	 * Get the number of connections that are currently healthy, including
+	 * the primary connection.
+	 *
+	 * @param isPrimaryConnected
+	 * Specifies whether the operator's primary connection is connected.
+	 */
+	public int getHealthyCount(boolean isPrimaryConnected) {
+		int count = isPrimaryConnected ? 1 : 0;
+		for (PooledConnection connection : _pooledConnections) {
+			if (connection._isHealthy) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Get the number of failures of all pooled connections.
+	 */
+	public int getFailureCount() {
+		int count = 0;
+		for (PooledConnection connection : _pooledConnections) {
+			count += connection._nFailures.get();
+		}
+		return count;
+	}
+
+	/**
+	 * Close the connections that are owned by the pool. The primary
+	 * connection is closed by the operator.
+	 */
+	@Override
+	public void close() {
+		for (PooledConnection connection : _pooledConnections) {
+			connection.close();
+		}
+	}
+
+}
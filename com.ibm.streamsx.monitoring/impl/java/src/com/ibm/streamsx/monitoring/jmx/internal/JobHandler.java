@@ -8,7 +8,6 @@
 package com.ibm.streamsx.monitoring.jmx.internal;
 
 import javax.management.Notification;
-import javax.management.NotificationFilterSupport;
 import javax.management.NotificationListener;
 
 import org.apache.log4j.Logger;
@@ -18,8 +17,10 @@ import java.io.IOException;
 //import java.io.InputStream;
 //import java.io.InputStreamReader;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 //import java.net.URL;
 import javax.management.InstanceNotFoundException;
@@ -76,7 +77,31 @@ public class JobHandler implements NotificationListener, Closeable {
 
 	private Map<String /* peId */, PeHandler> _peHandlers = new HashMap<>();
 
+	/**
+	 * The tuple container that buffers the tuples of this job if the metrics
+	 * are captured by a worker thread. It is created on first use.
+	 */
+	private MetricsTupleContainer _bufferedTupleContainer = null;
+
+	/**
+	 * Aggregates the metrics of the channels of the parallel regions, or
+	 * null if the channels are not aggregated.
+	 */
+	private ChannelAggregator _channelAggregator = null;
+
 	public JobHandler(OperatorConfiguration applicationConfiguration, String instanceId, String jobId) {
+		this(applicationConfiguration, instanceId, jobId, null, null);
+	}
+
+	/**
+	 * @param jobName
+	 * The job name, or null if it shall be retrieved from the JobMXBean.
+	 * 
+	 * @param topology
+	 * The topology that is discovered in bulk, or null if the operators
+	 * shall be retrieved from the JobMXBean.
+	 */
+	public JobHandler(OperatorConfiguration applicationConfiguration, String instanceId, String jobId, String jobName, InstanceTopology topology) {
 
 		boolean isDebugEnabled = _trace.isDebugEnabled();
 		if (isDebugEnabled) {
@@ -88,37 +113,30 @@ public class JobHandler implements NotificationListener, Closeable {
 		_jobId = jobId;
 
 		_objName = ObjectNameBuilder.job(_instanceId, _jobId);
-		_job = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), _objName, JobMXBean.class, true);
+		_job = JMX.newMXBeanProxy(_operatorConfiguration.get_pooledMbeanServerConnection(), _objName, JobMXBean.class, true);
 
-		_jobName = _job.getName();
+		_jobName = (jobName != null) ? jobName : _job.getName();
 
-		/*
-		 * Register to get job-related notifications.
-		 */
-		NotificationFilterSupport filter = new NotificationFilterSupport();
-		filter.enableType(Notifications.INACTIVITY_WARNING);
-		try {
-			_operatorConfiguration.get_mbeanServerConnection().addNotificationListener(_objName, this, filter, null);
-		} catch (InstanceNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		//	TODO      jmxc.addConnectionNotificationListener(this, null, null); // listen for potential lost notifications
+		addNotificationListener();
 
 		/*
 		 * Create handlers for operators that match the filter criteria.
 		 */
 		if (OpType.METRICS_SOURCE == _operatorConfiguration.get_OperatorType()) {
-			for(String operatorName : _job.getOperators()) {
-				addValidOperator(operatorName);
+			if (ChannelAggregationMode.perChannel != _operatorConfiguration.get_channelAggregation()) {
+				_channelAggregator = new ChannelAggregator(_operatorConfiguration);
+			}
+			Set<String> operatorNames = (topology != null) ? topology.getOperators(_jobId) : null;
+			for(String operatorName : (operatorNames != null) ? operatorNames : _job.getOperators()) {
+				addValidOperator(operatorName, topology);
 			}
 		}
 		/*
 		 * Create handlers for operators that match the filter criteria.
 		 */
-		for(String peId : _job.getPes()) {
-			addPE(peId);
+		Set<String> peIds = (topology != null) ? topology.getPes(_jobId) : null;
+		for(String peId : (peIds != null) ? peIds : _job.getPes()) {
+			addPE(peId, topology);
 		}
 
 	}
@@ -139,7 +157,110 @@ public class JobHandler implements NotificationListener, Closeable {
 		}
 	}
 
+	/**
+	 * Register to get job-related notifications.
+	 */
+	protected void addNotificationListener() {
+		try {
+			_operatorConfiguration.get_notificationRegistry().register(_objName, this, Notifications.INACTIVITY_WARNING);
+		} catch (InstanceNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		//	TODO      jmxc.addConnectionNotificationListener(this, null, null); // listen for potential lost notifications
+	}
+
+	/**
+	 * Restore the handlers after the operator established a new JMX
+	 * connection. The notification registry registers the listeners again. The PEs
+	 * that were restarted while the operator was disconnected get new ids,
+	 * so the handlers of removed PEs are closed and handlers for new PEs
+	 * are added.
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	public void reconnect() throws Exception {
+		for(OperatorHandler handler : _operatorHandlers.values()) {
+			handler.reconnect();
+		}
+		Set<String> peIds = _job.getPes();
+		for(String peId : new ArrayList<>(_peHandlers.keySet())) {
+			if (!peIds.contains(peId)) {
+				PeHandler handler = _peHandlers.remove(peId);
+				try {
+					handler.close();
+				}
+				catch (Exception ignore) {
+					// The listeners were removed with the broken connection.
+				}
+			}
+		}
+		for(String peId : peIds) {
+			if (_peHandlers.containsKey(peId)) {
+				_peHandlers.get(peId).reconnect();
+			}
+			else {
+				addPE(peId);
+			}
+		}
+	}
+
+	/**
+	 * Apply a changed filter document. Handlers are closed for operators and
+	 * PEs that do not meet the filter criteria anymore, and added for those
+	 * that meet the criteria now. The other handlers reconcile their ports
+	 * and metrics.
+	 * <p>
+	 * Must be called by the thread that scans the instance, between two
+	 * scans.
+	 * </p>
+	 * 
+	 * @throws Exception
+	 * Throws if a JMX call fails.
+	 */
+	public void reconcileFilters() throws Exception {
+		if (_channelAggregator != null) {
+			_channelAggregator.reconcileFilters();
+		}
+		if (OpType.METRICS_SOURCE == _operatorConfiguration.get_OperatorType()) {
+			Set<String> operatorNames = _job.getOperators();
+			for(String operatorName : new ArrayList<>(_operatorHandlers.keySet())) {
+				if (!operatorNames.contains(operatorName) || !_operatorConfiguration.get_filters().matchesOperatorName(_instanceId, _jobName, operatorName)) {
+					_operatorHandlers.remove(operatorName).close();
+				}
+			}
+			for(String operatorName : operatorNames) {
+				if (_operatorHandlers.containsKey(operatorName)) {
+					_operatorHandlers.get(operatorName).reconcileFilters();
+				}
+				else {
+					addValidOperator(operatorName);
+				}
+			}
+		}
+		Set<String> peIds = _job.getPes();
+		for(String peId : new ArrayList<>(_peHandlers.keySet())) {
+			if (!peIds.contains(peId) || !_operatorConfiguration.get_filters().matchesPeId(_instanceId, _jobName, peId)) {
+				_peHandlers.remove(peId).close();
+			}
+		}
+		for(String peId : peIds) {
+			if (_peHandlers.containsKey(peId)) {
+				_peHandlers.get(peId).reconcileFilters();
+			}
+			else {
+				addPE(peId);
+			}
+		}
+	}
+
 	protected void addValidOperator(String operatorName) {
+		addValidOperator(operatorName, null);
+	}
+
+	protected void addValidOperator(String operatorName, InstanceTopology topology) {
 		boolean matches = _operatorConfiguration.get_filters().matchesOperatorName(_instanceId, _jobName, operatorName);
 		if (_trace.isInfoEnabled()) {
 			if (matches) {
@@ -150,11 +271,15 @@ public class JobHandler implements NotificationListener, Closeable {
 			}
 		}
 		if (matches) {
-			_operatorHandlers.put(operatorName, new OperatorHandler(_operatorConfiguration, _instanceId, _jobId, _jobName, operatorName));
+			_operatorHandlers.put(operatorName, new OperatorHandler(_operatorConfiguration, _instanceId, _jobId, _jobName, operatorName, topology));
 		}
 	}
 	
 	protected void addPE(String peId) {
+		addPE(peId, null);
+	}
+
+	protected void addPE(String peId, InstanceTopology topology) {
 		boolean matches = _operatorConfiguration.get_filters().matchesPeId(_instanceId, _jobName, peId);
 		if (_trace.isInfoEnabled()) {
 			if (matches) {
@@ -165,7 +290,7 @@ public class JobHandler implements NotificationListener, Closeable {
 			}
 		}
 		if (matches) {
-			_peHandlers.put(peId, new PeHandler(_operatorConfiguration, _instanceId, _jobId, _jobName, peId));
+			_peHandlers.put(peId, new PeHandler(_operatorConfiguration, _instanceId, _jobId, _jobName, peId, topology));
 		}
 	}
 	
@@ -174,47 +299,98 @@ public class JobHandler implements NotificationListener, Closeable {
 	 * 
 	 * Code taken from:
 	 * http://www.ibm.com/support/knowledgecenter/en/SSCRJU_4.2.0/com.ibm.streams.dev.doc/doc/jmxapi-lgop.html
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
 	 * @throws Exception 
 	 */
-	public void captureMetrics() throws Exception {
+	public void captureMetrics(MetricsTupleContainer tc) throws Exception {
 		boolean isDebugEnabled = _trace.isDebugEnabled();
 		if (isDebugEnabled) {
 			_trace.debug("--> captureMetrics(instance=" + _instanceId + ",jobId=" + _jobId + ")");
 		}
-		MetricsTupleContainer schema = _operatorConfiguration.get_tupleContainerMetricsSource();
-		schema.setJobId(_jobId);
-		schema.setJobName(_jobName);
+		tc.setJobId(_jobId);
+		tc.setJobName(_jobName);
+		_operatorConfiguration.get_scanStatistics().incrementObjectsVisited(ScanStatistics.Level.job);
+		JobMetricsSnapshot snapshot = null;
+		if (MetricsRetrievalMode.jobSnapshot == _operatorConfiguration.get_metricsRetrievalMode()) {
+			snapshot = retrieveMetricsSnapshot();
+		}
 		for(String operatorName : _operatorHandlers.keySet()) {
-			_operatorHandlers.get(operatorName).captureMetrics();
+			_operatorHandlers.get(operatorName).captureMetrics(tc, snapshot, _channelAggregator);
 		}
 		for(String peId : _peHandlers.keySet()) {
-			_peHandlers.get(peId).captureMetrics();
+			_peHandlers.get(peId).captureMetrics(tc, snapshot);
+		}
+		if (_channelAggregator != null) {
+			_channelAggregator.submit(tc);
 		}
 		if (isDebugEnabled) {
 			_trace.debug("<-- captureMetrics(instance=" + _instanceId + ",jobId=" + _jobId + ")");
 		}
 	}
 
+	/**
+	 * Retrieve the metrics of all operators, PEs, ports, and connections of
+	 * this job with one remote call.
+	 * 
+	 * @return
+	 * The parsed snapshot, or null if the snapshot cannot be retrieved or
+	 * parsed. In this case, the handlers retrieve the metrics per object.
+	 */
+	protected JobMetricsSnapshot retrieveMetricsSnapshot() {
+		try {
+			return JobMetricsSnapshot.parse(_job.snapshotMetrics(true));
+		}
+		catch (Exception e) {
+			_trace.error("Cannot retrieve the metrics snapshot of job [" + _jobId + "][" + _jobName + "], retrieving the metrics per object: " + e);
+			return null;
+		}
+	}
+
 	/**
 	 * Remove notification listeners from this and child objects.
 	 */
 	@Override
 	public void close() throws Exception {
 		// Remove the notification listener.
-		_operatorConfiguration.get_mbeanServerConnection().removeNotificationListener(_objName, this);
+		_operatorConfiguration.get_notificationRegistry().unregister(_objName, this);
 		// Close all resources of all child objects.
 		for(OperatorHandler handler : _operatorHandlers.values()) {
 			handler.close();
 		}
-		_peHandlers.clear();
+		_operatorHandlers.clear();
 		for(PeHandler handler : _peHandlers.values()) {
 			handler.close();
 		}
 		_peHandlers.clear();
+		if (_channelAggregator != null) {
+			_channelAggregator.close();
+		}
 	}
 	
 	public String getJobName() {
 		return _jobName;
 	}
 
+	public String getJobId() {
+		return _jobId;
+	}
+
+	/**
+	 * Get the tuple container that buffers the tuples of this job while
+	 * the metrics are captured by a worker thread.
+	 * 
+	 * @param tc
+	 * The operator's tuple container, which is used as template if the
+	 * buffered tuple container does not exist yet.
+	 */
+	public MetricsTupleContainer getBufferedTupleContainer(MetricsTupleContainer tc) {
+		if (_bufferedTupleContainer == null) {
+			_bufferedTupleContainer = tc.newBufferedContainer();
+		}
+		return _bufferedTupleContainer;
+	}
+
 }
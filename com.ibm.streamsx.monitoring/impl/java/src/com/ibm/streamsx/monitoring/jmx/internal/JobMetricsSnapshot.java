@@ -0,0 +1,259 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.ibm.json.java.JSON;
+import com.ibm.json.java.JSONArray;
+import com.ibm.json.java.JSONArtifact;
+import com.ibm.json.java.JSONObject;
+import com.ibm.streams.management.Metric;
+import com.ibm.streams.management.MetricMetadata.Kind;
+import com.ibm.streams.management.MetricMetadata.Type;
+
+/**
+ * Holds the metrics of all PEs, operators, ports, and connections of a
+ * job, which are retrieved with one {@code JobMXBean.snapshotMetrics()}
+ * call.
+ * <p>
+ * The snapshot is a JSON document that contains the job's PEs. Each PE
+ * contains its metrics, input and output ports, and operators. Each output
+ * port can contain connections, and each operator contains its metrics,
+ * and input and output ports:
+ * </p>
+ * <pre>
+ * {"pes":[{"id":"1","resource":"host","metrics":[{"name":"nCpuMilliseconds","value":1,...}],
+ *   "inputPorts":[{"index":0,"metrics":[...]}],
+ *   "outputPorts":[{"index":0,"metrics":[...],"connections":[{"id":"...","metrics":[...]}]}],
+ *   "operators":[{"name":"op","metrics":[...],"inputPorts":[...],"outputPorts":[...]}]}]}
+ * </pre>
+ * <p>
+ * If an object is not part of the snapshot, or if one of its metrics lacks
+ * the kind, type, or lastTimeRetrieved attribute, the get methods return
+ * null, and the corresponding handler retrieves the metrics from its MXBean.
+ * </p>
+ */
+public class JobMetricsSnapshot {
+
+	/**
+	 * Logger for tracing.
+	 */
+	private static Logger _trace = Logger.getLogger(JobMetricsSnapshot.class.getName());
+
+	/**
+	 * The metrics of a PE, operator, port, or connection, and the
+	 * placement attributes that are included in the snapshot.
+	 */
+	private static class Entry {
+
+		Set<Metric> metrics = new HashSet<>();
+
+		Map<Integer /* port index */, Set<Metric>> inputPorts = new HashMap<>();
+
+		Map<Integer /* port index */, Set<Metric>> outputPorts = new HashMap<>();
+
+		String peId = null;
+
+		String resource = null;
+
+		Integer channel = null;
+	}
+
+	private Map<String /* peId */, Entry> _pes = new HashMap<>();
+
+	private Map<String /* operatorName */, Entry> _operators = new HashMap<>();
+
+	private Map<String /* connectionId */, Set<Metric>> _connections = new HashMap<>();
+
+	private JobMetricsSnapshot() {
+	}
+
+	/**
+	 * Parse the JSON-formatted snapshot.
+	 *
+	 * @param snapshot
+	 * The string returned by {@code JobMXBean.snapshotMetrics()}.
+	 *
+	 * @throws IOException
+	 * Throws if the snapshot is not a valid JSON document.
+	 */
+	public static JobMetricsSnapshot parse(String snapshot) throws IOException {
+		JobMetricsSnapshot result = new JobMetricsSnapshot();
+		JSONArtifact root = JSON.parse(snapshot);
+		if (root instanceof JSONObject) {
+			for (JSONObject pe : objects(((JSONObject)root).get("pes"))) {
+				result.parsePe(pe);
+			}
+		}
+		else {
+			_trace.error("The job metrics snapshot is not a JSON object: " + snapshot);
+		}
+		return result;
+	}
+
+	private void parsePe(JSONObject json) {
+		Entry pe = new Entry();
+		pe.peId = string(json.get("id"));
+		pe.resource = string(json.get("resource"));
+		pe.metrics = parseMetrics(json.get("metrics"));
+		parsePorts(json.get("inputPorts"), pe.inputPorts);
+		parsePorts(json.get("outputPorts"), pe.outputPorts);
+		if (pe.peId != null) {
+			_pes.put(pe.peId, pe);
+		}
+		for (JSONObject op : objects(json.get("operators"))) {
+			Entry operator = new Entry();
+			operator.peId = pe.peId;
+			operator.resource = pe.resource;
+			Object channel = op.get("channel");
+			if (channel instanceof Number) {
+				operator.channel = ((Number)channel).intValue();
+			}
+			operator.metrics = parseMetrics(op.get("metrics"));
+			parsePorts(op.get("inputPorts"), operator.inputPorts);
+			parsePorts(op.get("outputPorts"), operator.outputPorts);
+			String operatorName = string(op.get("name"));
+			if (operatorName != null) {
+				_operators.put(operatorName, operator);
+			}
+		}
+	}
+
+	private void parsePorts(Object json, Map<Integer, Set<Metric>> ports) {
+		for (JSONObject port : objects(json)) {
+			Object index = port.get("index");
+			if (index instanceof Number) {
+				ports.put(((Number)index).intValue(), parseMetrics(port.get("metrics")));
+			}
+			else if (index instanceof String) {
+				ports.put(Integer.valueOf((String)index), parseMetrics(port.get("metrics")));
+			}
+			for (JSONObject connection : objects(port.get("connections"))) {
+				String connectionId = string(connection.get("id"));
+				if (connectionId != null) {
+					_connections.put(connectionId, parseMetrics(connection.get("metrics")));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parse the metrics of one object.
+	 *
+	 * @return
+	 * The metrics, or null if a metric lacks the kind, type, or
+	 * lastTimeRetrieved attribute, in which case the object's metrics are
+	 * retrieved from its MXBean.
+	 */
+	private Set<Metric> parseMetrics(Object json) {
+		Set<Metric> result = new HashSet<>();
+		for (JSONObject metric : objects(json)) {
+			String name = string(metric.get("name"));
+			Object value = metric.get("value");
+			if ((name == null) || !(value instanceof Number)) {
+				continue;
+			}
+			String kind = string(metric.containsKey("metricKind") ? metric.get("metricKind") : metric.get("kind"));
+			String type = string(metric.containsKey("metricType") ? metric.get("metricType") : metric.get("type"));
+			Object lastTimeRetrieved = metric.get("lastTimeRetrieved");
+			if ((kind == null) || (type == null) || !(lastTimeRetrieved instanceof Number)) {
+				if (_trace.isDebugEnabled()) {
+					_trace.debug("The job metrics snapshot lacks attributes of metric " + name + ", retrieve the metrics from the MXBean.");
+				}
+				return null;
+			}
+			result.add(new SnapshotMetric(
+					name,
+					Kind.fromString(kind),
+					Type.fromString(type),
+					((Number)value).longValue(),
+					((Number)lastTimeRetrieved).longValue()));
+		}
+		return result;
+	}
+
+	private static List<JSONObject> objects(Object json) {
+		List<JSONObject> result = new ArrayList<>();
+		if (json instanceof JSONArray) {
+			for (Object obj : (JSONArray)json) {
+				if (obj instanceof JSONObject) {
+					result.add((JSONObject)obj);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static String string(Object json) {
+		return (json != null) ? json.toString() : null;
+	}
+
+	public Set<Metric> getPeMetrics(String peId) {
+		Entry pe = _pes.get(peId);
+		return (pe != null) ? pe.metrics : null;
+	}
+
+	public String getPeResource(String peId) {
+		Entry pe = _pes.get(peId);
+		return (pe != null) ? pe.resource : null;
+	}
+
+	public Set<Metric> getPeInputPortMetrics(String peId, Integer portIndex) {
+		Entry pe = _pes.get(peId);
+		return (pe != null) ? pe.inputPorts.get(portIndex) : null;
+	}
+
+	public Set<Metric> getPeOutputPortMetrics(String peId, Integer portIndex) {
+		Entry pe = _pes.get(peId);
+		return (pe != null) ? pe.outputPorts.get(portIndex) : null;
+	}
+
+	public Set<Metric> getPeConnectionMetrics(String connectionId) {
+		return _connections.get(connectionId);
+	}
+
+	public Set<Metric> getOperatorMetrics(String operatorName) {
+		Entry operator = _operators.get(operatorName);
+		return (operator != null) ? operator.metrics : null;
+	}
+
+	public String getOperatorPeId(String operatorName) {
+		Entry operator = _operators.get(operatorName);
+		return (operator != null) ? operator.peId : null;
+	}
+
+	public String getOperatorResource(String operatorName) {
+		Entry operator = _operators.get(operatorName);
+		return (operator != null) ? operator.resource : null;
+	}
+
+	public Integer getOperatorChannel(String operatorName) {
+		Entry operator = _operators.get(operatorName);
+		return (operator != null) ? operator.channel : null;
+	}
+
+	public Set<Metric> getOperatorInputPortMetrics(String operatorName, Integer portIndex) {
+		Entry operator = _operators.get(operatorName);
+		return (operator != null) ? operator.inputPorts.get(portIndex) : null;
+	}
+
+	public Set<Metric> getOperatorOutputPortMetrics(String operatorName, Integer portIndex) {
+		Entry operator = _operators.get(operatorName);
+		return (operator != null) ? operator.outputPorts.get(portIndex) : null;
+	}
+
+}
@@ -0,0 +1,75 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+/**
+ * Assigns each job to exactly one channel of a parallel region, so the
+ * MetricsSource operators in the channels monitor disjoint sets of jobs.
+ * <p>
+ * The assignment uses rendezvous hashing: each channel gets a pseudo-random
+ * weight that is derived from the job id and the channel index, and the
+ * channel with the highest weight owns the job. The assignment is stable,
+ * and if the number of channels changes, only the jobs of the added or
+ * removed channels move to another channel.
+ * </p>
+ */
+public class JobSharding {
+
+	/**
+	 * Determine whether the given channel owns the job.
+	 * 
+	 * @param jobId
+	 * The job id.
+	 * 
+	 * @param channel
+	 * The channel index of the operator, or -1 if the operator is not in a
+	 * parallel region.
+	 * 
+	 * @param maxChannels
+	 * The number of channels of the parallel region, or 0 if the operator is
+	 * not in a parallel region.
+	 * 
+	 * @return
+	 * True if the channel owns the job, or if the operator is not in a
+	 * parallel region, else false.
+	 */
+	public static boolean isOwner(String jobId, int channel, int maxChannels) {
+		if ((channel < 0) || (maxChannels < 2)) {
+			return true;
+		}
+		return getOwner(jobId, maxChannels) == channel;
+	}
+
+	/**
+	 * Determine the channel that owns the job.
+	 */
+	public static int getOwner(String jobId, int maxChannels) {
+		long jobHash = jobId.hashCode();
+		int owner = 0;
+		long maxWeight = Long.MIN_VALUE;
+		for (int channel = 0; channel < maxChannels; channel++) {
+			long weight = mix((jobHash << 32) | channel);
+			if (weight > maxWeight) {
+				maxWeight = weight;
+				owner = channel;
+			}
+		}
+		return owner;
+	}
+
+	/**
+	 * Scramble the bits of the given value (finalizer of the SplitMix64
+	 * generator).
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+}
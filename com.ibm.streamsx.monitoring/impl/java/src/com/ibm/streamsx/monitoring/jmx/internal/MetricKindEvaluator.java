@@ -0,0 +1,43 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import com.ibm.streams.management.Metric;
+import com.ibm.streams.management.MetricMetadata.Kind;
+
+/**
+ * This metric evaluator delegates to an evaluator that depends on the kind
+ * of the metric. Counter metrics are evaluated by their rate. Gauge, time,
+ * and unknown metrics are evaluated by their value.
+ */
+public class MetricKindEvaluator implements IMetricEvaluator {
+
+	private final IMetricEvaluator _counterEvaluator;
+
+	private final IMetricEvaluator _gaugeEvaluator;
+
+	public MetricKindEvaluator(IMetricEvaluator counterEvaluator, IMetricEvaluator gaugeEvaluator) {
+		_counterEvaluator = counterEvaluator;
+		_gaugeEvaluator = gaugeEvaluator;
+	}
+
+	private IMetricEvaluator getEvaluator(Metric metric) {
+		return (Kind.COUNTER == metric.getMetricKind()) ? _counterEvaluator : _gaugeEvaluator;
+	}
+
+	@Override
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot) {
+		return getEvaluator(metric).isSubmittable(metric, store, slot);
+	}
+
+	@Override
+	public void updateStatus(Metric metric, MetricStateStore store, int slot) {
+		getEvaluator(metric).updateStatus(metric, store, slot);
+	}
+
+}
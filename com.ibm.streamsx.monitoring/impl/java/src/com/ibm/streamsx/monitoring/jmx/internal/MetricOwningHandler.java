@@ -7,12 +7,10 @@
 
 package com.ibm.streamsx.monitoring.jmx.internal;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import com.ibm.streams.management.Metric;
+import com.ibm.streams.management.MetricMetadata.Kind;
 import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration;
 
 /**
@@ -62,17 +60,34 @@ abstract class MetricOwningHandler {
 	private MetricsRegistrationMode _metricsRegistrationMode = MetricsRegistrationMode.InitialMetricsRegistration;
 
 	/**
-	 * This map holds all metrics that are captured.
+	 * This table holds all metrics that are captured, with their slots in the
+	 * operator's metric state store. In DynamicMetricsRegistration mode, it
+	 * holds also the names of the ignored metrics. Using the table improves
+	 * performance because we do not need to match the name against the
+	 * configured filters each time.
 	 */
-	private Map<String /* metric name */, IMetricEvaluator> _capturedMetrics = new HashMap<>();
-	
+	private MetricSlots _metricSlots = new MetricSlots();
+
 	/**
-	 * This set holds, in DynamicMetricsRegistration mode, all metric names 
-	 * from metrics that are ignored. Using this set improves performance
-	 * because we do not need to match the name against the configured filters
-	 * each time. 
+	 * The resource of the last capture, if dictionary entries are emitted.
 	 */
-	private Set<String /* metric name */> _ignoredMetrics = new HashSet<>();
+	private String _dictionaryResource = null;
+
+	/**
+	 * The generation of the identity attributes of this handler's metrics.
+	 * It is incremented if the resource changes, for example, because the PE
+	 * is relocated, so the dictionary entries are emitted again.
+	 */
+	private int _dictionaryGeneration = 1;
+
+	/**
+	 * If the handler belongs to a channel of a parallel region and the
+	 * channels are aggregated, the aggregator of the job, and the group of
+	 * the logical operator or port, to which the metrics are added.
+	 */
+	private ChannelAggregator _channelAggregator = null;
+
+	private ChannelAggregator.Group _channelGroup = null;
 
 	/**
 	 * 
@@ -89,34 +104,69 @@ abstract class MetricOwningHandler {
 	 * All other instance-, job-, operator-, port-relevant
 	 * tuple attributes are already set.
 	 * 
+	 * @param tc
+	 * The tuple container that holds the already set attributes.
+	 * 
 	 * @param metric
 	 * The JMX metric object that holds the metric-relevant information.
 	 * 
+	 * @param slot
+	 * The slot of the metric in the metric state store.
+	 * 
+	 * @param rate
+	 * The per-second rate of a counter metric, or NaN.
+	 * 
 	 * @throws Exception
 	 * The exception is thrown if submitting the tuple fails.
 	 */
-	protected void submitMetric(Metric metric) throws Exception {
-		MetricsTupleContainer tc = _operatorConfiguration.get_tupleContainerMetricsSource(); 
+	protected void submitMetric(MetricsTupleContainer tc, Metric metric, int slot, double rate) throws Exception {
+		setMetricAttributes(tc, metric, slot, rate);
+		submitDictionaryEntry(tc, slot);
+		tc.submit();
+		_operatorConfiguration.get_scanStatistics().incrementTuplesEmitted();
+	}
+
+	/**
+	 * Set the metric-relevant tuple attributes.
+	 */
+	private void setMetricAttributes(MetricsTupleContainer tc, Metric metric, int slot, double rate) {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		tc.setSeriesId(store.getSeriesId(slot));
 		tc.setMetricType(metric.getMetricType());
 		tc.setMetricKind(metric.getMetricKind());
 		tc.setMetricName(metric.getName());
 		tc.setMetricValue(metric.getValueAsLong());
 		tc.setLastTimeRetrieved(metric.getLastTimeRetrieved());
-		tc.submit();
+		tc.setMetricRate(rate);
+	}
+
+	/**
+	 * If a dictionary port is used, submit the dictionary entry of the
+	 * series if it is new or if the identity attributes changed.
+	 */
+	private void submitDictionaryEntry(MetricsTupleContainer tc, int slot) throws Exception {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		if (tc.hasDictionary() && (store.getDictionaryGeneration(slot) != _dictionaryGeneration)) {
+			tc.submitDictionaryEntry();
+			store.setDictionaryGeneration(slot, _dictionaryGeneration);
+		}
 	}
 
 	/**
 	 * Determine whether a given metric name is relevant, which means, the
 	 * corresponding metric name matches the specified filters and shall be
-	 * captured.
+	 * captured, and get the evaluator that implements its emit policy. Both
+	 * are derived from one filter lookup.
 	 * 
 	 * @param metricName
 	 * Specifies the metric name that is evaluated.
 	 * 
 	 * @return
-	 * True if the metric is relevant and shall be captured, else false.
+	 * The evaluator of the emit policy, which the filter document specifies,
+	 * or the operator's default evaluator. Null if the metric is not
+	 * relevant.
 	 */
-	protected abstract boolean isRelevantMetric(String metricName);
+	protected abstract IMetricEvaluator getMetricEvaluator(String metricName);
 	
 	/**
 	 * Retrieve the metrics using the metrics' parent object, for example,
@@ -127,6 +177,23 @@ abstract class MetricOwningHandler {
 	 */
 	protected abstract Set<Metric> retrieveMetrics();
 	
+	/**
+	 * Retrieve the metrics and add the latency of the call to the scan
+	 * statistics.
+	 * 
+	 * @return
+	 * The retrieved metrics.
+	 */
+	private Set<Metric> retrieveMetricsTimed() {
+		long start = System.nanoTime();
+		try {
+			return retrieveMetrics();
+		}
+		finally {
+			_operatorConfiguration.get_scanStatistics().recordRetrieveMetricsLatency(System.nanoTime() - start);
+		}
+	}
+
 	/**
 	 * In case of InitialMetricsRegistration mode, retrieve the metrics while
 	 * constructing a class object and register all relevant metrics.
@@ -136,36 +203,143 @@ abstract class MetricOwningHandler {
 			Set<Metric> metrics = retrieveMetrics();
 			for(Metric metric: metrics) {
 				String metricName = metric.getName();
-				if (isRelevantMetric(metricName)) {
-					_capturedMetrics.put(metricName, _operatorConfiguration.newDefaultMetricEvaluator());
+				IMetricEvaluator evaluator = getMetricEvaluator(metricName);
+				if (evaluator != null) {
+					captureMetric(metricName, evaluator);
 				}
 			}
 		}
 	}
+
+	/**
+	 * Add a metric to the captured metrics, and allocate its slot in the
+	 * metric state store.
+	 * 
+	 * @return
+	 * The position of the metric in the metric slots table.
+	 */
+	private int captureMetric(String metricName, IMetricEvaluator evaluator) {
+		int slot = _operatorConfiguration.get_metricStateStore().allocate();
+		_metricSlots.add(metricName, slot, evaluator);
+		return _metricSlots.find(metricName);
+	}
+
+	/**
+	 * Add the metrics of this channel to the aggregates of the logical
+	 * operator or port, beginning with the current scan cycle.
+	 */
+	protected void joinChannelGroup(ChannelAggregator aggregator, String logicalName, String origin, int portIndex) {
+		if (_channelAggregator != aggregator) {
+			_channelAggregator = aggregator;
+			_channelGroup = aggregator.getGroup(logicalName, origin, portIndex);
+		}
+	}
+
+	/**
+	 * Release the slots of all captured metrics. Must be called when the
+	 * handler is closed, by the thread that scans the instance, between two
+	 * scans. A released slot can be allocated again by another handler
+	 * right away, so the scan must not use this handler anymore.
+	 */
+	public void close() throws Exception {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		for (int position = 0; position < _metricSlots.capacity(); position++) {
+			if ((_metricSlots.getName(position) != null) && (_metricSlots.getSlot(position) != MetricSlots.IGNORED)) {
+				store.release(_metricSlots.getSlot(position));
+			}
+		}
+		_metricSlots = new MetricSlots();
+	}
 	
+	/**
+	 * Evaluate the metric decisions again after the filter document changed.
+	 * Metrics that are not relevant anymore are removed. The metrics that are
+	 * still relevant keep their state, and get the evaluator of their
+	 * possibly changed emit policy. In
+	 * DynamicMetricsRegistration mode, the ignored metrics are evaluated
+	 * again during the next capture, else the metrics are retrieved to
+	 * register the metrics that became relevant.
+	 */
+	protected void reconcileMetrics() {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		MetricSlots metricSlots = new MetricSlots();
+		for (int position = 0; position < _metricSlots.capacity(); position++) {
+			String metricName = _metricSlots.getName(position);
+			int slot = _metricSlots.getSlot(position);
+			if ((metricName == null) || (slot == MetricSlots.IGNORED)) {
+				// Ignored metrics are evaluated again.
+				continue;
+			}
+			IMetricEvaluator evaluator = getMetricEvaluator(metricName);
+			if (evaluator != null) {
+				metricSlots.add(metricName, slot, evaluator);
+			}
+			else {
+				store.release(slot);
+			}
+		}
+		_metricSlots = metricSlots;
+		if (_metricsRegistrationMode.equals(MetricsRegistrationMode.InitialMetricsRegistration)) {
+			for(Metric metric: retrieveMetrics()) {
+				String metricName = metric.getName();
+				if (_metricSlots.find(metricName) < 0) {
+					IMetricEvaluator evaluator = getMetricEvaluator(metricName);
+					if (evaluator != null) {
+						captureMetric(metricName, evaluator);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Retrieve metrics, depending on the registration mode evaluate which
 	 * metrics are relevant, and submit tuples for changed metric values.
 	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @throws Exception
+	 * Throws Exception if submitting the tuple fails. 
+	 */
+	protected void captureAndSubmitChangedMetrics(MetricsTupleContainer tc) throws Exception {
+		captureAndSubmitChangedMetrics(tc, null);
+	}
+
+	/**
+	 * Depending on the registration mode evaluate which of the given metrics
+	 * are relevant, and submit tuples for changed metric values.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @param metrics
+	 * The metrics that are already retrieved, for example, from a job
+	 * metrics snapshot. If null, the metrics are retrieved using the
+	 * metrics' parent object.
+	 * 
 	 * @throws Exception
 	 * Throws Exception if submitting the tuple fails. 
 	 */
-	protected void captureAndSubmitChangedMetrics() throws Exception {
+	protected void captureAndSubmitChangedMetrics(MetricsTupleContainer tc, Set<Metric> metrics) throws Exception {
+		if (tc.hasDictionary() && (_dictionaryResource != null) && !_dictionaryResource.equals(tc.getResource())) {
+			_dictionaryGeneration++;
+		}
+		_dictionaryResource = tc.getResource();
 		if (_metricsRegistrationMode.equals(MetricsRegistrationMode.InitialMetricsRegistration)) {
 			/*
 			 * Registration happened once while setting up the parent object.
 			 * If there are no relevant metrics, return immediately.
 			 */
-			if(_capturedMetrics.size() > 0) {
-				Set<Metric> metrics = retrieveMetrics();
+			if(_metricSlots.getCapturedCount() > 0) {
+				if (metrics == null) {
+					metrics = retrieveMetricsTimed();
+				}
 				for (Metric metric : metrics) {
-					String metricName = metric.getName();
-					if (_capturedMetrics.containsKey(metricName)) {
-						IMetricEvaluator evaluator = _capturedMetrics.get(metricName);
-						if (evaluator.isSubmittable(metric)) {
-							evaluator.updateStatus(metric);
-							submitMetric(metric);
-						}
+					_operatorConfiguration.get_scanStatistics().incrementMetricsEvaluated();
+					int position = _metricSlots.find(metric.getName());
+					if (position >= 0) {
+						evaluateAndSubmitMetric(tc, metric, position);
 					}
 				}
 			}
@@ -175,16 +349,17 @@ abstract class MetricOwningHandler {
 			 * The metrics must always be retrieved because we must decide
 			 * periodically which metrics are relevant. 
 			 */
-			Set<Metric> metrics;
-			try {
-				metrics = retrieveMetrics();
-			} catch (NullPointerException e) {
-				/*
-				 * This error pops up, occasionally, when trying to access metrics 
-				 * too soon. It happens once at the beginning of launching this 
-				 * operator. This can safely be ignored.
-				 */
-				return;
+			if (metrics == null) {
+				try {
+					metrics = retrieveMetricsTimed();
+				} catch (NullPointerException e) {
+					/*
+					 * This error pops up, occasionally, when trying to access metrics 
+					 * too soon. It happens once at the beginning of launching this 
+					 * operator. This can safely be ignored.
+					 */
+					return;
+				}
 			}
 			/*
 			 * This solution is required for metrics that do not exist as soon
@@ -203,46 +378,83 @@ abstract class MetricOwningHandler {
 			 * 
 			 * Always retrieve the custom metrics. If a custom metric was not
 			 * handled before, verify whether its name matches the filters.
-			 * If it matches the filters, store the metric in the
-			 * _capturedCustomMetrics map. If it does not match, store the name
-			 * in the _uncapturedCustomMetrics set. If a custom metric was handled
-			 * before, check whether it is either in the _capturedCustomMetrics map
-			 * or the _uncapturedCustomMetrics set, and act accordingly.
+			 * If it matches the filters, allocate a slot for the metric. If
+			 * it does not match, store the name with the IGNORED slot. If a
+			 * custom metric was handled before, check its slot, and act
+			 * accordingly.
 			 */
 			for (Metric metric : metrics) {
 				String metricName = metric.getName();
+				_operatorConfiguration.get_scanStatistics().incrementMetricsEvaluated();
+				int position = _metricSlots.find(metricName);
 				/*
-				 * Metric shall be captured.
+				 * Decide whether the metric shall be captured or ignored.
 				 */
-				if (_capturedMetrics.containsKey(metricName)) {
-					IMetricEvaluator evaluator = _capturedMetrics.get(metricName);
-					if (evaluator.isSubmittable(metric)) {
-						evaluator.updateStatus(metric);
-						submitMetric(metric);
+				if (position < 0) {
+					IMetricEvaluator evaluator = getMetricEvaluator(metricName);
+					if (evaluator != null) {
+						position = captureMetric(metricName, evaluator);
+					}
+					else {
+						_metricSlots.add(metricName, MetricSlots.IGNORED, null);
 					}
 				}
 				/*
-				 * Metric shall be ignored.
-				 */
-				else if (_ignoredMetrics.contains(metricName)) {
-					// Ignore this metric because it does not match the filters.
-				}
-				/*
-				 * Decide whether the metric shall be captured or ignored.
+				 * Metric shall be captured, else it is ignored because it
+				 * does not match the filters.
 				 */
-				else if(isRelevantMetric(metricName)) {
-					IMetricEvaluator evaluator = _operatorConfiguration.newDefaultMetricEvaluator();
-					_capturedMetrics.put(metricName, evaluator);
-					if (evaluator.isSubmittable(metric)) {
-						evaluator.updateStatus(metric);
-						submitMetric(metric);
-					}
-				}
-				else {
-					_ignoredMetrics.add(metricName);
+				if ((position >= 0) && (_metricSlots.getSlot(position) != MetricSlots.IGNORED)) {
+					evaluateAndSubmitMetric(tc, metric, position);
 				}
 			}
 		}
 	}
+
+	/**
+	 * Submit a tuple if the evaluator of the metric decides that the metric
+	 * is submittable. If the handler belongs to a channel of a parallel
+	 * region, the metric is added to the aggregate of the logical operator
+	 * or port, and a tuple is submitted only if the per-channel tuples are
+	 * requested.
+	 * 
+	 * @param position
+	 * The position of the metric in the metric slots table.
+	 */
+	private void evaluateAndSubmitMetric(MetricsTupleContainer tc, Metric metric, int position) throws Exception {
+		MetricStateStore store = _operatorConfiguration.get_metricStateStore();
+		IMetricEvaluator evaluator = _metricSlots.getEvaluator(position);
+		int slot = _metricSlots.getSlot(position);
+		boolean isPerChannel = true;
+		if (_channelGroup != null) {
+			_channelAggregator.add(_channelGroup, metric, evaluator);
+			isPerChannel = (ChannelAggregationMode.aggregated != _operatorConfiguration.get_channelAggregation());
+		}
+		if (isPerChannel && (evaluator instanceof TopKMetricEvaluator)) {
+			/*
+			 * The tuple container keeps the tuple if its value is among the
+			 * highest values of the policy. The dictionary entry is submitted
+			 * with the tuple.
+			 */
+			double rate = Double.NaN;
+			if (Kind.COUNTER == metric.getMetricKind()) {
+				rate = store.getRate(slot, metric.getValueAsLong(), metric.getLastTimeRetrieved());
+			}
+			setMetricAttributes(tc, metric, slot, rate);
+			tc.offer((TopKMetricEvaluator)evaluator, metric.getValueAsLong(), slot, _dictionaryGeneration);
+		}
+		else if (isPerChannel && evaluator.isSubmittable(metric, store, slot)) {
+			/*
+			 * The rate is computed from the sample of the previous scan cycle.
+			 * It is NaN after a counter reset.
+			 */
+			double rate = Double.NaN;
+			if (Kind.COUNTER == metric.getMetricKind()) {
+				rate = store.getRate(slot, metric.getValueAsLong(), metric.getLastTimeRetrieved());
+			}
+			evaluator.updateStatus(metric, store, slot);
+			submitMetric(tc, metric, slot, rate);
+		}
+		store.setSample(slot, metric.getValueAsLong(), metric.getLastTimeRetrieved());
+	}
 	
 }
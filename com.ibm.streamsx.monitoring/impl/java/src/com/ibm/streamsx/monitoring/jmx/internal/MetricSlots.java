@@ -0,0 +1,127 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+/**
+ * Maps the metric names of a handler to their slots in the metric state
+ * store and to their evaluators. The names are stored in an open addressing
+ * hash table with primitive slot values, so there is no entry object per
+ * metric. Names of ignored metrics are stored with the IGNORED slot.
+ * <p>
+ * Metrics are not removed individually. If the filters change, the handler
+ * copies the remaining metrics to a new table.
+ * </p>
+ */
+final class MetricSlots {
+
+	/**
+	 * The slot of a metric that does not match the filters.
+	 */
+	static final int IGNORED = -1;
+
+	private String[] _names = new String[8];
+
+	private int[] _slots = new int[8];
+
+	private IMetricEvaluator[] _evaluators = new IMetricEvaluator[8];
+
+	private int _size = 0;
+
+	private int _capturedCount = 0;
+
+	/**
+	 * Get the number of positions, which can be iterated with getName().
+	 */
+	int capacity() {
+		return _names.length;
+	}
+
+	/**
+	 * Get the number of captured metrics.
+	 */
+	int getCapturedCount() {
+		return _capturedCount;
+	}
+
+	/**
+	 * Find the position of a metric name.
+	 *
+	 * @return
+	 * The position, or -1 if the name is not in the table.
+	 */
+	int find(String name) {
+		int mask = _names.length - 1;
+		for (int position = name.hashCode() & mask; ; position = (position + 1) & mask) {
+			String candidate = _names[position];
+			if (candidate == null) {
+				return -1;
+			}
+			if (candidate.equals(name)) {
+				return position;
+			}
+		}
+	}
+
+	/**
+	 * Get the metric name at the position, or null if the position is empty.
+	 */
+	String getName(int position) {
+		return _names[position];
+	}
+
+	int getSlot(int position) {
+		return _slots[position];
+	}
+
+	IMetricEvaluator getEvaluator(int position) {
+		return _evaluators[position];
+	}
+
+	/**
+	 * Add a metric name that is not in the table.
+	 *
+	 * @param slot
+	 * The slot in the metric state store, or IGNORED.
+	 */
+	void add(String name, int slot, IMetricEvaluator evaluator) {
+		if ((_size + 1) * 2 > _names.length) {
+			resize(_names.length * 2);
+		}
+		insert(name, slot, evaluator);
+		_size++;
+		if (slot != IGNORED) {
+			_capturedCount++;
+		}
+	}
+
+	private void insert(String name, int slot, IMetricEvaluator evaluator) {
+		int mask = _names.length - 1;
+		int position = name.hashCode() & mask;
+		while (_names[position] != null) {
+			position = (position + 1) & mask;
+		}
+		_names[position] = name;
+		_slots[position] = slot;
+		_evaluators[position] = evaluator;
+	}
+
+	private void resize(int capacity) {
+		String[] names = _names;
+		int[] slots = _slots;
+		IMetricEvaluator[] evaluators = _evaluators;
+		_names = new String[capacity];
+		_slots = new int[capacity];
+		_evaluators = new IMetricEvaluator[capacity];
+		for (int position = 0; position < names.length; position++) {
+			if (names[position] != null) {
+				insert(names[position], slots[position], evaluators[position]);
+			}
+		}
+	}
+
+}
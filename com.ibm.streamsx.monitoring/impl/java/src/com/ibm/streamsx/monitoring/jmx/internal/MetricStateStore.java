@@ -0,0 +1,251 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+/**
+ * Holds the state of all captured metrics of an operator in primitive
+ * arrays. Each captured metric gets a slot, which is an index into the
+ * arrays, when its handler registers it. For each slot, the store holds
+ * the last submitted value, and the value of the previous scan cycle, from
+ * which the rate of a counter is computed. The metric evaluators are
+ * stateless strategies that read and write the state of a slot, so no
+ * object is allocated per metric and scan.
+ * <p>
+ * The arrays are split into chunks of fixed size. A new chunk is added when
+ * all slots are used, but existing chunks are never copied, so a thread
+ * that evaluates a metric never writes to an array that was replaced
+ * concurrently. Slots of closed handlers are reused.
+ * </p><p>
+ * Allocating and releasing slots is synchronized. The state of a slot is
+ * accessed without locking because it is only accessed by the thread that
+ * captures the metrics of the handler that owns the slot.
+ * </p>
+ */
+public class MetricStateStore {
+
+	private static final int CHUNK_BITS = 12;
+
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * The state of CHUNK_SIZE consecutive slots, stored column by column.
+	 */
+	private static final class Chunk {
+
+		final boolean[] hasValue = new boolean[CHUNK_SIZE];
+
+		final long[] lastValues = new long[CHUNK_SIZE];
+
+		final long[] lastTimes = new long[CHUNK_SIZE];
+
+		final int[] silentCycles = new int[CHUNK_SIZE];
+
+		final boolean[] hasSample = new boolean[CHUNK_SIZE];
+
+		final long[] sampleValues = new long[CHUNK_SIZE];
+
+		final long[] sampleTimes = new long[CHUNK_SIZE];
+
+		final double[] lastRates = new double[CHUNK_SIZE];
+
+		final long[] seriesIds = new long[CHUNK_SIZE];
+
+		final int[] dictionaryGenerations = new int[CHUNK_SIZE];
+	}
+
+	private volatile Chunk[] _chunks = new Chunk[0];
+
+	/**
+	 * The number of slots that were ever allocated. Released slots are on the
+	 * free list.
+	 */
+	private int _highWaterMark = 0;
+
+	private int[] _freeSlots = new int[16];
+
+	private int _freeSlotCount = 0;
+
+	/**
+	 * The series id of the next allocated slot. Series ids are not reused,
+	 * so a released slot gets a new series id when it is allocated again.
+	 */
+	private long _nextSeriesId = 1;
+
+	/**
+	 * Allocate a slot for a metric. The slot has no value.
+	 *
+	 * @return
+	 * The slot.
+	 */
+	public synchronized int allocate() {
+		int slot;
+		if (_freeSlotCount > 0) {
+			slot = _freeSlots[--_freeSlotCount];
+		}
+		else {
+			slot = _highWaterMark++;
+			if ((slot >>> CHUNK_BITS) == _chunks.length) {
+				Chunk[] chunks = new Chunk[_chunks.length + 1];
+				System.arraycopy(_chunks, 0, chunks, 0, _chunks.length);
+				chunks[_chunks.length] = new Chunk();
+				_chunks = chunks;
+			}
+		}
+		Chunk chunk = _chunks[slot >>> CHUNK_BITS];
+		chunk.hasValue[slot & CHUNK_MASK] = false;
+		chunk.silentCycles[slot & CHUNK_MASK] = 0;
+		chunk.hasSample[slot & CHUNK_MASK] = false;
+		chunk.lastRates[slot & CHUNK_MASK] = Double.NaN;
+		chunk.seriesIds[slot & CHUNK_MASK] = _nextSeriesId++;
+		chunk.dictionaryGenerations[slot & CHUNK_MASK] = 0;
+		return slot;
+	}
+
+	/**
+	 * Release the slot of a metric that is not captured anymore.
+	 */
+	public synchronized void release(int slot) {
+		if (_freeSlotCount == _freeSlots.length) {
+			int[] freeSlots = new int[_freeSlots.length * 2];
+			System.arraycopy(_freeSlots, 0, freeSlots, 0, _freeSlotCount);
+			_freeSlots = freeSlots;
+		}
+		_freeSlots[_freeSlotCount++] = slot;
+	}
+
+	/**
+	 * Get the number of slots that are in use.
+	 */
+	public synchronized int size() {
+		return _highWaterMark - _freeSlotCount;
+	}
+
+	/**
+	 * Determine whether a value was stored for the slot since it was
+	 * allocated.
+	 */
+	public boolean hasValue(int slot) {
+		return _chunks[slot >>> CHUNK_BITS].hasValue[slot & CHUNK_MASK];
+	}
+
+	public long getLastValue(int slot) {
+		return _chunks[slot >>> CHUNK_BITS].lastValues[slot & CHUNK_MASK];
+	}
+
+	public long getLastTime(int slot) {
+		return _chunks[slot >>> CHUNK_BITS].lastTimes[slot & CHUNK_MASK];
+	}
+
+	/**
+	 * Get the series id that identifies the metric as long as the slot is
+	 * allocated.
+	 */
+	public long getSeriesId(int slot) {
+		return _chunks[slot >>> CHUNK_BITS].seriesIds[slot & CHUNK_MASK];
+	}
+
+	/**
+	 * Get the generation of the handler's identity attributes, for which the
+	 * dictionary entry of the series was emitted, or 0 if no entry was
+	 * emitted yet.
+	 */
+	public int getDictionaryGeneration(int slot) {
+		return _chunks[slot >>> CHUNK_BITS].dictionaryGenerations[slot & CHUNK_MASK];
+	}
+
+	public void setDictionaryGeneration(int slot, int generation) {
+		_chunks[slot >>> CHUNK_BITS].dictionaryGenerations[slot & CHUNK_MASK] = generation;
+	}
+
+	/**
+	 * Increment the number of scan cycles without a tuple for the metric.
+	 *
+	 * @return
+	 * The incremented number of cycles.
+	 */
+	public int incrementSilentCycles(int slot) {
+		return ++_chunks[slot >>> CHUNK_BITS].silentCycles[slot & CHUNK_MASK];
+	}
+
+	public void resetSilentCycles(int slot) {
+		_chunks[slot >>> CHUNK_BITS].silentCycles[slot & CHUNK_MASK] = 0;
+	}
+
+	public double getLastRate(int slot) {
+		return _chunks[slot >>> CHUNK_BITS].lastRates[slot & CHUNK_MASK];
+	}
+
+	/**
+	 * Store the rate of a counter metric when a tuple is submitted.
+	 */
+	public void setLastRate(int slot, double rate) {
+		_chunks[slot >>> CHUNK_BITS].lastRates[slot & CHUNK_MASK] = rate;
+	}
+
+	/**
+	 * Store the value that is retrieved during a scan cycle, independent of
+	 * whether a tuple is submitted.
+	 */
+	public void setSample(int slot, long value, long time) {
+		Chunk chunk = _chunks[slot >>> CHUNK_BITS];
+		int index = slot & CHUNK_MASK;
+		chunk.sampleValues[index] = value;
+		chunk.sampleTimes[index] = time;
+		chunk.hasSample[index] = true;
+	}
+
+	/**
+	 * Compute the per-second rate of a counter metric between the sample of
+	 * the previous scan cycle and the given value.
+	 *
+	 * @param time
+	 * The time in milliseconds when the value was retrieved.
+	 *
+	 * @return
+	 * The rate, or NaN if there is no previous sample, if the time did not
+	 * advance, or if the counter was reset, for example, because the PE
+	 * restarted.
+	 */
+	public double getRate(int slot, long value, long time) {
+		Chunk chunk = _chunks[slot >>> CHUNK_BITS];
+		int index = slot & CHUNK_MASK;
+		if (!chunk.hasSample[index]) {
+			return Double.NaN;
+		}
+		long deltaTime = time - chunk.sampleTimes[index];
+		long deltaValue = value - chunk.sampleValues[index];
+		if ((deltaTime <= 0) || (deltaValue < 0)) {
+			return Double.NaN;
+		}
+		return (deltaValue * 1000.0) / deltaTime;
+	}
+
+	/**
+	 * Determine whether the counter is lower than in the previous scan cycle,
+	 * which means that it was reset.
+	 */
+	public boolean isReset(int slot, long value) {
+		Chunk chunk = _chunks[slot >>> CHUNK_BITS];
+		int index = slot & CHUNK_MASK;
+		return chunk.hasSample[index] && (value < chunk.sampleValues[index]);
+	}
+
+	/**
+	 * Store the value and the time when it was retrieved.
+	 */
+	public void setValue(int slot, long value, long time) {
+		Chunk chunk = _chunks[slot >>> CHUNK_BITS];
+		int index = slot & CHUNK_MASK;
+		chunk.lastValues[index] = value;
+		chunk.lastTimes[index] = time;
+		chunk.hasValue[index] = true;
+	}
+
+}
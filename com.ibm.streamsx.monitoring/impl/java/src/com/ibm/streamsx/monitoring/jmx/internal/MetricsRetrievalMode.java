@@ -0,0 +1,13 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+public enum MetricsRetrievalMode {
+	perObject,
+	jobSnapshot,
+};
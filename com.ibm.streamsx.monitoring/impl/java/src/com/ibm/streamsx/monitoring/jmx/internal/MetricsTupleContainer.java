@@ -8,6 +8,10 @@
 package com.ibm.streamsx.monitoring.jmx.internal;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.ibm.streams.management.MetricMetadata.Kind;
 import com.ibm.streams.operator.Attribute;
@@ -15,7 +19,10 @@ import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.StreamSchema;
 import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingOutput;
+import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.Type;
+import com.ibm.streams.operator.meta.CollectionType;
+import com.ibm.streams.operator.meta.TupleType;
 
 public class MetricsTupleContainer {
 
@@ -94,6 +101,16 @@ public class MetricsTupleContainer {
 	 * Index of the lastTimeRetrieved attribute.
 	 */
 	private Integer _lastTimeRetrievedAttributeIndex = null;
+
+	/**
+	 * Index of the optional metricRate attribute.
+	 */
+	private Integer _metricRateAttributeIndex = null;
+	
+	/**
+	 * Index of the optional seriesId attribute.
+	 */
+	private Integer _seriesIdAttributeIndex = null;
 	
 	/**
 	 * The output port.
@@ -105,16 +122,135 @@ public class MetricsTupleContainer {
 	 */
 	private OutputTuple _tuple = null;
 
+	/**
+	 * If not null, submitted tuples are copied into this list instead of
+	 * being submitted to the output port. The tuples are submitted to the
+	 * output port with {@link #flush()}.
+	 */
+	private List<OutputTuple> _buffer = null;
+
+	/**
+	 * Index of the optional notifications attribute. If the output port has
+	 * a list-of-tuple attribute with this name, the metric tuples are
+	 * collected in this list and emitted in batches.
+	 */
+	private int _notificationsAttributeIndex = -1;
+
+	/**
+	 * The schema of the metric tuples, which is either the schema of the
+	 * output port, or the element schema of the notifications attribute.
+	 */
+	private StreamSchema _notificationSchema = null;
+
+	/**
+	 * In batch mode, the attribute values of the current metric tuple, in
+	 * the order of the notification schema.
+	 */
+	private Object[] _values = null;
+
+	/**
+	 * In batch mode, the metric tuples that are emitted with the next batch.
+	 */
+	private List<Tuple> _batch = null;
+
+	/**
+	 * Specifies whether a batch is emitted for each job or for each scan cycle.
+	 */
+	private MetricTupleBatchMode _batchMode = MetricTupleBatchMode.perScan;
+
+	/**
+	 * In batch mode, the container of a buffered container, which receives
+	 * the buffered metric tuples with {@link #flush()}.
+	 */
+	private MetricsTupleContainer _parent = null;
+
+	/**
+	 * If not null, the container of the dictionary port, to which a
+	 * dictionary entry is submitted when a series appears or its identity
+	 * attributes change.
+	 */
+	private MetricsTupleContainer _dictionary = null;
+
+	/**
+	 * The resource that is set for the current metric tuple.
+	 */
+	private String _resource = null;
+
+	/**
+	 * The candidates of the top-K emit policies, which are submitted at the
+	 * end of the job or of the scan cycle. It is created on first use.
+	 */
+	private Map<TopKMetricEvaluator, TopKCandidates> _topK = null;
+
+	/**
+	 * The metric state store, which holds the dictionary generations of the
+	 * series, and the scan statistics, which count the submitted top-K
+	 * metric tuples.
+	 */
+	private MetricStateStore _metricStateStore = null;
+
+	private ScanStatistics _scanStatistics = null;
+
 	/**
 	 * Determine the indexes of output attributes and verify their types.
 	 * 
 	 * @param port
 	 */
 	public MetricsTupleContainer(StreamingOutput<OutputTuple> port) {
+		this(port, MetricTupleBatchMode.perScan);
+	}
+
+	/**
+	 * Determine the indexes of output attributes and verify their types.
+	 * 
+	 * @param port
+	 * The output port.
+	 * 
+	 * @param batchMode
+	 * Specifies whether a batch is emitted for each job or for each scan
+	 * cycle, if the output port has a notifications attribute.
+	 */
+	public MetricsTupleContainer(StreamingOutput<OutputTuple> port, MetricTupleBatchMode batchMode) {
+		this(port, batchMode, null);
+	}
+
+	/**
+	 * Determine the indexes of output attributes and verify their types.
+	 * 
+	 * @param port
+	 * The output port.
+	 * 
+	 * @param batchMode
+	 * Specifies whether a batch is emitted for each job or for each scan
+	 * cycle, if the output port has a notifications attribute.
+	 * 
+	 * @param parent
+	 * If not null, submitted tuples are buffered until {@link #flush()} is
+	 * called. This allows to capture metrics in a worker thread and to
+	 * submit the tuples in a well-defined order afterwards.
+	 */
+	private MetricsTupleContainer(StreamingOutput<OutputTuple> port, MetricTupleBatchMode batchMode, MetricsTupleContainer parent) {
 		// Create a tuple once.
 		_port = port;
 		_tuple = port.newTuple();
+		_batchMode = batchMode;
+		_parent = parent;
 		StreamSchema schema = port.getStreamSchema();
+		// Batch-related attributes.
+		Attribute notifications = schema.getAttribute("notifications");
+		if (notifications != null && notifications.getType().getMetaType() == Type.MetaType.LIST) {
+			Type elementType = ((CollectionType)notifications.getType()).getElementType();
+			if (elementType.getMetaType() == Type.MetaType.TUPLE) {
+				_notificationsAttributeIndex = notifications.getIndex();
+				schema = ((TupleType)elementType).getTupleSchema();
+				_values = new Object[schema.getAttributeCount()];
+				_batch = new ArrayList<>();
+			}
+		}
+		_notificationSchema = schema;
+		if ((parent != null) && (_batch == null)) {
+			_buffer = new ArrayList<>();
+		}
 		// Instance-related attributes.
 		if (_instanceIdAttributeIndex == null) {
 			Attribute attribute = schema.getAttribute("instanceId");
@@ -183,6 +319,14 @@ public class MetricsTupleContainer {
 			Attribute attribute = schema.getAttribute("lastTimeRetrieved");
 			_lastTimeRetrievedAttributeIndex = Integer.valueOf(attribute != null && attribute.getType().getMetaType() == Type.MetaType.INT64 ? attribute.getIndex() : -1) ;
 		}
+		if (_seriesIdAttributeIndex == null) {
+			Attribute attribute = schema.getAttribute("seriesId");
+			_seriesIdAttributeIndex = Integer.valueOf(attribute != null && attribute.getType().getMetaType() == Type.MetaType.INT64 ? attribute.getIndex() : -1) ;
+		}
+		if (_metricRateAttributeIndex == null) {
+			Attribute attribute = schema.getAttribute("metricRate");
+			_metricRateAttributeIndex = Integer.valueOf(attribute != null && attribute.getType().getMetaType() == Type.MetaType.FLOAT64 ? attribute.getIndex() : -1) ;
+		}
 	}
 		
 
@@ -193,7 +337,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setInstanceId(String instanceId) {
 		if (_instanceIdAttributeIndex != -1) {
-			_tuple.setString(_instanceIdAttributeIndex, instanceId);
+			setString(_instanceIdAttributeIndex, instanceId);
+		}
+		if (_dictionary != null) {
+			_dictionary.setInstanceId(instanceId);
 		}
 	}
 	
@@ -204,12 +351,18 @@ public class MetricsTupleContainer {
 	 */
 	public void setJobId(BigInteger jobId) {
 		if (_jobIdAttributeIndex != -1) {
-			_tuple.setLong(_jobIdAttributeIndex, jobId.longValue());
+			setLong(_jobIdAttributeIndex, jobId.longValue());
+		}
+		if (_dictionary != null) {
+			_dictionary.setJobId(jobId);
 		}
 	}
 	public void setJobId(String jobId) {
 		if (_jobIdAttributeIndex != -1) {
-			_tuple.setLong(_jobIdAttributeIndex, Long.parseLong(jobId));
+			setLong(_jobIdAttributeIndex, Long.parseLong(jobId));
+		}
+		if (_dictionary != null) {
+			_dictionary.setJobId(jobId);
 		}
 	}
 
@@ -220,7 +373,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setJobName(String jobName) {
 		if (_jobNameAttributeIndex != -1) {
-			_tuple.setString(_jobNameAttributeIndex, jobName);
+			setString(_jobNameAttributeIndex, jobName);
+		}
+		if (_dictionary != null) {
+			_dictionary.setJobName(jobName);
 		}
 	}
 
@@ -230,8 +386,12 @@ public class MetricsTupleContainer {
 	 * @param resource
 	 */
 	public void setResource(String resource) {
+		_resource = resource;
 		if (_resourceAttributeIndex != -1) {
-			_tuple.setString(_resourceAttributeIndex, resource);
+			setString(_resourceAttributeIndex, resource);
+		}
+		if (_dictionary != null) {
+			_dictionary.setResource(resource);
 		}
 	}
 
@@ -242,7 +402,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setOperatorName(String operatorName) {
 		if (_operatorNameAttributeIndex != -1) {
-			_tuple.setString(_operatorNameAttributeIndex, operatorName);
+			setString(_operatorNameAttributeIndex, operatorName);
+		}
+		if (_dictionary != null) {
+			_dictionary.setOperatorName(operatorName);
 		}
 	}
 
@@ -253,7 +416,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setPortIndex(int portIndex) {
 		if (_portIndexAttributeIndex != -1) {
-			_tuple.setInt(_portIndexAttributeIndex, portIndex);
+			setInt(_portIndexAttributeIndex, portIndex);
+		}
+		if (_dictionary != null) {
+			_dictionary.setPortIndex(portIndex);
 		}
 	}
 	
@@ -264,7 +430,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setConnectionId(String connectionId) {
 		if (_connectionIdAttributeIndex != -1) {
-			_tuple.setString(_connectionIdAttributeIndex, connectionId);
+			setString(_connectionIdAttributeIndex, connectionId);
+		}
+		if (_dictionary != null) {
+			_dictionary.setConnectionId(connectionId);
 		}
 	}
 
@@ -275,7 +444,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setOrigin(String origin) {
 		if (_originAttributeIndex != -1) {
-			_tuple.setString(_originAttributeIndex, origin);
+			setString(_originAttributeIndex, origin);
+		}
+		if (_dictionary != null) {
+			_dictionary.setOrigin(origin);
 		}
 	}
 
@@ -287,7 +459,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setChannel(Integer channel) {
 		if (_channelAttributeIndex != -1) {
-			_tuple.setInt(_channelAttributeIndex, (channel == null ? -1 : channel));
+			setInt(_channelAttributeIndex, (channel == null ? -1 : channel));
+		}
+		if (_dictionary != null) {
+			_dictionary.setChannel(channel);
 		}
 	}
 
@@ -298,14 +473,20 @@ public class MetricsTupleContainer {
 	 */
 	public void setPeId(BigInteger peId) {
 		if (_peIdAttributeIndex != -1) {
-			_tuple.setLong(_peIdAttributeIndex, peId.longValue());
+			setLong(_peIdAttributeIndex, peId.longValue());
+		}
+		if (_dictionary != null) {
+			_dictionary.setPeId(peId);
 		}
 	}
 	public void setPeId(String peId) {
 		if (_peIdAttributeIndex != -1) {
-			_tuple.setLong(_peIdAttributeIndex, Long.parseLong(peId));
-		}		
-	}	
+			setLong(_peIdAttributeIndex, Long.parseLong(peId));
+		}
+		if (_dictionary != null) {
+			_dictionary.setPeId(peId);
+		}
+	}
 
 	/**
 	 * Optionally set the metric type in the output tuple.
@@ -314,7 +495,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setMetricType(com.ibm.streams.management.MetricMetadata.Type metricType) {
 		if (_metricTypeAttributeIndex != -1) {
-			_tuple.setString(_metricTypeAttributeIndex, metricType.toString());
+			setString(_metricTypeAttributeIndex, metricType.toString());
+		}
+		if (_dictionary != null) {
+			_dictionary.setMetricType(metricType);
 		}
 	}
 
@@ -325,7 +509,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setMetricKind(Kind metricKind) {
 		if (_metricKindAttributeIndex != -1) {
-			_tuple.setString(_metricKindAttributeIndex, metricKind.toString());
+			setString(_metricKindAttributeIndex, metricKind.toString());
+		}
+		if (_dictionary != null) {
+			_dictionary.setMetricKind(metricKind);
 		}
 	}
 
@@ -336,7 +523,10 @@ public class MetricsTupleContainer {
 	 */
 	public void setMetricName(String metricName) {
 		if (_metricNameAttributeIndex != -1) {
-			_tuple.setString(_metricNameAttributeIndex, metricName);
+			setString(_metricNameAttributeIndex, metricName);
+		}
+		if (_dictionary != null) {
+			_dictionary.setMetricName(metricName);
 		}
 	}
 
@@ -347,7 +537,7 @@ public class MetricsTupleContainer {
 	 */
 	public void setMetricValue(long metricValue) {
 		if (_metricValueAttributeIndex != -1) {
-			_tuple.setLong(_metricValueAttributeIndex, metricValue);
+			setLong(_metricValueAttributeIndex, metricValue);
 		}
 	}
 
@@ -358,17 +548,339 @@ public class MetricsTupleContainer {
 	 */
 	public void setLastTimeRetrieved(long lastTimeRetrieved) {
 		if (_lastTimeRetrievedAttributeIndex != -1) {
-			_tuple.setLong(_lastTimeRetrievedAttributeIndex, lastTimeRetrieved);
+			setLong(_lastTimeRetrievedAttributeIndex, lastTimeRetrieved);
+		}
+	}
+
+	/**
+	 * Optionally set the per-second rate of a counter metric in the output
+	 * tuple. If the rate is not available, set NaN.
+	 * 
+	 * @param metricRate
+	 */
+	public void setMetricRate(double metricRate) {
+		if (_metricRateAttributeIndex != -1) {
+			setDouble(_metricRateAttributeIndex, metricRate);
+		}
+	}
+
+	/**
+	 * Optionally set the series id in the output tuple.
+	 * 
+	 * @param seriesId
+	 */
+	public void setSeriesId(long seriesId) {
+		if (_seriesIdAttributeIndex != -1) {
+			setLong(_seriesIdAttributeIndex, seriesId);
+		}
+		if (_dictionary != null) {
+			_dictionary.setSeriesId(seriesId);
+		}
+	}
+
+	/**
+	 * Get the resource that is set for the current metric tuple.
+	 */
+	public String getResource() {
+		return _resource;
+	}
+
+	/**
+	 * Specify the output port, to which the dictionary entries are
+	 * submitted. The port can have the seriesId attribute and any subset of
+	 * the identity attributes of the metric tuples.
+	 */
+	public void setDictionaryPort(StreamingOutput<OutputTuple> port) {
+		_dictionary = new MetricsTupleContainer(port);
+	}
+
+	/**
+	 * Specify the metric state store and the scan statistics, which are
+	 * updated when the top-K metric tuples are submitted.
+	 */
+	public void setMetricState(MetricStateStore store, ScanStatistics scanStatistics) {
+		_metricStateStore = store;
+		_scanStatistics = scanStatistics;
+	}
+
+	/**
+	 * Determine whether dictionary entries are submitted.
+	 */
+	public boolean hasDictionary() {
+		return _dictionary != null;
+	}
+
+	/**
+	 * Submit the identity attributes of the current metric tuple as
+	 * dictionary entry.
+	 */
+	public void submitDictionaryEntry() throws Exception {
+		_dictionary.submit();
+	}
+
+	private void setString(int index, String value) {
+		if (_values != null) {
+			_values[index] = value;
+		}
+		else {
+			_tuple.setString(index, value);
+		}
+	}
+
+	private void setLong(int index, long value) {
+		if (_values != null) {
+			_values[index] = Long.valueOf(value);
+		}
+		else {
+			_tuple.setLong(index, value);
+		}
+	}
+
+	private void setInt(int index, int value) {
+		if (_values != null) {
+			_values[index] = Integer.valueOf(value);
+		}
+		else {
+			_tuple.setInt(index, value);
+		}
+	}
+
+	private void setDouble(int index, double value) {
+		if (_values != null) {
+			_values[index] = Double.valueOf(value);
+		}
+		else {
+			_tuple.setDouble(index, value);
 		}
 	}
 
+	/**
+	 * Determine whether the metric tuples are emitted in batches.
+	 */
+	public boolean isBatched() {
+		return _batch != null;
+	}
+
+	/**
+	 * In batch mode, create a metric tuple from the current attribute values.
+	 */
+	private Tuple newNotification() {
+		Map<String, Object> values = new HashMap<>();
+		for (int i = 0; i < _values.length; i++) {
+			if (_values[i] != null) {
+				values.put(_notificationSchema.getAttribute(i).getName(), _values[i]);
+			}
+		}
+		return _notificationSchema.getTuple(values);
+	}
+
 	public void submit() throws Exception {
-		// Submit tuple to output stream.            
-		_port.submit(_tuple);	
+		if (_batch != null) {
+			// Collect the metric tuple for the next batch.
+			_batch.add(newNotification());
+		}
+		else if (_buffer != null) {
+			// Keep a copy because the tuple is re-used for the next metric.
+			OutputTuple tuple = _port.newTuple();
+			tuple.assign(_tuple);
+			_buffer.add(tuple);
+		}
+		else {
+			// Submit tuple to output stream.            
+			_port.submit(_tuple);
+		}
+	}
+
+	/**
+	 * Submit all buffered tuples to the output stream in the order in which
+	 * they were buffered, and clear the buffer. In batch mode, the buffered
+	 * metric tuples are added to the batch of the container, from which
+	 * this buffered container was created.
+	 */
+	public void flush() throws Exception {
+		// Dictionary entries precede the metric tuples that refer to them.
+		if (_dictionary != null) {
+			_dictionary.flush();
+		}
+		if ((_topK != null) && (_parent != null)) {
+			for (Map.Entry<TopKMetricEvaluator, TopKCandidates> entry : _topK.entrySet()) {
+				_parent.getTopKCandidates(entry.getKey()).addAll(entry.getValue());
+			}
+			_topK.clear();
+		}
+		if ((_batch != null) && (_parent != null)) {
+			_parent._batch.addAll(_batch);
+			_batch.clear();
+		}
+		else if (_buffer != null) {
+			for (OutputTuple tuple : _buffer) {
+				_port.submit(tuple);
+			}
+			_buffer.clear();
+		}
+	}
+
+	/**
+	 * Discard all buffered tuples without submitting them.
+	 */
+	public void discard() {
+		if (_dictionary != null) {
+			_dictionary.discard();
+		}
+		if (_topK != null) {
+			_topK.clear();
+		}
+		if (_batch != null) {
+			_batch.clear();
+		}
+		if (_buffer != null) {
+			_buffer.clear();
+		}
+	}
+
+	/**
+	 * Offer the current metric tuple to the candidates of a top-K emit
+	 * policy. The tuple is copied only if its value is among the K highest
+	 * values so far. The dictionary entry of the series is submitted only
+	 * if the tuple is submitted.
+	 * 
+	 * @param slot
+	 * The slot of the metric in the metric state store.
+	 * 
+	 * @param dictionaryGeneration
+	 * The generation of the identity attributes of the series. The
+	 * dictionary entry is submitted if the store holds another generation
+	 * for the slot.
+	 */
+	public void offer(TopKMetricEvaluator evaluator, long value, int slot, int dictionaryGeneration) {
+		TopKCandidates candidates = getTopKCandidates(evaluator);
+		if (candidates.isCandidate(value)) {
+			Tuple dictionaryEntry = (_dictionary != null) ? _dictionary.copyTuple() : null;
+			candidates.add(new TopKCandidates.Candidate(value, copyTuple(), slot, dictionaryGeneration, dictionaryEntry));
+		}
+	}
+
+	/**
+	 * Copy the current tuple, so that it is not changed when the attributes
+	 * of the next metric are set.
+	 */
+	private Tuple copyTuple() {
+		if (_batch != null) {
+			return newNotification();
+		}
+		OutputTuple copy = _port.newTuple();
+		copy.assign(_tuple);
+		return copy;
+	}
+
+	/**
+	 * Submit a tuple that was copied before, for example, a top-K metric
+	 * tuple or its dictionary entry.
+	 */
+	private void submitCopy(Tuple tuple) throws Exception {
+		if (_batch != null) {
+			_batch.add(tuple);
+		}
+		else {
+			_port.submit(tuple);
+		}
+	}
+
+	private TopKCandidates getTopKCandidates(TopKMetricEvaluator evaluator) {
+		if (_topK == null) {
+			_topK = new HashMap<>();
+		}
+		TopKCandidates candidates = _topK.get(evaluator);
+		if (candidates == null) {
+			candidates = new TopKCandidates(evaluator.getK());
+			_topK.put(evaluator, candidates);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Submit the candidates of the top-K emit policies, either of the
+	 * policies per job only, or of all policies. The dictionary entry of a
+	 * new or changed series precedes its metric tuple.
+	 */
+	private void submitTopK(boolean isPerJobOnly) throws Exception {
+		if (_topK == null) {
+			return;
+		}
+		for (Map.Entry<TopKMetricEvaluator, TopKCandidates> entry : _topK.entrySet()) {
+			if (!isPerJobOnly || entry.getKey().isPerJob()) {
+				for (TopKCandidates.Candidate candidate : entry.getValue().removeAll()) {
+					if ((candidate.dictionaryEntry != null) && (_metricStateStore.getDictionaryGeneration(candidate.slot) != candidate.dictionaryGeneration)) {
+						_dictionary.submitCopy(candidate.dictionaryEntry);
+						_metricStateStore.setDictionaryGeneration(candidate.slot, candidate.dictionaryGeneration);
+					}
+					submitCopy(candidate.tuple);
+					_scanStatistics.incrementTuplesEmitted();
+				}
+			}
+		}
+		if (!isPerJobOnly) {
+			// Forget the policies of a replaced filter document.
+			_topK.clear();
+		}
+	}
+
+	/**
+	 * Called after the metrics of a job are captured and flushed. The
+	 * top-K metric tuples of the policies per job are submitted. In batch
+	 * mode with one batch per job, the batch is emitted.
+	 */
+	public void endOfJob() throws Exception {
+		submitTopK(true);
+		if ((_batch != null) && (MetricTupleBatchMode.perJob == _batchMode)) {
+			submitBatch();
+		}
+	}
+
+	/**
+	 * Called after the metrics of all jobs are captured. The remaining top-K
+	 * metric tuples are submitted. In batch mode, the remaining metric
+	 * tuples are emitted.
+	 */
+	public void endOfScan() throws Exception {
+		submitTopK(false);
+		if (_batch != null) {
+			submitBatch();
+		}
+	}
+
+	/**
+	 * Submit one tuple that holds all collected metric tuples in the
+	 * notifications attribute, unless no metric tuples are collected.
+	 */
+	private void submitBatch() throws Exception {
+		if (_batch.isEmpty()) {
+			return;
+		}
+		OutputTuple tuple = _port.newTuple();
+		tuple.setList(_notificationsAttributeIndex, _batch);
+		_port.submit(tuple);
+		_batch = new ArrayList<>(_batch.size());
+	}
+
+	/**
+	 * Create a buffered container for the same output port. Use the
+	 * returned container to capture metrics in a worker thread.
+	 */
+	public MetricsTupleContainer newBufferedContainer() {
+		MetricsTupleContainer container = new MetricsTupleContainer(_port, _batchMode, this);
+		container.setMetricState(_metricStateStore, _scanStatistics);
+		if (_dictionary != null) {
+			container._dictionary = _dictionary.newBufferedContainer();
+		}
+		return container;
 	}
 
 	public void punctuate(Punctuation mark) throws Exception {
 		_port.punctuate(mark);
+		if ((_dictionary != null) && (Punctuation.FINAL_MARKER == mark)) {
+			_dictionary.punctuate(mark);
+		}
 	}
 
 }
@@ -0,0 +1,246 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationFilterSupport;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Registers the notification listeners of all handlers. The registry adds
+ * itself as the only listener to the MBean server, once per MBean, with a
+ * server-side filter that enables the union of the notification types that
+ * the handlers requested for this MBean. Received notifications are
+ * dispatched to the handlers through a lookup table.
+ * <p>
+ * The registry tracks all registrations, so it can register them again
+ * after a reconnect, and remove all of them when the operator closes its
+ * handlers. If several handlers listen to the same MBean, for example, the
+ * operators of a PE to the PE_CHANGED notification, the MBean is registered
+ * only once.
+ * </p>
+ */
+public class NotificationRegistry implements NotificationListener, Closeable {
+
+	/**
+	 * Logger for tracing.
+	 */
+	private static Logger _trace = Logger.getLogger(NotificationRegistry.class.getName());
+
+	/**
+	 * The listeners of one MBean, and the notification types that are
+	 * enabled on the MBean server.
+	 */
+	private static class Registration {
+
+		final Map<NotificationListener, Set<String /* type */>> listeners = new ConcurrentHashMap<>();
+
+		Set<String /* type */> enabledTypes = null;
+	}
+
+	private final MBeanServerConnection _connection;
+
+	private final Map<ObjectName, Registration> _registrations = new ConcurrentHashMap<>();
+
+	/**
+	 * @param connection
+	 * The operator's primary MBean server connection, which must stay valid
+	 * after a reconnect.
+	 */
+	public NotificationRegistry(MBeanServerConnection connection) {
+		_connection = connection;
+	}
+
+	/**
+	 * Add a listener for the given notification types of an MBean. If the
+	 * listener is already registered for the MBean, its types are replaced.
+	 *
+	 * @param name
+	 * The name of the MBean that emits the notifications.
+	 *
+	 * @param listener
+	 * The handler that receives the notifications. It gets the name of the
+	 * MBean as handback object.
+	 *
+	 * @param types
+	 * The notification types, which are matched as prefixes like in the
+	 * NotificationFilterSupport.
+	 */
+	public synchronized void register(ObjectName name, NotificationListener listener, String... types) throws InstanceNotFoundException, IOException {
+		Registration registration = _registrations.get(name);
+		if (registration == null) {
+			registration = new Registration();
+			_registrations.put(name, registration);
+		}
+		registration.listeners.put(listener, new HashSet<>(Arrays.asList(types)));
+		try {
+			update(name, registration);
+		}
+		catch (InstanceNotFoundException | IOException e) {
+			unregister(name, listener);
+			throw e;
+		}
+	}
+
+	/**
+	 * Remove a listener from an MBean. If the MBean has no listeners anymore,
+	 * the registration on the MBean server is removed, too. If the connection
+	 * is broken, the registration is removed from the registry anyway.
+	 */
+	public synchronized void unregister(ObjectName name, NotificationListener listener) {
+		Registration registration = _registrations.get(name);
+		if ((registration == null) || (registration.listeners.remove(listener) == null)) {
+			return;
+		}
+		try {
+			if (registration.listeners.isEmpty()) {
+				_registrations.remove(name);
+				removeServerListener(name, registration);
+			}
+			else {
+				update(name, registration);
+			}
+		}
+		catch (InstanceNotFoundException e) {
+			// The MBean is already unregistered, for example, because the job is cancelled.
+		}
+		catch (IOException e) {
+			_trace.warn("Cannot remove the notification listener: " + name + ": " + e);
+		}
+	}
+
+	/**
+	 * Register all MBeans again after the operator established a new JMX
+	 * connection. The registrations on the MBean server were lost with the
+	 * broken connection. MBeans that do not exist anymore are removed.
+	 */
+	public synchronized void reconnect() {
+		for (ObjectName name : new ArrayList<>(_registrations.keySet())) {
+			Registration registration = _registrations.get(name);
+			registration.enabledTypes = null;
+			try {
+				update(name, registration);
+			}
+			catch (InstanceNotFoundException e) {
+				if (_trace.isInfoEnabled()) {
+					_trace.info("The MBean was removed while disconnected: " + name);
+				}
+				_registrations.remove(name);
+			}
+			catch (IOException e) {
+				_trace.error("Cannot register the notification listener again: " + name + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * Remove all registrations.
+	 */
+	@Override
+	public synchronized void close() {
+		for (Map.Entry<ObjectName, Registration> entry : _registrations.entrySet()) {
+			try {
+				removeServerListener(entry.getKey(), entry.getValue());
+			}
+			catch (InstanceNotFoundException | IOException e) {
+				// The registration is lost anyway.
+			}
+		}
+		_registrations.clear();
+	}
+
+	/**
+	 * Get the number of MBeans that the registry listens to.
+	 */
+	public int getRegistrationCount() {
+		return _registrations.size();
+	}
+
+	/**
+	 * Register the MBean on the server if the enabled notification types
+	 * differ from the types that the listeners request.
+	 */
+	private void update(ObjectName name, Registration registration) throws InstanceNotFoundException, IOException {
+		Set<String> types = new HashSet<>();
+		for (Set<String> listenerTypes : registration.listeners.values()) {
+			types.addAll(listenerTypes);
+		}
+		if (types.equals(registration.enabledTypes)) {
+			return;
+		}
+		removeServerListener(name, registration);
+		NotificationFilterSupport filter = new NotificationFilterSupport();
+		for (String type : types) {
+			filter.enableType(type);
+		}
+		_connection.addNotificationListener(name, this, filter, name);
+		registration.enabledTypes = types;
+	}
+
+	private void removeServerListener(ObjectName name, Registration registration) throws InstanceNotFoundException, IOException {
+		if (registration.enabledTypes == null) {
+			return;
+		}
+		registration.enabledTypes = null;
+		try {
+			_connection.removeNotificationListener(name, this);
+		}
+		catch (ListenerNotFoundException e) {
+			// The registration was lost with a broken connection.
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Dispatch the notification to the handlers that listen to the emitting
+	 * MBean and to the notification type.
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		Registration registration = (handback instanceof ObjectName) ? _registrations.get(handback) : null;
+		if (registration == null) {
+			if (_trace.isDebugEnabled()) {
+				_trace.debug("No listener for notification: " + notification + ", handback=" + handback);
+			}
+			return;
+		}
+		for (Map.Entry<NotificationListener, Set<String>> entry : registration.listeners.entrySet()) {
+			if (isEnabled(entry.getValue(), notification.getType())) {
+				entry.getKey().handleNotification(notification, handback);
+			}
+		}
+	}
+
+	/**
+	 * Like the NotificationFilterSupport, the enabled types are prefixes.
+	 */
+	private static boolean isEnabled(Set<String> enabledTypes, String type) {
+		for (String enabledType : enabledTypes) {
+			if (type.startsWith(enabledType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -18,7 +18,6 @@ import java.util.Set;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMX;
 import javax.management.Notification;
-import javax.management.NotificationFilterSupport;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
 
@@ -50,11 +49,60 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 	
 	private OperatorMXBean _operator = null;
 
+	/**
+	 * Specifies whether the notification listener is registered during the
+	 * next capture, which is the case if the topology is discovered in bulk
+	 * or if the registration failed.
+	 */
+	private boolean _isListenerPending = false;
+
 	private Map<Integer /* port index */, OperatorInputPortHandler> _inputPortHandlers = new HashMap<>();
 
 	private Map<Integer /* port index */, OperatorOutputPortHandler> _outputPortHandlers = new HashMap<>();
 
+	/**
+	 * The cached placement attributes of the operator. They change only if
+	 * the PE is restarted or relocated. Therefore, they are retrieved again
+	 * only if a notification invalidates the cache or if the placement
+	 * refresh period expired.
+	 */
+	private Integer _channel = null;
+
+	private String _peId = null;
+
+	private String _resource = null;
+
+	/**
+	 * The time in milliseconds when the cached placement attributes expire.
+	 * The value 0 invalidates the cache.
+	 */
+	private volatile long _placementExpiry = 0;
+
+	/**
+	 * The object name of the PE that runs the operator. The handler listens
+	 * to PE_CHANGED notifications of this PE to invalidate the cache.
+	 */
+	private ObjectName _peObjName = null;
+
+	/**
+	 * The logical name of the operator, if it runs in a channel of a
+	 * parallel region and the channels are aggregated. It is retrieved on
+	 * first use.
+	 */
+	private String _logicalName = null;
+
 	public OperatorHandler(OperatorConfiguration operatorConfiguration, String instanceId, String jobId, String jobName, String operatorName) {
+		this(operatorConfiguration, instanceId, jobId, jobName, operatorName, null);
+	}
+
+	/**
+	 * @param topology
+	 * The topology that is discovered in bulk, or null if the ports shall
+	 * be retrieved from the OperatorMXBean. If the topology is specified,
+	 * the MXBean proxy is created, and the notification listener is
+	 * registered during the first capture.
+	 */
+	public OperatorHandler(OperatorConfiguration operatorConfiguration, String instanceId, String jobId, String jobName, String operatorName, InstanceTopology topology) {
 
 		super(MetricsRegistrationMode.DynamicMetricsRegistration);
 		
@@ -69,22 +117,17 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 		_operatorName = operatorName;
 
 		_objName = ObjectNameBuilder.operator(_instanceId, _jobId, _operatorName);
-		_operator = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), _objName, OperatorMXBean.class, true);
-		
-		/*
-		 * Register to get job-related notifications.
-		 */
-		NotificationFilterSupport filter = new NotificationFilterSupport();
-		filter.enableType(Notifications.OPERATOR_CONNECTION_ADDED);
-		filter.enableType(Notifications.OPERATOR_CONNECTION_REMOVED);
-		try {
-			_operatorConfiguration.get_mbeanServerConnection().addNotificationListener(_objName, this, filter, null);
-		} catch (InstanceNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+
+		Set<Integer> inputPorts = (topology != null) ? topology.getOperatorInputPorts(_jobId, _operatorName) : null;
+		Set<Integer> outputPorts = (topology != null) ? topology.getOperatorOutputPorts(_jobId, _operatorName) : null;
+		if ((inputPorts != null) && (outputPorts != null)) {
+			_isListenerPending = true;
+		}
+		else {
+			inputPorts = getOperator().getInputPorts();
+			outputPorts = getOperator().getOutputPorts();
+			addNotificationListener();
 		}
-		//	TODO      jmxc.addConnectionNotificationListener(this, null, null); // listen for potential lost notifications
 
 		/*
 		 * Register input port metrics that match the specified filter criteria.
@@ -94,13 +137,13 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 		/*
 		 * Register input port metrics that match the specified filter criteria.
 		 */
-		for (Integer portIndex : _operator.getInputPorts()) {
+		for (Integer portIndex : inputPorts) {
 			addValidInputPort(portIndex);
 		}
 		/*
 		 * Register output port metrics that match the specified filter criteria.
 		 */
-		for (Integer portIndex : _operator.getOutputPorts()) {
+		for (Integer portIndex : outputPorts) {
 			addValidOutputPort(portIndex);
 		}
 	}
@@ -120,6 +163,7 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 			if (_trace.isDebugEnabled()) {
 				_trace.debug("notification: " + notification + ", userData=" + notification.getUserData());
 			}
+			invalidatePlacement();
 		}
 		else if (notification.getType().equals(Notifications.OPERATOR_CONNECTION_REMOVED)) {
 			/*
@@ -128,6 +172,16 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 			if (_trace.isDebugEnabled()) {
 				_trace.debug("notification: " + notification + ", userData=" + notification.getUserData());
 			}
+			invalidatePlacement();
+		}
+		else if (notification.getType().equals(Notifications.PE_CHANGED)) {
+			/*
+			 * The PE that runs the operator is restarted or relocated.
+			 */
+			if (_trace.isDebugEnabled()) {
+				_trace.debug("notification: " + notification + ", userData=" + notification.getUserData());
+			}
+			invalidatePlacement();
 		}
 		else {
 			if (_trace.isDebugEnabled()) {
@@ -136,26 +190,143 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 		}
 	}
 
+	/**
+	 * Get the MXBean proxy of the operator, which is created on first use.
+	 */
+	protected OperatorMXBean getOperator() {
+		if (_operator == null) {
+			_operator = JMX.newMXBeanProxy(_operatorConfiguration.get_pooledMbeanServerConnection(), _objName, OperatorMXBean.class, true);
+		}
+		return _operator;
+	}
+
+	/**
+	 * Register to get operator-related notifications. If the registration
+	 * fails, it is retried during the next capture.
+	 */
+	protected void addNotificationListener() {
+		try {
+			_operatorConfiguration.get_notificationRegistry().register(_objName, this, Notifications.OPERATOR_CONNECTION_ADDED, Notifications.OPERATOR_CONNECTION_REMOVED);
+			_isListenerPending = false;
+		} catch (InstanceNotFoundException | IOException e) {
+			_trace.error("Cannot register the notification listener of operator " + _operatorName + " of job " + _jobId + ", retrying with the next capture: " + e);
+			_isListenerPending = true;
+		}
+		//	TODO      jmxc.addConnectionNotificationListener(this, null, null); // listen for potential lost notifications
+	}
+
+	/**
+	 * Retrieve the placement attributes again after the operator
+	 * established a new JMX connection because the PE may be restarted
+	 * meanwhile. The notification registry registers the listeners again.
+	 */
+	public void reconnect() {
+		_peId = null;
+		invalidatePlacement();
+	}
+
+	/**
+	 * Invalidate the cached placement attributes, so they are retrieved
+	 * again during the next scan cycle.
+	 */
+	protected void invalidatePlacement() {
+		_placementExpiry = 0;
+	}
+
+	/**
+	 * Retrieve the placement attributes if the cache is invalidated or
+	 * expired. If the operator runs in another PE than before, listen to
+	 * the PE_CHANGED notifications of the new PE.
+	 */
+	protected void refreshPlacement() {
+		long now = System.currentTimeMillis();
+		if (now < _placementExpiry) {
+			return;
+		}
+		/*
+		 * Set the expiry time before retrieving the attributes. If a
+		 * notification invalidates the cache meanwhile, the attributes are
+		 * retrieved again during the next scan cycle.
+		 */
+		_placementExpiry = now + (long)(_operatorConfiguration.get_placementRefreshPeriod() * 1000.0);
+		_channel = getOperator().getChannel();
+		_resource = getOperator().getResource();
+		String peId = getOperator().getPe();
+		if (!peId.equals(_peId)) {
+			_peId = peId;
+			try {
+				if (_peObjName != null) {
+					_operatorConfiguration.get_notificationRegistry().unregister(_peObjName, this);
+				}
+				_peObjName = ObjectNameBuilder.pe(_instanceId, _peId);
+				_operatorConfiguration.get_notificationRegistry().register(_peObjName, this, Notifications.PE_CHANGED);
+			}
+			catch (Exception e) {
+				/*
+				 * The cache is still refreshed periodically.
+				 */
+				_trace.warn("Cannot listen to the PE notifications: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], operator=" + _operatorName + ", peId=" + _peId + ": " + e);
+				_peObjName = null;
+			}
+		}
+	}
+
 	@Override
-	protected boolean isRelevantMetric(String metricName) {
-		boolean isRelevant = _operatorConfiguration.get_filters().matchesOperatorMetricName(_instanceId, _jobName, _operatorName, metricName);
+	protected IMetricEvaluator getMetricEvaluator(String metricName) {
+		IMetricEvaluator evaluator = _operatorConfiguration.get_filters().getOperatorMetricEvaluator(_instanceId, _jobName, _operatorName, metricName, _operatorConfiguration.get_defaultMetricEvaluator());
 		if (_trace.isInfoEnabled()) {
-			if (isRelevant) {
+			if (evaluator != null) {
 				_trace.info("The following operator custom metric meets the filter criteria and is therefore, monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], operator=" + _operatorName + ", metric=" + metricName);
 			}
 			else {
 				_trace.info("The following operator custom metric does not meet the filter criteria and is therefore, not monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], operator=" + _operatorName + ", metric=" + metricName);
 			}
 		}
-		return isRelevant;
+		return evaluator;
 	}
 
 	@Override
 	protected Set<Metric> retrieveMetrics() {
-		Set<Metric> metrics = _operator.retrieveMetrics(false);
+		Set<Metric> metrics = getOperator().retrieveMetrics(false);
 		return metrics;
 	}
 
+	/**
+	 * Apply a changed filter document. Handlers are closed for ports that
+	 * do not meet the filter criteria anymore, and added for ports that
+	 * meet the criteria now. The metrics of this operator and of the other
+	 * ports are reconciled.
+	 */
+	public void reconcileFilters() throws Exception {
+		reconcileMetrics();
+		for(Integer portIndex : getOperator().getInputPorts()) {
+			OperatorInputPortHandler handler = _inputPortHandlers.get(portIndex);
+			if (handler == null) {
+				addValidInputPort(portIndex);
+			}
+			else if (_operatorConfiguration.get_filters().matchesOperatorInputPortIndex(_instanceId, _jobName, _operatorName, portIndex)) {
+				handler.reconcileMetrics();
+			}
+			else {
+				_inputPortHandlers.remove(portIndex);
+				handler.close();
+			}
+		}
+		for(Integer portIndex : getOperator().getOutputPorts()) {
+			OperatorOutputPortHandler handler = _outputPortHandlers.get(portIndex);
+			if (handler == null) {
+				addValidOutputPort(portIndex);
+			}
+			else if (_operatorConfiguration.get_filters().matchesOperatorOutputPortIndex(_instanceId, _jobName, _operatorName, portIndex)) {
+				handler.reconcileMetrics();
+			}
+			else {
+				_outputPortHandlers.remove(portIndex);
+				handler.close();
+			}
+		}
+	}
+
 	protected void addValidInputPort(Integer portIndex) {
 		boolean matches = _operatorConfiguration.get_filters().matchesOperatorInputPortIndex(_instanceId, _jobName, _operatorName, portIndex);
 		if (_trace.isInfoEnabled()) {
@@ -189,10 +360,52 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 	/**
 	 * Iterate all jobs to capture the job metrics.
 	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
 	 * @throws Exception
 	 * Throws Exception if submitting the tuple failed. 
 	 */
-	public void captureMetrics() throws Exception {
+	public void captureMetrics(MetricsTupleContainer tc) throws Exception {
+		captureMetrics(tc, null);
+	}
+
+	/**
+	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @param snapshot
+	 * The job metrics snapshot that holds the already retrieved metrics,
+	 * or null if the metrics are retrieved from the MXBean.
+	 * 
+	 * @throws Exception
+	 * Throws Exception if submitting the tuple failed. 
+	 */
+	public void captureMetrics(MetricsTupleContainer tc, JobMetricsSnapshot snapshot) throws Exception {
+		captureMetrics(tc, snapshot, null);
+	}
+
+	/**
+	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @param snapshot
+	 * The job metrics snapshot that holds the already retrieved metrics,
+	 * or null if the metrics are retrieved from the MXBean.
+	 * 
+	 * @param aggregator
+	 * The aggregator of the job, to which the metrics are added if the
+	 * operator runs in a channel of a parallel region, or null if the
+	 * channels are not aggregated.
+	 * 
+	 * @throws Exception
+	 * Throws Exception if submitting the tuple failed. 
+	 */
+	public void captureMetrics(MetricsTupleContainer tc, JobMetricsSnapshot snapshot, ChannelAggregator aggregator) throws Exception {
 
 		// Determine the trace level status once per function.
 		boolean isDebugEnabled = _trace.isDebugEnabled();
@@ -201,24 +414,63 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 			_trace.debug("--> captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", operator=" + _operatorName + ")");
 		}
 
-		MetricsTupleContainer tc = _operatorConfiguration.get_tupleContainerMetricsSource();
+		if (_isListenerPending) {
+			addNotificationListener();
+		}
+
 		tc.setOperatorName(_operatorName);
 		tc.setOrigin("Operator");
+		_operatorConfiguration.get_scanStatistics().incrementObjectsVisited(ScanStatistics.Level.operator);
 		tc.setPortIndex(0);
-		tc.setChannel(_operator.getChannel());
-		tc.setPeId(_operator.getPe());
-		tc.setResource(_operator.getResource());
+		/*
+		 * Take the placement attributes from the snapshot, if available, or
+		 * from the cache to avoid additional remote calls.
+		 */
+		Integer channel = (snapshot != null) ? snapshot.getOperatorChannel(_operatorName) : null;
+		String peId = (snapshot != null) ? snapshot.getOperatorPeId(_operatorName) : null;
+		String resource = (snapshot != null) ? snapshot.getOperatorResource(_operatorName) : null;
+		if ((channel == null) || (peId == null) || (resource == null)) {
+			refreshPlacement();
+			if (channel == null) {
+				channel = _channel;
+			}
+			if (peId == null) {
+				peId = _peId;
+			}
+			if (resource == null) {
+				resource = _resource;
+			}
+		}
+		tc.setChannel(channel);
+		tc.setPeId(peId);
+		tc.setResource(resource);
+
+		boolean isAggregatedChannel = (aggregator != null) && (channel != null) && (channel.intValue() >= 0);
+		if (isAggregatedChannel) {
+			if (_logicalName == null) {
+				_logicalName = getOperator().getLogicalName();
+			}
+			joinChannelGroup(aggregator, _logicalName, "Operator", 0);
+		}
 
-		captureAndSubmitChangedMetrics();
+		captureAndSubmitChangedMetrics(tc, (snapshot != null) ? snapshot.getOperatorMetrics(_operatorName) : null);
 
 		/*
 		 * Capture port metrics.
 		 */
 		for(Integer portIndex : _inputPortHandlers.keySet()) {
-			_inputPortHandlers.get(portIndex).captureMetrics();
+			OperatorInputPortHandler handler = _inputPortHandlers.get(portIndex);
+			if (isAggregatedChannel) {
+				handler.joinChannelGroup(aggregator, _logicalName, "OperatorInputPort", portIndex);
+			}
+			handler.captureMetrics(tc, snapshot);
 		}
 		for(Integer portIndex : _outputPortHandlers.keySet()) {
-			_outputPortHandlers.get(portIndex).captureMetrics();
+			OperatorOutputPortHandler handler = _outputPortHandlers.get(portIndex);
+			if (isAggregatedChannel) {
+				handler.joinChannelGroup(aggregator, _logicalName, "OperatorOutputPort", portIndex);
+			}
+			handler.captureMetrics(tc, snapshot);
 		}
 
 		if (isDebugEnabled) {
@@ -231,8 +483,13 @@ public class OperatorHandler extends MetricOwningHandler implements Notification
 	 */
 	@Override
 	public void close() throws Exception {
+		// Release the metric slots.
+		super.close();
 		// Remove the notification listener.
-		_operatorConfiguration.get_mbeanServerConnection().removeNotificationListener(_objName, this);
+		_operatorConfiguration.get_notificationRegistry().unregister(_objName, this);
+		if (_peObjName != null) {
+			_operatorConfiguration.get_notificationRegistry().unregister(_peObjName, this);
+		}
 		// Close all resources of all child objects.
 		for(OperatorInputPortHandler handler : _inputPortHandlers.values()) {
 			handler.close();
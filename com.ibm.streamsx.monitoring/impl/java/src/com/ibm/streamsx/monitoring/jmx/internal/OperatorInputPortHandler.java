@@ -62,7 +62,7 @@ public class OperatorInputPortHandler extends MetricOwningHandler implements Clo
 		}
 		
 		ObjectName operatorObjName = ObjectNameBuilder.operatorInputPort(_instanceId, _jobId, _operatorName, _portIndex);
-		_port = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), operatorObjName, OperatorInputPortMXBean.class, true);
+		_port = JMX.newMXBeanProxy(_operatorConfiguration.get_pooledMbeanServerConnection(), operatorObjName, OperatorInputPortMXBean.class, true);
 		
 		/*
 		 * Register input port metrics that match the specified filter criteria.
@@ -75,17 +75,17 @@ public class OperatorInputPortHandler extends MetricOwningHandler implements Clo
 	}
 
 	@Override
-	protected boolean isRelevantMetric(String metricName) {
-		boolean isRelevant = _operatorConfiguration.get_filters().matchesOperatorInputPortMetricName(_instanceId, _jobName, _operatorName, _portIndex, metricName);
+	protected IMetricEvaluator getMetricEvaluator(String metricName) {
+		IMetricEvaluator evaluator = _operatorConfiguration.get_filters().getOperatorInputPortMetricEvaluator(_instanceId, _jobName, _operatorName, _portIndex, metricName, _operatorConfiguration.get_defaultMetricEvaluator());
 		if (_trace.isInfoEnabled()) {
-			if (isRelevant) {
+			if (evaluator != null) {
 				_trace.info("The following input port metric meets the filter criteria and is therefore, monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], operator=" + _operatorName + ", port=" + _portIndex + ", metric=" + metricName);
 			}
 			else { 
 				_trace.info("The following input port metric does not meet the filter criteria and is therefore, not monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], operator=" + _operatorName + ", port=" + _portIndex + ", metric=" + metricName);
 			}
 		}
-		return isRelevant;
+		return evaluator;
 	}
 
 	@Override
@@ -96,9 +96,29 @@ public class OperatorInputPortHandler extends MetricOwningHandler implements Clo
 
 	/**
 	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
 	 * @throws Exception 
 	 */
-	public void captureMetrics() throws Exception {
+	public void captureMetrics(MetricsTupleContainer tc) throws Exception {
+		captureMetrics(tc, null);
+	}
+
+	/**
+	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @param snapshot
+	 * The job metrics snapshot that holds the already retrieved metrics,
+	 * or null if the metrics are retrieved from the MXBean.
+	 * 
+	 * @throws Exception 
+	 */
+	public void captureMetrics(MetricsTupleContainer tc, JobMetricsSnapshot snapshot) throws Exception {
 
 		// Determine the trace level status once per function.
 		boolean isDebugEnabled = _trace.isDebugEnabled();
@@ -106,10 +126,10 @@ public class OperatorInputPortHandler extends MetricOwningHandler implements Clo
 		if (isDebugEnabled) {
 			_trace.debug("--> captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", operator=" + _operatorName + ", port=" + _portIndex + ")");
 		}
-		MetricsTupleContainer tc = _operatorConfiguration.get_tupleContainerMetricsSource();
 		tc.setOrigin("OperatorInputPort");
+		_operatorConfiguration.get_scanStatistics().incrementObjectsVisited(ScanStatistics.Level.port);
 		tc.setPortIndex(_portIndex);
-		captureAndSubmitChangedMetrics();
+		captureAndSubmitChangedMetrics(tc, (snapshot != null) ? snapshot.getOperatorInputPortMetrics(_operatorName, _portIndex) : null);
 
 		if (isDebugEnabled) {
 			_trace.debug("<-- captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", operator=" + _operatorName + ", port=" + _portIndex + ")");
@@ -62,7 +62,7 @@ public class OperatorOutputPortHandler extends MetricOwningHandler implements Cl
 		}
 		
 		ObjectName operatorObjName = ObjectNameBuilder.operatorOutputPort(_instanceId, _jobId, _operatorName, _portIndex);
-		_port = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), operatorObjName, OperatorOutputPortMXBean.class, true);
+		_port = JMX.newMXBeanProxy(_operatorConfiguration.get_pooledMbeanServerConnection(), operatorObjName, OperatorOutputPortMXBean.class, true);
 		
 		/*
 		 * Register output port metrics that match the specified filter criteria.
@@ -75,17 +75,17 @@ public class OperatorOutputPortHandler extends MetricOwningHandler implements Cl
 	}
 
 	@Override
-	protected boolean isRelevantMetric(String metricName) {
-		boolean isRelevant = _operatorConfiguration.get_filters().matchesOperatorOutputPortMetricName(_instanceId, _jobName, _operatorName, _portIndex, metricName);
+	protected IMetricEvaluator getMetricEvaluator(String metricName) {
+		IMetricEvaluator evaluator = _operatorConfiguration.get_filters().getOperatorOutputPortMetricEvaluator(_instanceId, _jobName, _operatorName, _portIndex, metricName, _operatorConfiguration.get_defaultMetricEvaluator());
 		if (_trace.isInfoEnabled()) {
-			if (isRelevant) {
+			if (evaluator != null) {
 				_trace.info("The following output port metric meets the filter criteria and is therefore, monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], operator=" + _operatorName + ", port=" + _portIndex + ", metric=" + metricName);
 			}
 			else { 
 				_trace.info("The following output port metric does not meet the filter criteria and is therefore, not monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], operator=" + _operatorName + ", port=" + _portIndex + ", metric=" + metricName);
 			}
 		}
-		return isRelevant;
+		return evaluator;
 	}
 
 	@Override
@@ -96,9 +96,29 @@ public class OperatorOutputPortHandler extends MetricOwningHandler implements Cl
 
 	/**
 	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
 	 * @throws Exception 
 	 */
-	public void captureMetrics() throws Exception {
+	public void captureMetrics(MetricsTupleContainer tc) throws Exception {
+		captureMetrics(tc, null);
+	}
+
+	/**
+	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @param snapshot
+	 * The job metrics snapshot that holds the already retrieved metrics,
+	 * or null if the metrics are retrieved from the MXBean.
+	 * 
+	 * @throws Exception 
+	 */
+	public void captureMetrics(MetricsTupleContainer tc, JobMetricsSnapshot snapshot) throws Exception {
 
 		// Determine the trace level status once per function.
 		boolean isDebugEnabled = _trace.isDebugEnabled();
@@ -106,10 +126,10 @@ public class OperatorOutputPortHandler extends MetricOwningHandler implements Cl
 		if (isDebugEnabled) {
 			_trace.debug("--> captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", operator=" + _operatorName + ", port=" + _portIndex + ")");
 		}
-		MetricsTupleContainer tc = _operatorConfiguration.get_tupleContainerMetricsSource();
 		tc.setOrigin("OperatorOutputPort");
+		_operatorConfiguration.get_scanStatistics().incrementObjectsVisited(ScanStatistics.Level.port);
 		tc.setPortIndex(_portIndex);
-		captureAndSubmitChangedMetrics();
+		captureAndSubmitChangedMetrics(tc, (snapshot != null) ? snapshot.getOperatorOutputPortMetrics(_operatorName, _portIndex) : null);
 
 		if (isDebugEnabled) {
 			_trace.debug("<-- captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", operator=" + _operatorName + ", port=" + _portIndex + ")");
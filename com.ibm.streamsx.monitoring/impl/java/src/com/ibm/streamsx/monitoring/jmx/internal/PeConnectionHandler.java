@@ -62,7 +62,7 @@ public class PeConnectionHandler extends MetricOwningHandler implements Closeabl
 		}
 		
 		ObjectName objName = ObjectNameBuilder.peConnection(_instanceId, _connectionId);
-		_connection = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), objName, PeConnectionMXBean.class, true);
+		_connection = JMX.newMXBeanProxy(_operatorConfiguration.get_pooledMbeanServerConnection(), objName, PeConnectionMXBean.class, true);
 		
 		/*
 		 * Register connection metrics that match the specified filter criteria.
@@ -75,17 +75,17 @@ public class PeConnectionHandler extends MetricOwningHandler implements Closeabl
 	}
 
 	@Override
-	protected boolean isRelevantMetric(String metricName) {
-		boolean isRelevant = _operatorConfiguration.get_filters().matchesPeConnectionMetricName(_instanceId, _jobName, _peId, _connectionId, metricName);
+	protected IMetricEvaluator getMetricEvaluator(String metricName) {
+		IMetricEvaluator evaluator = _operatorConfiguration.get_filters().getPeConnectionMetricEvaluator(_instanceId, _jobName, _peId, _connectionId, metricName, _operatorConfiguration.get_defaultMetricEvaluator());
 		if (_trace.isInfoEnabled()) {
-			if (isRelevant) {
+			if (evaluator != null) {
 				_trace.info("The following input port metric meets the filter criteria and is therefore, monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], peId=" + _peId + ", connectionId=" + _connectionId + ", metric=" + metricName);
 			}
 			else { 
 				_trace.info("The following input port metric does not meet the filter criteria and is therefore, not monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], peId=" + _peId + ", connetionId=" + _connectionId + ", metric=" + metricName);
 			}
 		}
-		return isRelevant;
+		return evaluator;
 	}
 
 	@Override
@@ -96,9 +96,29 @@ public class PeConnectionHandler extends MetricOwningHandler implements Closeabl
 
 	/**
 	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
 	 * @throws Exception 
 	 */
-	public void captureMetrics() throws Exception {
+	public void captureMetrics(MetricsTupleContainer tc) throws Exception {
+		captureMetrics(tc, null);
+	}
+
+	/**
+	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @param snapshot
+	 * The job metrics snapshot that holds the already retrieved metrics,
+	 * or null if the metrics are retrieved from the MXBean.
+	 * 
+	 * @throws Exception 
+	 */
+	public void captureMetrics(MetricsTupleContainer tc, JobMetricsSnapshot snapshot) throws Exception {
 
 		// Determine the trace level status once per function.
 		boolean isDebugEnabled = _trace.isDebugEnabled();
@@ -106,10 +126,10 @@ public class PeConnectionHandler extends MetricOwningHandler implements Closeabl
 		if (isDebugEnabled) {
 			_trace.debug("--> captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", peId=" + _peId + ", connectionId=" + _connectionId + ")");
 		}
-		MetricsTupleContainer tc = _operatorConfiguration.get_tupleContainerMetricsSource();
 		tc.setOrigin("PeConnection");
+		_operatorConfiguration.get_scanStatistics().incrementObjectsVisited(ScanStatistics.Level.connection);
 		tc.setConnectionId(_connectionId);
-		captureAndSubmitChangedMetrics();
+		captureAndSubmitChangedMetrics(tc, (snapshot != null) ? snapshot.getPeConnectionMetrics(_connectionId) : null);
 
 		if (isDebugEnabled) {
 			_trace.debug("<-- captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", peId=" + _peId + ", connectionId=" + _connectionId + ")");
@@ -18,7 +18,6 @@ import java.util.Set;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMX;
 import javax.management.Notification;
-import javax.management.NotificationFilterSupport;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
 
@@ -52,13 +51,56 @@ public class PeHandler extends MetricOwningHandler implements NotificationListen
 	
 	private PeMXBean _pe = null;
 
+	/**
+	 * Specifies whether the connections are added during the next capture,
+	 * which is the case if the topology is discovered in bulk.
+	 */
+	private boolean _isSetupPending = false;
+
+	/**
+	 * The connections that are added during the next capture, or null if
+	 * they are retrieved from the PeMXBean.
+	 */
+	private Set<String> _pendingConnectionIds = null;
+
+	/**
+	 * Specifies whether the notification listener is registered during the
+	 * next capture, which is the case if the topology is discovered in bulk
+	 * or if the registration failed.
+	 */
+	private boolean _isListenerPending = false;
+
 	private Map<Integer /* port index */, PeInputPortHandler> _inputPortHandlers = new HashMap<>();
 
 	private Map<Integer /* port index */, PeOutputPortHandler> _outputPortHandlers = new HashMap<>();
 	
 	private Map<String /* connection id */, PeConnectionHandler> _connectionHandlers = new HashMap<>();
 
+	/**
+	 * The cached resource of the PE. It changes only if the PE is relocated.
+	 * Therefore, it is retrieved again only if a PE_CHANGED notification
+	 * invalidates the cache or if the placement refresh period expired.
+	 */
+	private String _resource = null;
+
+	/**
+	 * The time in milliseconds when the cached resource expires. The value 0
+	 * invalidates the cache.
+	 */
+	private volatile long _placementExpiry = 0;
+
 	public PeHandler(OperatorConfiguration operatorConfiguration, String instanceId, String jobId, String jobName, String peId) {
+		this(operatorConfiguration, instanceId, jobId, jobName, peId, null);
+	}
+
+	/**
+	 * @param topology
+	 * The topology that is discovered in bulk, or null if the ports shall
+	 * be retrieved from the PeMXBean. If the topology is specified, the
+	 * MXBean proxy is created, the connections are retrieved, and the
+	 * notification listener is registered during the first capture.
+	 */
+	public PeHandler(OperatorConfiguration operatorConfiguration, String instanceId, String jobId, String jobName, String peId, InstanceTopology topology) {
 		super(MetricsRegistrationMode.DynamicMetricsRegistration);
 		
 		if (_trace.isDebugEnabled()) {
@@ -72,26 +114,17 @@ public class PeHandler extends MetricOwningHandler implements NotificationListen
 		_peId = peId;
 
 		_objName = ObjectNameBuilder.pe(_instanceId, _peId);
-		_pe = JMX.newMXBeanProxy(_operatorConfiguration.get_mbeanServerConnection(), _objName, PeMXBean.class, true);
-		
-		/*
-		 * Register to get pe-related notifications.
-		 */
-		NotificationFilterSupport filter = new NotificationFilterSupport();
-		if (OpType.JOB_STATUS_SOURCE == _operatorConfiguration.get_OperatorType()) {
-			filter.enableType(Notifications.PE_CHANGED);
+
+		Set<Integer> inputPorts = (topology != null) ? topology.getPeInputPorts(_peId) : null;
+		Set<Integer> outputPorts = (topology != null) ? topology.getPeOutputPorts(_peId) : null;
+		if ((OpType.METRICS_SOURCE == _operatorConfiguration.get_OperatorType()) && (inputPorts != null) && (outputPorts != null)) {
+			_isSetupPending = true;
+			_pendingConnectionIds = topology.getPeConnections(_peId);
+			_isListenerPending = true;
 		}
 		else {
-			filter.enableType(Notifications.PE_NOTIFICATION);
-		}
-		try {
-			_operatorConfiguration.get_mbeanServerConnection().addNotificationListener(_objName, this, filter, null);
-		} catch (InstanceNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+			addNotificationListener();
 		}
-		//	TODO      jmxc.addConnectionNotificationListener(this, null, null); // listen for potential lost notifications
 		if (OpType.METRICS_SOURCE == _operatorConfiguration.get_OperatorType()) {
 			/*
 			 * Register input port metrics that match the specified filter criteria.
@@ -101,22 +134,34 @@ public class PeHandler extends MetricOwningHandler implements NotificationListen
 			/*
 			 * Register input port metrics that match the specified filter criteria.
 			 */
-			for (Integer portIndex : _pe.getInputPorts()) {
+			for (Integer portIndex : (inputPorts != null) ? inputPorts : getPe().getInputPorts()) {
 				addValidInputPort(portIndex);
 			}
 			/*
 			 * Register output port metrics that match the specified filter criteria.
 			 */
-			for (Integer portIndex : _pe.getOutputPorts()) {
+			for (Integer portIndex : (outputPorts != null) ? outputPorts : getPe().getOutputPorts()) {
 				addValidOutputPort(portIndex);
 			}
 			
-			for (String connectionId : _pe.getConnections()) {
-				addValidConnection(connectionId);
+			if (!_isSetupPending) {
+				for (String connectionId : getPe().getConnections()) {
+					addValidConnection(connectionId);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Get the MXBean proxy of the PE, which is created on first use.
+	 */
+	protected PeMXBean getPe() {
+		if (_pe == null) {
+			_pe = JMX.newMXBeanProxy(_operatorConfiguration.get_pooledMbeanServerConnection(), _objName, PeMXBean.class, true);
+		}
+		return _pe;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -128,31 +173,138 @@ public class PeHandler extends MetricOwningHandler implements NotificationListen
 			_trace.debug("notification: " + notification + ", userData=" + notification.getUserData());
 		}
 		if (OpType.JOB_STATUS_SOURCE == _operatorConfiguration.get_OperatorType()) {
-			final Tuple tuple = _operatorConfiguration.get_tupleContainerJobStatusSource().getTuple(notification, handback, _instanceId, _jobId, _jobName, _pe.getResource(), _peId, _pe.getHealth(), _pe.getStatus());
+			final Tuple tuple = _operatorConfiguration.get_tupleContainerJobStatusSource().getTuple(notification, handback, _instanceId, _jobId, _jobName, getPe().getResource(), _peId, getPe().getHealth(), getPe().getStatus());
 			_operatorConfiguration.get_tupleContainerJobStatusSource().submit(tuple);
 		}
+		else if (notification.getType().equals(Notifications.PE_CHANGED)) {
+			/*
+			 * The PE is restarted or relocated.
+			 */
+			_placementExpiry = 0;
+		}
+	}
+
+	/**
+	 * Register to get pe-related notifications. If the registration fails,
+	 * it is retried during the next capture.
+	 */
+	protected void addNotificationListener() {
+		try {
+			if (OpType.JOB_STATUS_SOURCE == _operatorConfiguration.get_OperatorType()) {
+				_operatorConfiguration.get_notificationRegistry().register(_objName, this, Notifications.PE_CHANGED);
+			}
+			else {
+				_operatorConfiguration.get_notificationRegistry().register(_objName, this, Notifications.PE_NOTIFICATION);
+			}
+			_isListenerPending = false;
+		} catch (InstanceNotFoundException | IOException e) {
+			_trace.error("Cannot register the notification listener of PE " + _peId + " of job " + _jobId + ", retrying with the next capture: " + e);
+			_isListenerPending = true;
+		}
+		//	TODO      jmxc.addConnectionNotificationListener(this, null, null); // listen for potential lost notifications
+	}
+
+	/**
+	 * Retrieve the resource again after the operator established a new JMX
+	 * connection because the PE may be relocated meanwhile. The
+	 * notification registry registers the listener again.
+	 */
+	public void reconnect() {
+		_placementExpiry = 0;
+	}
+
+	/**
+	 * Retrieve the resource if the cache is invalidated or expired.
+	 */
+	protected void refreshPlacement() {
+		long now = System.currentTimeMillis();
+		if (now >= _placementExpiry) {
+			/*
+			 * Set the expiry time before retrieving the resource. If a
+			 * notification invalidates the cache meanwhile, the resource is
+			 * retrieved again during the next scan cycle.
+			 */
+			_placementExpiry = now + (long)(_operatorConfiguration.get_placementRefreshPeriod() * 1000.0);
+			_resource = getPe().getResource();
+		}
 	}
 
 	@Override
-	protected boolean isRelevantMetric(String metricName) {
-		boolean isRelevant = _operatorConfiguration.get_filters().matchesPeMetricName(_instanceId, _jobName, _peId, metricName);
+	protected IMetricEvaluator getMetricEvaluator(String metricName) {
+		IMetricEvaluator evaluator = _operatorConfiguration.get_filters().getPeMetricEvaluator(_instanceId, _jobName, _peId, metricName, _operatorConfiguration.get_defaultMetricEvaluator());
 		if (_trace.isInfoEnabled()) {
-			if (isRelevant) {
+			if (evaluator != null) {
 				_trace.info("The following pe metric meets the filter criteria and is therefore, monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], peId=" + _peId + ", metric=" + metricName);
 			}
 			else {
 				_trace.info("The following pe metric does not meet the filter criteria and is therefore, not monitored: instance=" + _instanceId + ", job=[" + _jobId + "][" + _jobName + "], peId=" + _peId + ", metric=" + metricName);
 			}
 		}
-		return isRelevant;
+		return evaluator;
 	}
 
 	@Override
 	protected Set<Metric> retrieveMetrics() {
-		Set<Metric> metrics = _pe.retrieveMetrics(false);
+		Set<Metric> metrics = getPe().retrieveMetrics(false);
 		return metrics;
 	}
 
+	/**
+	 * Apply a changed filter document. Handlers are closed for ports and
+	 * connections that do not meet the filter criteria anymore, and added
+	 * for those that meet the criteria now. The metrics of this PE and of
+	 * the other ports and connections are reconciled.
+	 */
+	public void reconcileFilters() throws Exception {
+		if (OpType.METRICS_SOURCE != _operatorConfiguration.get_OperatorType()) {
+			return;
+		}
+		reconcileMetrics();
+		for(Integer portIndex : getPe().getInputPorts()) {
+			PeInputPortHandler handler = _inputPortHandlers.get(portIndex);
+			if (handler == null) {
+				addValidInputPort(portIndex);
+			}
+			else if (_operatorConfiguration.get_filters().matchesPeInputPortIndex(_instanceId, _jobName, _peId, portIndex)) {
+				handler.reconcileMetrics();
+			}
+			else {
+				_inputPortHandlers.remove(portIndex);
+				handler.close();
+			}
+		}
+		for(Integer portIndex : getPe().getOutputPorts()) {
+			PeOutputPortHandler handler = _outputPortHandlers.get(portIndex);
+			if (handler == null) {
+				addValidOutputPort(portIndex);
+			}
+			else if (_operatorConfiguration.get_filters().matchesPeOutputPortIndex(_instanceId, _jobName, _peId, portIndex)) {
+				handler.reconcileMetrics();
+			}
+			else {
+				_outputPortHandlers.remove(portIndex);
+				handler.close();
+			}
+		}
+		if (_isSetupPending) {
+			// The connections are evaluated with the new filters during the first capture.
+			return;
+		}
+		for(String connectionId : getPe().getConnections()) {
+			PeConnectionHandler handler = _connectionHandlers.get(connectionId);
+			if (handler == null) {
+				addValidConnection(connectionId);
+			}
+			else if (_operatorConfiguration.get_filters().matchesPeConnectionId(_instanceId, _jobName, _peId, connectionId)) {
+				handler.reconcileMetrics();
+			}
+			else {
+				_connectionHandlers.remove(connectionId);
+				handler.close();
+			}
+		}
+	}
+
 	protected void addValidInputPort(Integer portIndex) {
 		boolean matches = _operatorConfiguration.get_filters().matchesPeInputPortIndex(_instanceId, _jobName, _peId, portIndex);
 		if (_trace.isInfoEnabled()) {
@@ -201,37 +353,73 @@ public class PeHandler extends MetricOwningHandler implements NotificationListen
 	/**
 	 * Iterate all jobs to capture the job metrics.
 	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
 	 * @throws Exception
 	 * Throws Exception if submitting the tuple failed. 
 	 */
-	public void captureMetrics() throws Exception {
+	public void captureMetrics(MetricsTupleContainer tc) throws Exception {
+		captureMetrics(tc, null);
+	}
+
+	/**
+	 * Iterate all jobs to capture the job metrics.
+	 * 
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 * 
+	 * @param snapshot
+	 * The job metrics snapshot that holds the already retrieved metrics,
+	 * or null if the metrics are retrieved from the MXBean.
+	 * 
+	 * @throws Exception
+	 * Throws Exception if submitting the tuple failed. 
+	 */
+	public void captureMetrics(MetricsTupleContainer tc, JobMetricsSnapshot snapshot) throws Exception {
 		// Determine the trace level status once per function.
 		boolean isDebugEnabled = _trace.isDebugEnabled();
 
 		if (isDebugEnabled) {
 			_trace.debug("--> captureMetrics(instance=" + _instanceId + ", job=[" + _jobId + "]:" + _jobName + ", peId=" + _peId + ")");
 		}
-		MetricsTupleContainer tc = _operatorConfiguration.get_tupleContainerMetricsSource();
+		if (_isListenerPending) {
+			addNotificationListener();
+		}
+		if (_isSetupPending) {
+			_isSetupPending = false;
+			for (String connectionId : (_pendingConnectionIds != null) ? _pendingConnectionIds : getPe().getConnections()) {
+				addValidConnection(connectionId);
+			}
+			_pendingConnectionIds = null;
+		}
+
 		tc.setOperatorName("");
 		tc.setOrigin("Pe");
+		_operatorConfiguration.get_scanStatistics().incrementObjectsVisited(ScanStatistics.Level.pe);
 		tc.setPortIndex(0);
 		tc.setChannel(-1);
 		tc.setPeId(_peId);
-		tc.setResource(_pe.getResource());
+		String resource = (snapshot != null) ? snapshot.getPeResource(_peId) : null;
+		if (resource == null) {
+			refreshPlacement();
+			resource = _resource;
+		}
+		tc.setResource(resource);
 
-		captureAndSubmitChangedMetrics();
+		captureAndSubmitChangedMetrics(tc, (snapshot != null) ? snapshot.getPeMetrics(_peId) : null);
 
 		/*
 		 * Capture port metrics.
 		 */
 		for(Integer portIndex : _inputPortHandlers.keySet()) {
-			_inputPortHandlers.get(portIndex).captureMetrics();
+			_inputPortHandlers.get(portIndex).captureMetrics(tc, snapshot);
 		}
 		for(Integer portIndex : _outputPortHandlers.keySet()) {
-			_outputPortHandlers.get(portIndex).captureMetrics();
+			_outputPortHandlers.get(portIndex).captureMetrics(tc, snapshot);
 		}
 		for(String connectionId : _connectionHandlers.keySet()) {
-			_connectionHandlers.get(connectionId).captureMetrics();
+			_connectionHandlers.get(connectionId).captureMetrics(tc, snapshot);
 		}
 
 		if (isDebugEnabled) {
@@ -244,8 +432,10 @@ public class PeHandler extends MetricOwningHandler implements NotificationListen
 	 */
 	@Override
 	public void close() throws Exception {
+		// Release the metric slots.
+		super.close();
 		// Remove the notification listener.
-		_operatorConfiguration.get_mbeanServerConnection().removeNotificationListener(_objName, this);
+		_operatorConfiguration.get_notificationRegistry().unregister(_objName, this);
 		// Close all resources of all child objects.
 		for(PeInputPortHandler handler : _inputPortHandlers.values()) {
 			handler.close();
@@ -255,6 +445,10 @@ public class PeHandler extends MetricOwningHandler implements NotificationListen
 			handler.close();
 		}
 		_outputPortHandlers.clear();
+		for(PeConnectionHandler handler : _connectionHandlers.values()) {
+			handler.close();
+		}
+		_connectionHandlers.clear();
 	}
 
 }
@@ -0,0 +1,46 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import com.ibm.streams.management.Metric;
+
+/**
+ * This metric evaluator marks a metric as submittable if the value changed
+ * by at least the specified percentage of the last submitted value. If the
+ * last value is 0, each change is submittable.
+ */
+public class PercentageMetricEvaluator implements IMetricEvaluator {
+
+	private final double _percentage;
+
+	public PercentageMetricEvaluator(double percentage) {
+		if (percentage <= 0.0) {
+			throw new IllegalArgumentException("PercentageMetricEvaluator(percentage=" + percentage + ")");
+		}
+		_percentage = percentage;
+	}
+
+	@Override
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot) {
+		if (!store.hasValue(slot)) {
+			return true;
+		}
+		long lastValue = store.getLastValue(slot);
+		long delta = Math.abs(metric.getValueAsLong() - lastValue);
+		if (lastValue == 0) {
+			return delta > 0;
+		}
+		return (delta * 100.0) >= (_percentage * Math.abs((double)lastValue));
+	}
+
+	@Override
+	public void updateStatus(Metric metric, MetricStateStore store, int slot) {
+		store.setValue(slot, metric.getValueAsLong(), metric.getLastTimeRetrieved());
+	}
+
+}
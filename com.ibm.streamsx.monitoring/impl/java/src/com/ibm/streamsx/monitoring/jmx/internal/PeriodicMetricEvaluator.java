@@ -37,12 +37,12 @@ public class PeriodicMetricEvaluator implements IMetricEvaluator {
 	}
 	
 	@Override
-	public boolean isSubmittable(Metric metric) {
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot) {
 		return true;
 	}
 
 	@Override
-	public void updateStatus(Metric metric) {
+	public void updateStatus(Metric metric, MetricStateStore store, int slot) {
 	}
 
 }
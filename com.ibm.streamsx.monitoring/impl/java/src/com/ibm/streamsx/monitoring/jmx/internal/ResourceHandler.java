@@ -0,0 +1,120 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.streams.management.Metric;
+import com.ibm.streams.management.instance.InstanceMXBean;
+import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration;
+
+/**
+ * Captures the metrics of a resource (host) of the instance, for example,
+ * its CPU and memory utilization. The metrics of all resources are
+ * retrieved with one InstanceMXBean call per scan cycle, and the instance
+ * handler passes the metrics of this resource.
+ */
+public class ResourceHandler extends MetricOwningHandler implements Closeable {
+
+	/**
+	 * Logger for tracing.
+	 */
+	private static Logger _trace = Logger.getLogger(ResourceHandler.class.getName());
+
+	private String _instanceId = null;
+
+	private String _resourceId = null;
+
+	private InstanceMXBean _instance = null;
+
+	public ResourceHandler(OperatorConfiguration operatorConfiguration, String instanceId, String resourceId, InstanceMXBean instance) {
+
+		super(MetricsRegistrationMode.DynamicMetricsRegistration);
+
+		if (_trace.isDebugEnabled()) {
+			_trace.debug("ResourceHandler(instance=" + instanceId + ", resource=" + resourceId + ")");
+		}
+		// Store parameters for later use.
+		_operatorConfiguration = operatorConfiguration;
+		_instanceId = instanceId;
+		_resourceId = resourceId;
+		_instance = instance;
+
+		/*
+		 * Register resource metrics that match the specified filter criteria.
+		 */
+		registerMetrics();
+	}
+
+	public String getResourceId() {
+		return _resourceId;
+	}
+
+	@Override
+	protected IMetricEvaluator getMetricEvaluator(String metricName) {
+		IMetricEvaluator evaluator = _operatorConfiguration.get_filters().getResourceMetricEvaluator(_instanceId, _resourceId, metricName, _operatorConfiguration.get_defaultMetricEvaluator());
+		if (_trace.isInfoEnabled()) {
+			if (evaluator != null) {
+				_trace.info("The following resource metric meets the filter criteria and is therefore, monitored: instance=" + _instanceId + ", resource=" + _resourceId + ", metric=" + metricName);
+			}
+			else {
+				_trace.info("The following resource metric does not meet the filter criteria and is therefore, not monitored: instance=" + _instanceId + ", resource=" + _resourceId + ", metric=" + metricName);
+			}
+		}
+		return evaluator;
+	}
+
+	@Override
+	protected Set<Metric> retrieveMetrics() {
+		Map<String, Set<Metric>> metrics = _instance.retrieveResourceMetrics(false);
+		Set<Metric> result = (metrics != null) ? metrics.get(_resourceId) : null;
+		return (result != null) ? result : Collections.<Metric>emptySet();
+	}
+
+	/**
+	 * Capture the metrics of the resource.
+	 *
+	 * @param tc
+	 * The tuple container that is used to submit the tuples.
+	 *
+	 * @param metrics
+	 * The already retrieved metrics of the resource, or null if the metrics
+	 * are retrieved from the MXBean.
+	 *
+	 * @throws Exception
+	 * Throws Exception if submitting the tuple failed.
+	 */
+	public void captureMetrics(MetricsTupleContainer tc, Set<Metric> metrics) throws Exception {
+		// Determine the trace level status once per function.
+		boolean isDebugEnabled = _trace.isDebugEnabled();
+
+		if (isDebugEnabled) {
+			_trace.debug("--> captureMetrics(instance=" + _instanceId + ", resource=" + _resourceId + ")");
+		}
+		tc.setOrigin("Resource");
+		_operatorConfiguration.get_scanStatistics().incrementObjectsVisited(ScanStatistics.Level.resource);
+		tc.setJobId("0");
+		tc.setJobName("");
+		tc.setOperatorName("");
+		tc.setPortIndex(0);
+		tc.setConnectionId("");
+		tc.setChannel(-1);
+		tc.setPeId("0");
+		tc.setResource(_resourceId);
+		captureAndSubmitChangedMetrics(tc, metrics);
+
+		if (isDebugEnabled) {
+			_trace.debug("<-- captureMetrics(instance=" + _instanceId + ", resource=" + _resourceId + ")");
+		}
+	}
+
+}
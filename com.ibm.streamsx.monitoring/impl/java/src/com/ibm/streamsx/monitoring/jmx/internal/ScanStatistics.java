@@ -0,0 +1,165 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServerConnection;
+
+/**
+ * Collects statistics about a scan cycle, for example, the number of JMX
+ * calls, the number of visited objects per level, and the latency of the
+ * metrics retrieval. The handlers update the statistics concurrently if the
+ * jobs are scanned by several threads.
+ */
+public class ScanStatistics {
+
+	/**
+	 * The levels of the visited objects.
+	 */
+	public enum Level {
+		job,
+		operator,
+		port,
+		pe,
+		connection,
+		resource,
+	};
+
+	/**
+	 * The upper bounds of the latency histogram buckets in milliseconds. The
+	 * last bucket counts the latencies that exceed the last bound.
+	 */
+	private static final long[] LATENCY_BOUNDS_MS = { 1, 5, 10, 50, 100, 500 };
+
+	private final AtomicLong _jmxCalls = new AtomicLong();
+
+	private final AtomicLongArray _objectsVisited = new AtomicLongArray(Level.values().length);
+
+	private final AtomicLong _metricsEvaluated = new AtomicLong();
+
+	private final AtomicLong _tuplesEmitted = new AtomicLong();
+
+	private final AtomicLongArray _retrieveMetricsLatency = new AtomicLongArray(LATENCY_BOUNDS_MS.length + 1);
+
+	/**
+	 * Reset all statistics at the beginning of a scan cycle.
+	 */
+	public void reset() {
+		_jmxCalls.set(0);
+		for (int i = 0; i < _objectsVisited.length(); i++) {
+			_objectsVisited.set(i, 0);
+		}
+		_metricsEvaluated.set(0);
+		_tuplesEmitted.set(0);
+		for (int i = 0; i < _retrieveMetricsLatency.length(); i++) {
+			_retrieveMetricsLatency.set(i, 0);
+		}
+	}
+
+	public void incrementJmxCalls() {
+		_jmxCalls.incrementAndGet();
+	}
+
+	public void incrementObjectsVisited(Level level) {
+		_objectsVisited.incrementAndGet(level.ordinal());
+	}
+
+	public void incrementMetricsEvaluated() {
+		_metricsEvaluated.incrementAndGet();
+	}
+
+	public void incrementTuplesEmitted() {
+		_tuplesEmitted.incrementAndGet();
+	}
+
+	/**
+	 * Add the latency of a {@code retrieveMetrics()} call to the histogram.
+	 *
+	 * @param nanos
+	 * The latency in nanoseconds.
+	 */
+	public void recordRetrieveMetricsLatency(long nanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int bucket = 0;
+		while ((bucket < LATENCY_BOUNDS_MS.length) && (millis >= LATENCY_BOUNDS_MS[bucket])) {
+			bucket++;
+		}
+		_retrieveMetricsLatency.incrementAndGet(bucket);
+	}
+
+	public long getJmxCalls() {
+		return _jmxCalls.get();
+	}
+
+	public long getObjectsVisited(Level level) {
+		return _objectsVisited.get(level.ordinal());
+	}
+
+	public long getMetricsEvaluated() {
+		return _metricsEvaluated.get();
+	}
+
+	public long getTuplesEmitted() {
+		return _tuplesEmitted.get();
+	}
+
+	public static int getRetrieveMetricsLatencyBucketCount() {
+		return LATENCY_BOUNDS_MS.length + 1;
+	}
+
+	/**
+	 * Get the name of a latency histogram bucket, for example,
+	 * nRetrieveMetricsBelow5Ms or nRetrieveMetricsFrom500Ms.
+	 */
+	public static String getRetrieveMetricsLatencyBucketName(int bucket) {
+		if (bucket < LATENCY_BOUNDS_MS.length) {
+			return "nRetrieveMetricsBelow" + LATENCY_BOUNDS_MS[bucket] + "Ms";
+		}
+		return "nRetrieveMetricsFrom" + LATENCY_BOUNDS_MS[LATENCY_BOUNDS_MS.length - 1] + "Ms";
+	}
+
+	public long getRetrieveMetricsLatency(int bucket) {
+		return _retrieveMetricsLatency.get(bucket);
+	}
+
+	/**
+	 * Create an MBean server connection that counts each call before it
+	 * forwards the call to the given connection. All MXBean proxies that are
+	 * created with this connection are counted, too.
+	 *
+	 * @param connection
+	 * The MBean server connection of the JMX connector.
+	 */
+	public MBeanServerConnection newCountingConnection(final MBeanServerConnection connection) {
+		return (MBeanServerConnection)Proxy.newProxyInstance(
+				MBeanServerConnection.class.getClassLoader(),
+				new Class<?>[] { MBeanServerConnection.class },
+				new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						incrementJmxCalls();
+						try {
+							return method.invoke(connection, args);
+						}
+						catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+
+				});
+	}
+
+}
@@ -0,0 +1,90 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import com.ibm.streams.management.Metric;
+import com.ibm.streams.management.ThroughputRates;
+import com.ibm.streams.management.ValueDistribution;
+
+/**
+ * A metric that is parsed from a job's metrics snapshot. It provides the
+ * same information as the metrics that are retrieved from the metric
+ * owning MXBeans, so that the metric evaluators and the tuple container
+ * can process both the same way.
+ */
+class SnapshotMetric implements Metric {
+
+	private final String _name;
+	
+	private final Kind _metricKind;
+	
+	private final Type _metricType;
+	
+	private final long _value;
+	
+	private final long _lastTimeRetrieved;
+
+	public SnapshotMetric(String name, Kind metricKind, Type metricType, long value, long lastTimeRetrieved) {
+		_name = name;
+		_metricKind = metricKind;
+		_metricType = metricType;
+		_value = value;
+		_lastTimeRetrieved = lastTimeRetrieved;
+	}
+
+	@Override
+	public String getName() {
+		return _name;
+	}
+
+	@Override
+	public String getDescription() {
+		return "";
+	}
+
+	@Override
+	public Kind getMetricKind() {
+		return _metricKind;
+	}
+
+	@Override
+	public Type getMetricType() {
+		return _metricType;
+	}
+
+	@Override
+	public ValueType getValueType() {
+		return ValueType.LONG;
+	}
+
+	@Override
+	public ThroughputRates getThroughputRates() {
+		return null;
+	}
+
+	@Override
+	public ValueDistribution getValueDistribution() {
+		return null;
+	}
+
+	@Override
+	public long getLastTimeRetrieved() {
+		return _lastTimeRetrieved;
+	}
+
+	@Override
+	public double getValueAsDouble() {
+		return _value;
+	}
+
+	@Override
+	public long getValueAsLong() {
+		return _value;
+	}
+
+}
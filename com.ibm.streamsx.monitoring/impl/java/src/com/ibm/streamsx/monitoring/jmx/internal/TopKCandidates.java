@@ -0,0 +1,111 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.ibm.streams.operator.Tuple;
+
+/**
+ * Holds the metric tuples with the K highest values of a top-K emit policy
+ * in a bounded heap. The lowest value is at the head of the heap, so it is
+ * replaced when a higher value is added to a full heap.
+ */
+final class TopKCandidates {
+
+	/**
+	 * A metric tuple, and the slot of its metric in the metric state store.
+	 * If a dictionary port is used, the candidate holds also the dictionary
+	 * entry, which is submitted before the tuple unless the store holds the
+	 * dictionary generation of the series already.
+	 */
+	static final class Candidate {
+
+		final long value;
+
+		final Tuple tuple;
+
+		final int slot;
+
+		final int dictionaryGeneration;
+
+		final Tuple dictionaryEntry;
+
+		Candidate(long value, Tuple tuple, int slot, int dictionaryGeneration, Tuple dictionaryEntry) {
+			this.value = value;
+			this.tuple = tuple;
+			this.slot = slot;
+			this.dictionaryGeneration = dictionaryGeneration;
+			this.dictionaryEntry = dictionaryEntry;
+		}
+
+	}
+
+	private static final Comparator<Candidate> ASCENDING = new Comparator<Candidate>() {
+
+		@Override
+		public int compare(Candidate o1, Candidate o2) {
+			return Long.compare(o1.value, o2.value);
+		}
+
+	};
+
+	private final int _k;
+
+	private final PriorityQueue<Candidate> _heap;
+
+	TopKCandidates(int k) {
+		_k = k;
+		_heap = new PriorityQueue<>(k, ASCENDING);
+	}
+
+	/**
+	 * Determine whether a value would be added, so the metric tuple is
+	 * copied only in this case.
+	 */
+	boolean isCandidate(long value) {
+		return (_heap.size() < _k) || (value > _heap.peek().value);
+	}
+
+	void add(Candidate candidate) {
+		if (_heap.size() == _k) {
+			_heap.poll();
+		}
+		_heap.add(candidate);
+	}
+
+	/**
+	 * Add the candidates of another heap, for example, of a job that was
+	 * captured by a worker thread.
+	 */
+	void addAll(TopKCandidates other) {
+		for (Candidate candidate : other._heap) {
+			if (isCandidate(candidate.value)) {
+				add(candidate);
+			}
+		}
+	}
+
+	/**
+	 * Remove all candidates.
+	 *
+	 * @return
+	 * The candidates ordered by descending value.
+	 */
+	List<Candidate> removeAll() {
+		List<Candidate> result = new ArrayList<>(_heap);
+		_heap.clear();
+		Collections.sort(result, Collections.reverseOrder(ASCENDING));
+		return result;
+	}
+
+}
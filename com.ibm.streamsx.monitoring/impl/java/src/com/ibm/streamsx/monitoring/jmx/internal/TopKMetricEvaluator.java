@@ -0,0 +1,65 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal;
+
+import com.ibm.streams.management.Metric;
+
+/**
+ * This metric evaluator suppresses the individual metric tuples. Instead,
+ * the handler offers each value to the tuple container, which keeps the
+ * metric tuples with the K highest values of all metrics that match the
+ * same filter object, and submits them at the end of the job or of the
+ * scan cycle.
+ * <p>
+ * The evaluator instance identifies the candidates that compete. The
+ * parsers build one instance per JSON object of the filter document that
+ * specifies the emit policy, so all metricNamePatterns of this object, and
+ * all operators, PEs, ports, connections, or resources that the object
+ * matches, share the K tuples.
+ * </p>
+ */
+public class TopKMetricEvaluator implements IMetricEvaluator {
+
+	private final int _k;
+
+	private final boolean _isPerJob;
+
+	/**
+	 * @param k
+	 * The number of metric tuples that are submitted.
+	 *
+	 * @param isPerJob
+	 * If true, the top K metrics are submitted for each job, else for the
+	 * scan cycle.
+	 */
+	public TopKMetricEvaluator(int k, boolean isPerJob) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("TopKMetricEvaluator(k=" + k + ")");
+		}
+		_k = k;
+		_isPerJob = isPerJob;
+	}
+
+	public int getK() {
+		return _k;
+	}
+
+	public boolean isPerJob() {
+		return _isPerJob;
+	}
+
+	@Override
+	public boolean isSubmittable(Metric metric, MetricStateStore store, int slot) {
+		return false;
+	}
+
+	@Override
+	public void updateStatus(Metric metric, MetricStateStore store, int slot) {
+	}
+
+}
@@ -19,9 +19,46 @@ import org.apache.log4j.Logger;
 import com.ibm.json.java.JSONArray;
 import com.ibm.json.java.JSONArtifact;
 import com.ibm.json.java.JSONObject;
+import com.ibm.streamsx.monitoring.jmx.internal.DeltaMetricEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.HeartbeatMetricEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.PercentageMetricEvaluator;
+import com.ibm.streamsx.monitoring.jmx.internal.TopKMetricEvaluator;
 
 abstract class AbstractParser {
 	
+	/**
+	 * The emit policy of the metrics that match the metricNamePatterns of the
+	 * same object.
+	 */
+	protected static final String EMIT_POLICY = "emitPolicy";
+
+	/**
+	 * Submit a tuple if the value changed by at least this absolute delta.
+	 */
+	private static final String DEADBAND = "deadband";
+
+	/**
+	 * Submit a tuple if the value changed by at least this percentage.
+	 */
+	private static final String PERCENT_CHANGE = "percentChange";
+
+	/**
+	 * Submit an unchanged value after this number of scan cycles without a
+	 * tuple.
+	 */
+	private static final String HEARTBEAT_CYCLES = "heartbeatCycles";
+
+	/**
+	 * Submit only the tuples of the metrics with the K highest values.
+	 */
+	private static final String TOP_K = "topK";
+
+	/**
+	 * Select the top K metrics per job instead of per scan cycle.
+	 */
+	private static final String TOP_K_PER_JOB = "topKPerJob";
+
 	private Set<String> _mandatoryItems = new HashSet<>();
 
 	private Map<String, IValidator> _itemValidators = new HashMap<>();
@@ -157,6 +194,123 @@ abstract class AbstractParser {
 		return result;
 	}
 	
+	protected boolean verifyEmitPolicy(String key, Object json) {
+		boolean result = true;
+		if (json instanceof JSONObject) {
+			JSONObject policy = (JSONObject)json;
+			for (Object policyKey : policy.keySet()) {
+				if (DEADBAND.equals(policyKey) || HEARTBEAT_CYCLES.equals(policyKey) || TOP_K.equals(policyKey)) {
+					Double value = toNumber(policy.get(policyKey));
+					if ((value == null) || (value.doubleValue() < 1) || (value.doubleValue() != Math.floor(value.doubleValue()))) {
+						result = false;
+						logger().error("filterDocument: The value must be a positive integer. Details: key=" + policyKey + ", object=" + policy.get(policyKey));
+					}
+				}
+				else if (PERCENT_CHANGE.equals(policyKey)) {
+					Double value = toNumber(policy.get(policyKey));
+					if ((value == null) || (value.doubleValue() <= 0.0)) {
+						result = false;
+						logger().error("filterDocument: The value must be a positive number. Details: key=" + policyKey + ", object=" + policy.get(policyKey));
+					}
+				}
+				else if (TOP_K_PER_JOB.equals(policyKey)) {
+					if (toBoolean(policy.get(policyKey)) == null) {
+						result = false;
+						logger().error("filterDocument: The value must be a boolean. Details: key=" + policyKey + ", object=" + policy.get(policyKey));
+					}
+				}
+				else {
+					result = false;
+					logger().error("filterDocument: There is an unexpected key. Details: key=" + policyKey + ", json=" + policy);
+				}
+			}
+			if (policy.containsKey(DEADBAND) && policy.containsKey(PERCENT_CHANGE)) {
+				result = false;
+				logger().error("filterDocument: Specify either " + DEADBAND + " or " + PERCENT_CHANGE + ". Details: key=" + key + ", json=" + policy);
+			}
+			if (policy.containsKey(TOP_K) && (policy.containsKey(DEADBAND) || policy.containsKey(PERCENT_CHANGE) || policy.containsKey(HEARTBEAT_CYCLES))) {
+				result = false;
+				logger().error("filterDocument: Specify " + TOP_K + " without " + DEADBAND + ", " + PERCENT_CHANGE + ", and " + HEARTBEAT_CYCLES + ". Details: key=" + key + ", json=" + policy);
+			}
+			if (policy.containsKey(TOP_K_PER_JOB) && !policy.containsKey(TOP_K)) {
+				result = false;
+				logger().error("filterDocument: Specify " + TOP_K_PER_JOB + " with " + TOP_K + ". Details: key=" + key + ", json=" + policy);
+			}
+		}
+		else {
+			result = false;
+			logger().error("filterDocument: The emit policy must be a JSONObject. Details: key=" + key + ", object=" + json);
+		}
+		return result;
+	}
+
+	/**
+	 * Convert a number that is specified as string or as JSON number.
+	 *
+	 * @return
+	 * The number, or null if the object is not a number.
+	 */
+	private static Double toNumber(Object json) {
+		try {
+			if (json instanceof Number) {
+				return Double.valueOf(((Number)json).doubleValue());
+			}
+			if (json instanceof String) {
+				return Double.valueOf((String)json);
+			}
+		}
+		catch(NumberFormatException e) {
+		}
+		return null;
+	}
+
+	/**
+	 * Convert a boolean that is specified as string or as JSON boolean.
+	 *
+	 * @return
+	 * The boolean, or null if the object is not a boolean.
+	 */
+	private static Boolean toBoolean(Object json) {
+		if (json instanceof Boolean) {
+			return (Boolean)json;
+		}
+		if ("true".equals(json) || "false".equals(json)) {
+			return Boolean.valueOf((String)json);
+		}
+		return null;
+	}
+
+	/**
+	 * Build the evaluator for an emit policy. The policy is already verified.
+	 *
+	 * @return
+	 * The evaluator, or null if no emit policy is specified.
+	 */
+	protected IMetricEvaluator buildEmitPolicy(Object json) {
+		if (!(json instanceof JSONObject)) {
+			return null;
+		}
+		JSONObject policy = (JSONObject)json;
+		IMetricEvaluator evaluator = null;
+		if (policy.containsKey(TOP_K)) {
+			boolean isPerJob = policy.containsKey(TOP_K_PER_JOB) && toBoolean(policy.get(TOP_K_PER_JOB)).booleanValue();
+			return new TopKMetricEvaluator(toNumber(policy.get(TOP_K)).intValue(), isPerJob);
+		}
+		if (policy.containsKey(PERCENT_CHANGE)) {
+			evaluator = new PercentageMetricEvaluator(toNumber(policy.get(PERCENT_CHANGE)).doubleValue());
+		}
+		else if (policy.containsKey(DEADBAND)) {
+			evaluator = new DeltaMetricEvaluator(toNumber(policy.get(DEADBAND)).longValue());
+		}
+		else {
+			evaluator = DeltaMetricEvaluator.getDefault();
+		}
+		if (policy.containsKey(HEARTBEAT_CYCLES)) {
+			evaluator = new HeartbeatMetricEvaluator(evaluator, toNumber(policy.get(HEARTBEAT_CYCLES)).intValue());
+		}
+		return evaluator;
+	}
+
 	protected Set<String> buildPatternList(Object json) {
 		Set<String> result = new HashSet<>();
 		if (json instanceof JSONArray) {
@@ -0,0 +1,51 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal.filters;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable regular expression that can be matched by concurrent
+ * threads without locking. A Matcher is not thread-safe, so each thread
+ * re-uses its own Matcher instead of sharing one.
+ */
+final class CompiledPattern {
+
+	private final Pattern _pattern;
+
+	private final ThreadLocal<Matcher> _matcher = new ThreadLocal<Matcher>() {
+
+		@Override
+		protected Matcher initialValue() {
+			return _pattern.matcher("");
+		}
+
+	};
+
+	/**
+	 * @throws PatternSyntaxException
+	 * Throws this exception if the regular expression cannot be compiled.
+	 */
+	CompiledPattern(String regularExpression) throws PatternSyntaxException {
+		_pattern = Pattern.compile(regularExpression);
+	}
+
+	/**
+	 * Determine whether the entire value matches the regular expression.
+	 */
+	boolean matches(String value) {
+		Matcher matcher = _matcher.get();
+		boolean matches = matcher.reset(value).matches();
+		// Do not keep a reference to the value.
+		matcher.reset("");
+		return matches;
+	}
+
+}
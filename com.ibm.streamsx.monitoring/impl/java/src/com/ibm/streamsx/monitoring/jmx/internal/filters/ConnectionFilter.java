@@ -7,6 +7,7 @@
 
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -26,11 +27,17 @@ public class ConnectionFilter extends PatternMatcher {
 	 */
 	protected Map<String /* regular expression */, MetricFilter> _metricFilters = new HashMap<>();
 
+	/**
+	 * The compiled metric filters, which are matched in one pass.
+	 */
+	protected PatternIndex<MetricFilter> _metricIndex = new PatternIndex<>(Collections.<MetricFilter>emptySet());
+
 	public ConnectionFilter(String connectionId, Set<MetricFilter> metricFilters) throws PatternSyntaxException {
 		super(connectionId);
 		for(MetricFilter metricFilter : metricFilters) {
 			_metricFilters.put(metricFilter.getRegularExpression(), metricFilter);
 		}
+		_metricIndex = new PatternIndex<>(_metricFilters.values());
 	}
 
 	public boolean matchesConnectionId(String connectionId) {
@@ -38,17 +45,12 @@ public class ConnectionFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesConnectionMetricName(String connectionId, String metricName) {
-		boolean matches = matchesConnectionId(connectionId) && (_metricFilters.size() > 0);
-		if (matches) {
-			for(MetricFilter filter : _metricFilters.values()) {
-				matches = filter.matchesMetricName(metricName);
-				if (matches) {
-					break;
-				}
-			}
+	public MetricFilter findConnectionMetricFilter(String connectionId, String metricName) {
+		MetricFilter result = null;
+		if (matchesConnectionId(connectionId) && (_metricIndex.size() > 0)) {
+			result = _metricIndex.getFirstMatch(metricName);
 		}
-		return matches;
+		return result;
 	}
 
 }
@@ -13,6 +13,7 @@ import java.util.Set;
 import org.apache.log4j.Logger;
 
 import com.ibm.json.java.JSONObject;
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
 
 public class ConnectionParser extends AbstractParser {
 	private static Logger _logger = Logger.getLogger(PortParser.class.getName());
@@ -43,6 +44,15 @@ public class ConnectionParser extends AbstractParser {
 			
 		});
 
+		setValidationRule(EMIT_POLICY, new IValidator() {
+
+			@Override
+			public boolean validate(String key, Object object) {
+				return verifyEmitPolicy(key, object);
+			}
+			
+		});
+
 	}
 
 	@Override
@@ -56,10 +66,11 @@ public class ConnectionParser extends AbstractParser {
 //		logger().error("ConnectionParser.JSON=" + json);
 		Set<String> patterns = buildPatternList(json.get(CONNECTION_ID_PATTERNS));
 		Set<String> metrics = buildPatternList(json.get(METRIC_NAME_PATTERNS));
+		IMetricEvaluator evaluator = buildEmitPolicy(json.get(EMIT_POLICY));
 		Set<MetricFilter> metricFilters = new HashSet<>();
 		for (String pattern : metrics) {
 //			logger().error("create metric filter, pattern=" + pattern);
-			metricFilters.add(new MetricFilter(pattern));
+			metricFilters.add(new MetricFilter(pattern, evaluator));
 		}
 		Set<ConnectionFilter> result = new HashSet<>();
 		for (String pattern : patterns) {
@@ -0,0 +1,166 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal.filters;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches whether a metric of a monitored object meets the filter criteria,
+ * and which metric filter it matches.
+ * The handlers evaluate each new metric name, and handlers of equally named
+ * objects, for example, after a job is submitted again, repeat the same
+ * decisions. With the cache, a repeated decision is a hash lookup.
+ * <p>
+ * Each filter tree has its own cache, so the cache is invalidated when the
+ * filter document is loaded again. If the number of cached decisions
+ * exceeds a limit, for example, because jobs with changing names are
+ * submitted, the cache is cleared.
+ * </p>
+ */
+public final class FilterDecisionCache {
+
+	/**
+	 * The kinds of monitored objects, whose metrics are filtered.
+	 */
+	enum Level {
+		operator,
+		operatorInputPort,
+		operatorOutputPort,
+		pe,
+		peInputPort,
+		peOutputPort,
+		peConnection,
+		resource,
+	};
+
+	/**
+	 * Identifies a metric of a monitored object.
+	 */
+	static final class Key {
+
+		private final Level _level;
+
+		private final String _instanceId;
+
+		private final String _jobName;
+
+		/**
+		 * The operator name, the PE id, or the resource id.
+		 */
+		private final String _objectName;
+
+		/**
+		 * The port index or the connection id, or null.
+		 */
+		private final Object _subObject;
+
+		private final String _metricName;
+
+		private final int _hashCode;
+
+		Key(Level level, String instanceId, String jobName, String objectName, Object subObject, String metricName) {
+			_level = level;
+			_instanceId = instanceId;
+			_jobName = jobName;
+			_objectName = objectName;
+			_subObject = subObject;
+			_metricName = metricName;
+			_hashCode = Objects.hash(level, instanceId, jobName, objectName, subObject, metricName);
+		}
+
+		@Override
+		public int hashCode() {
+			return _hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return (_hashCode == other._hashCode) &&
+					(_level == other._level) &&
+					Objects.equals(_metricName, other._metricName) &&
+					Objects.equals(_objectName, other._objectName) &&
+					Objects.equals(_subObject, other._subObject) &&
+					Objects.equals(_jobName, other._jobName) &&
+					Objects.equals(_instanceId, other._instanceId);
+		}
+	}
+
+	/**
+	 * The maximum number of cached decisions.
+	 */
+	private static final int MAX_SIZE = 100000;
+
+	/**
+	 * The cached decision of a metric that does not match any metric filter.
+	 */
+	static final MetricFilter NO_MATCH = new MetricFilter("(?!)");
+
+	private final Map<Key, MetricFilter> _decisions = new ConcurrentHashMap<>();
+
+	private final AtomicLong _hits = new AtomicLong();
+
+	private final AtomicLong _misses = new AtomicLong();
+
+	/**
+	 * Get a cached decision.
+	 *
+	 * @return
+	 * The matching metric filter, NO_MATCH, or null if the decision is not
+	 * cached.
+	 */
+	MetricFilter get(Key key) {
+		MetricFilter decision = _decisions.get(key);
+		if (decision != null) {
+			_hits.incrementAndGet();
+		}
+		else {
+			_misses.incrementAndGet();
+		}
+		return decision;
+	}
+
+	/**
+	 * @param decision
+	 * The matching metric filter, or null if no metric filter matches.
+	 */
+	void put(Key key, MetricFilter decision) {
+		if (_decisions.size() >= MAX_SIZE) {
+			_decisions.clear();
+		}
+		_decisions.put(key, (decision != null) ? decision : NO_MATCH);
+	}
+
+	/**
+	 * Get the number of decisions that were found in the cache.
+	 */
+	public long getHits() {
+		return _hits.get();
+	}
+
+	/**
+	 * Get the number of decisions that had to be evaluated.
+	 */
+	public long getMisses() {
+		return _misses.get();
+	}
+
+	public int size() {
+		return _decisions.size();
+	}
+
+}
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -19,9 +20,19 @@ import java.util.Set;
 import com.ibm.json.java.JSON;
 import com.ibm.json.java.JSONArtifact;
 import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration.OpType;
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
 
 /**
- * 
+ * The filter tree that is built from the filterDocument. The tree is not
+ * modified after it is built, so the match methods can be called from
+ * concurrent threads, for example, the scan threads and the notification
+ * threads.
+ * <p>
+ * A metric filter can specify an emit policy, which decides when a tuple is
+ * submitted for a matching metric. The get*MetricEvaluator() methods return
+ * the evaluator of the first matching metric filter, or null if the filter
+ * has no emit policy.
+ * </p>
  */
 public class Filters {
 
@@ -30,12 +41,74 @@ public class Filters {
 	 */
 	protected Map<String /* regular expression */, InstanceFilter> _instanceFilters = new HashMap<>();
 
+	/**
+	 * The compiled instance filters, which are matched in one pass.
+	 */
+	protected PatternIndex<InstanceFilter> _instanceIndex = new PatternIndex<>(Collections.<InstanceFilter>emptySet());
+
+	/**
+	 * The metric decisions of this filter tree.
+	 */
+	private final FilterDecisionCache _decisionCache = new FilterDecisionCache();
+
 	public Filters() {
 	}
 
+	public FilterDecisionCache getDecisionCache() {
+		return _decisionCache;
+	}
+
+	/**
+	 * Looks up the metric filter of one instance filter.
+	 */
+	private interface MetricFilterLookup {
+
+		MetricFilter find(InstanceFilter filter);
+
+	}
+
+	/**
+	 * Get the metric filter from the decision cache, or look it up in the
+	 * instance filters that match the instance id, and cache the decision.
+	 * 
+	 * @return
+	 * The first matching metric filter, or null if the metric does not
+	 * match the filters.
+	 */
+	private MetricFilter find(FilterDecisionCache.Key key, String instanceId, MetricFilterLookup lookup) {
+		MetricFilter decision = _decisionCache.get(key);
+		if (decision != null) {
+			return (decision != FilterDecisionCache.NO_MATCH) ? decision : null;
+		}
+		MetricFilter result = null;
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
+			result = lookup.find(filter);
+			if (result != null) {
+				break;
+			}
+		}
+		_decisionCache.put(key, result);
+		return result;
+	}
+
+	/**
+	 * Get the evaluator of a metric filter.
+	 * 
+	 * @return
+	 * The evaluator of the emit policy of the metric filter, the given
+	 * default evaluator if the filter specifies no emit policy, or null if
+	 * the filter is null.
+	 */
+	private static IMetricEvaluator toEvaluator(MetricFilter filter, IMetricEvaluator defaultEvaluator) {
+		if (filter == null) {
+			return null;
+		}
+		return (filter.getEvaluator() != null) ? filter.getEvaluator() : defaultEvaluator;
+	}
+
 	public boolean matchesInstanceId(String instanceId) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesInstanceId(instanceId);
 			if (matches) {
 				break;
@@ -46,7 +119,7 @@ public class Filters {
 
 	public boolean matchesJobName(String instanceId, String jobName) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesJobName(instanceId, jobName);
 			if (matches) {
 				break;
@@ -57,7 +130,7 @@ public class Filters {
 
 	public boolean matchesOperatorName(String instanceId, String jobName, String operatorName) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesOperatorName(instanceId, jobName, operatorName);
 			if (matches) {
 				break;
@@ -67,19 +140,37 @@ public class Filters {
 	}
 
 	public boolean matchesOperatorMetricName(String instanceId, String jobName, String operatorName, String metricName) {
-		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesOperatorMetricName(instanceId, jobName, operatorName, metricName);
-			if (matches) {
-				break;
+		return findOperatorMetricFilter(instanceId, jobName, operatorName, metricName) != null;
+	}
+
+	/**
+	 * Get the evaluator of a metric, which matches the filters. The metric
+	 * filter is looked up once, so the caller decides with the same lookup
+	 * whether the metric is captured, and which emit policy it uses.
+	 * 
+	 * @return
+	 * The evaluator of the emit policy of the matching metric filter, the
+	 * given default evaluator if the filter specifies no emit policy, or null
+	 * if the metric does not match the filters.
+	 */
+	public IMetricEvaluator getOperatorMetricEvaluator(String instanceId, String jobName, String operatorName, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findOperatorMetricFilter(instanceId, jobName, operatorName, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findOperatorMetricFilter(final String instanceId, final String jobName, final String operatorName, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.operator, instanceId, jobName, operatorName, null, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findOperatorMetricFilter(instanceId, jobName, operatorName, metricName);
 			}
-		}
-		return matches;
+
+		});
 	}
 
 	public boolean matchesOperatorInputPortIndex(String instanceId, String jobName, String operatorName, Integer portIndex) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesOperatorInputPortIndex(instanceId, jobName, operatorName, portIndex);
 			if (matches) {
 				break;
@@ -89,19 +180,27 @@ public class Filters {
 	}
 
 	public boolean matchesOperatorInputPortMetricName(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName) {
-		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesOperatorInputPortMetricName(instanceId, jobName, operatorName, portIndex, metricName);
-			if (matches) {
-				break;
+		return findOperatorInputPortMetricFilter(instanceId, jobName, operatorName, portIndex, metricName) != null;
+	}
+
+	public IMetricEvaluator getOperatorInputPortMetricEvaluator(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findOperatorInputPortMetricFilter(instanceId, jobName, operatorName, portIndex, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findOperatorInputPortMetricFilter(final String instanceId, final String jobName, final String operatorName, final Integer portIndex, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.operatorInputPort, instanceId, jobName, operatorName, portIndex, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findOperatorInputPortMetricFilter(instanceId, jobName, operatorName, portIndex, metricName);
 			}
-		}
-		return matches;
+
+		});
 	}
 
 	public boolean matchesOperatorOutputPortIndex(String instanceId, String jobName, String operatorName, Integer portIndex) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesOperatorOutputPortIndex(instanceId, jobName, operatorName, portIndex);
 			if (matches) {
 				break;
@@ -111,19 +210,27 @@ public class Filters {
 	}
 
 	public boolean matchesOperatorOutputPortMetricName(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName) {
-		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesOperatorOutputPortMetricName(instanceId, jobName, operatorName, portIndex, metricName);
-			if (matches) {
-				break;
+		return findOperatorOutputPortMetricFilter(instanceId, jobName, operatorName, portIndex, metricName) != null;
+	}
+
+	public IMetricEvaluator getOperatorOutputPortMetricEvaluator(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findOperatorOutputPortMetricFilter(instanceId, jobName, operatorName, portIndex, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findOperatorOutputPortMetricFilter(final String instanceId, final String jobName, final String operatorName, final Integer portIndex, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.operatorOutputPort, instanceId, jobName, operatorName, portIndex, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findOperatorOutputPortMetricFilter(instanceId, jobName, operatorName, portIndex, metricName);
 			}
-		}
-		return matches;
+
+		});
 	}
 
 	public boolean matchesPeId(String instanceId, String jobName, String peId) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesPeId(instanceId, jobName, peId);
 			if (matches) {
 				break;
@@ -133,19 +240,27 @@ public class Filters {
 	}
 
 	public boolean matchesPeMetricName(String instanceId, String jobName, String peId, String metricName) {
-		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesPeMetricName(instanceId, jobName, peId, metricName);
-			if (matches) {
-				break;
+		return findPeMetricFilter(instanceId, jobName, peId, metricName) != null;
+	}
+
+	public IMetricEvaluator getPeMetricEvaluator(String instanceId, String jobName, String peId, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findPeMetricFilter(instanceId, jobName, peId, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findPeMetricFilter(final String instanceId, final String jobName, final String peId, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.pe, instanceId, jobName, peId, null, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findPeMetricFilter(instanceId, jobName, peId, metricName);
 			}
-		}
-		return matches;
+
+		});
 	}
 
 	public boolean matchesPeInputPortIndex(String instanceId, String jobName, String peId, Integer portIndex) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesPeInputPortIndex(instanceId, jobName, peId, portIndex);
 			if (matches) {
 				break;
@@ -155,19 +270,27 @@ public class Filters {
 	}
 
 	public boolean matchesPeInputPortMetricName(String instanceId, String jobName, String peId, Integer portIndex, String metricName) {
-		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesPeInputPortMetricName(instanceId, jobName, peId, portIndex, metricName);
-			if (matches) {
-				break;
+		return findPeInputPortMetricFilter(instanceId, jobName, peId, portIndex, metricName) != null;
+	}
+
+	public IMetricEvaluator getPeInputPortMetricEvaluator(String instanceId, String jobName, String peId, Integer portIndex, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findPeInputPortMetricFilter(instanceId, jobName, peId, portIndex, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findPeInputPortMetricFilter(final String instanceId, final String jobName, final String peId, final Integer portIndex, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.peInputPort, instanceId, jobName, peId, portIndex, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findPeInputPortMetricFilter(instanceId, jobName, peId, portIndex, metricName);
 			}
-		}
-		return matches;
+
+		});
 	}
 
 	public boolean matchesPeOutputPortIndex(String instanceId, String jobName, String peId, Integer portIndex) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
 			matches = filter.matchesPeOutputPortIndex(instanceId, jobName, peId, portIndex);
 			if (matches) {
 				break;
@@ -177,9 +300,28 @@ public class Filters {
 	}
 
 	public boolean matchesPeOutputPortMetricName(String instanceId, String jobName, String peId, Integer portIndex, String metricName) {
+		return findPeOutputPortMetricFilter(instanceId, jobName, peId, portIndex, metricName) != null;
+	}
+
+	public IMetricEvaluator getPeOutputPortMetricEvaluator(String instanceId, String jobName, String peId, Integer portIndex, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findPeOutputPortMetricFilter(instanceId, jobName, peId, portIndex, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findPeOutputPortMetricFilter(final String instanceId, final String jobName, final String peId, final Integer portIndex, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.peOutputPort, instanceId, jobName, peId, portIndex, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findPeOutputPortMetricFilter(instanceId, jobName, peId, portIndex, metricName);
+			}
+
+		});
+	}
+	
+	public boolean matchesPeConnectionId(String instanceId, String jobName, String peId, String connectionId) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesPeOutputPortMetricName(instanceId, jobName, peId, portIndex, metricName);
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
+			matches = filter.matchesPeConnectionId(instanceId, jobName, peId, connectionId);
 			if (matches) {
 				break;
 			}
@@ -187,21 +329,40 @@ public class Filters {
 		return matches;
 	}
 	
-	public boolean matchesPeConnectionId(String instanceId, String jobName, String peId, String connectionId) {
+	public boolean matchesPeConnectionMetricName(String instanceId, String jobName, String peId, String connectionId, String metricName) {
+		return findPeConnectionMetricFilter(instanceId, jobName, peId, connectionId, metricName) != null;
+	}
+
+	public IMetricEvaluator getPeConnectionMetricEvaluator(String instanceId, String jobName, String peId, String connectionId, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findPeConnectionMetricFilter(instanceId, jobName, peId, connectionId, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findPeConnectionMetricFilter(final String instanceId, final String jobName, final String peId, final String connectionId, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.peConnection, instanceId, jobName, peId, connectionId, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findPeConnectionMetricFilter(instanceId, jobName, peId, connectionId, metricName);
+			}
+
+		});
+	}
+
+	public boolean hasResourceFilters(String instanceId) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesPeConnectionId(instanceId, jobName, peId, connectionId);
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
+			matches = filter.hasResourceFilters(instanceId);
 			if (matches) {
 				break;
 			}
 		}
 		return matches;
 	}
-	
-	public boolean matchesPeConnectionMetricName(String instanceId, String jobName, String peId, String connectionId, String metricName) {
+
+	public boolean matchesResourceId(String instanceId, String resourceId) {
 		boolean matches = false;
-		for(InstanceFilter filter : _instanceFilters.values()) {
-			matches = filter.matchesPeConnectionMetricName(instanceId, jobName, peId, connectionId, metricName);
+		for(InstanceFilter filter : _instanceIndex.getMatches(instanceId)) {
+			matches = filter.matchesResourceId(instanceId, resourceId);
 			if (matches) {
 				break;
 			}
@@ -209,6 +370,25 @@ public class Filters {
 		return matches;
 	}
 
+	public boolean matchesResourceMetricName(String instanceId, String resourceId, String metricName) {
+		return findResourceMetricFilter(instanceId, resourceId, metricName) != null;
+	}
+
+	public IMetricEvaluator getResourceMetricEvaluator(String instanceId, String resourceId, String metricName, IMetricEvaluator defaultEvaluator) {
+		return toEvaluator(findResourceMetricFilter(instanceId, resourceId, metricName), defaultEvaluator);
+	}
+
+	private MetricFilter findResourceMetricFilter(final String instanceId, final String resourceId, final String metricName) {
+		return find(new FilterDecisionCache.Key(FilterDecisionCache.Level.resource, instanceId, null, resourceId, null, metricName), instanceId, new MetricFilterLookup() {
+
+			@Override
+			public MetricFilter find(InstanceFilter filter) {
+				return filter.findResourceMetricFilter(instanceId, resourceId, metricName);
+			}
+
+		});
+	}
+
 	/**
 	 * Read the filterDocument file, parse its JSON-formatted content, and
 	 * build a filter tree.
@@ -269,6 +449,7 @@ public class Filters {
 			for (InstanceFilter instanceFilter : instanceFilters) {
 				filters._instanceFilters.put(instanceFilter.getRegularExpression(), instanceFilter);
 			}
+			filters._instanceIndex = new PatternIndex<>(filters._instanceFilters.values());
 		}
 		return filters;
 	}
@@ -8,6 +8,7 @@
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -27,11 +28,35 @@ final class InstanceFilter extends PatternMatcher {
 	 */
 	protected Map<String /* regular expression */, JobFilter> _jobFilters = new HashMap<>();
 
+	/**
+	 * The compiled job filters, which are matched in one pass.
+	 */
+	protected PatternIndex<JobFilter> _jobIndex = new PatternIndex<>(Collections.<JobFilter>emptySet());
+
+	/**
+	 * An instance has many resources.
+	 */
+	protected Map<String /* regular expression */, ResourceFilter> _resourceFilters = new HashMap<>();
+
+	/**
+	 * The compiled resource filters, which are matched in one pass.
+	 */
+	protected PatternIndex<ResourceFilter> _resourceIndex = new PatternIndex<>(Collections.<ResourceFilter>emptySet());
+
 	public InstanceFilter(String regularExpression, Set<JobFilter> filters) throws PatternSyntaxException {
+		this(regularExpression, filters, Collections.<ResourceFilter>emptySet());
+	}
+
+	public InstanceFilter(String regularExpression, Set<JobFilter> filters, Set<ResourceFilter> resourceFilters) throws PatternSyntaxException {
 		super(regularExpression);
 		for(JobFilter jobFilter : filters) {
 			_jobFilters.put(jobFilter.getRegularExpression(), jobFilter);
 		}
+		_jobIndex = new PatternIndex<>(_jobFilters.values());
+		for(ResourceFilter resourceFilter : resourceFilters) {
+			_resourceFilters.put(resourceFilter.getRegularExpression(), resourceFilter);
+		}
+		_resourceIndex = new PatternIndex<>(_resourceFilters.values());
 	}
 
 	public boolean matchesInstanceId(String instanceId) {
@@ -40,9 +65,10 @@ final class InstanceFilter extends PatternMatcher {
 	}
 
 	public boolean matchesJobName(String instanceId, String jobName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesJobName(jobName);
 				if (matches) {
 					break;
@@ -53,9 +79,10 @@ final class InstanceFilter extends PatternMatcher {
 	}
 
 	public boolean matchesOperatorName(String instanceId, String jobName, String operatorName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesOperatorName(jobName, operatorName);
 				if (matches) {
 					break;
@@ -65,23 +92,24 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorMetricName(String instanceId, String jobName, String operatorName, String metricName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
-		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
-				matches = filter.matchesOperatorMetricName(jobName, operatorName, metricName);
-				if (matches) {
+	public MetricFilter findOperatorMetricFilter(String instanceId, String jobName, String operatorName, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_jobIndex.size() > 0)) {
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
+				result = filter.findOperatorMetricFilter(jobName, operatorName, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesOperatorInputPortIndex(String instanceId, String jobName, String operatorName, Integer portIndex) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesOperatorInputPortIndex(jobName, operatorName, portIndex);
 				if (matches) {
 					break;
@@ -91,23 +119,24 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorInputPortMetricName(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
-		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
-				matches = filter.matchesOperatorInputPortMetricName(jobName, operatorName, portIndex, metricName);
-				if (matches) {
+	public MetricFilter findOperatorInputPortMetricFilter(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_jobIndex.size() > 0)) {
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
+				result = filter.findOperatorInputPortMetricFilter(jobName, operatorName, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesOperatorOutputPortIndex(String instanceId, String jobName, String operatorName, Integer portIndex) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesOperatorOutputPortIndex(jobName, operatorName, portIndex);
 				if (matches) {
 					break;
@@ -117,23 +146,24 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorOutputPortMetricName(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
-		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
-				matches = filter.matchesOperatorOutputPortMetricName(jobName, operatorName, portIndex, metricName);
-				if (matches) {
+	public MetricFilter findOperatorOutputPortMetricFilter(String instanceId, String jobName, String operatorName, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_jobIndex.size() > 0)) {
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
+				result = filter.findOperatorOutputPortMetricFilter(jobName, operatorName, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesPeId(String instanceId, String jobName, String peId) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesPeId(jobName, peId);
 				if (matches) {
 					break;
@@ -143,23 +173,24 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesPeMetricName(String instanceId, String jobName, String peId, String metricName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
-		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
-				matches = filter.matchesPeMetricName(jobName, peId, metricName);
-				if (matches) {
+	public MetricFilter findPeMetricFilter(String instanceId, String jobName, String peId, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_jobIndex.size() > 0)) {
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
+				result = filter.findPeMetricFilter(jobName, peId, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesPeInputPortIndex(String instanceId, String jobName, String peId, Integer portIndex) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesPeInputPortIndex(jobName, peId, portIndex);
 				if (matches) {
 					break;
@@ -169,23 +200,24 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesPeInputPortMetricName(String instanceId, String jobName, String peId, Integer portIndex, String metricName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
-		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
-				matches = filter.matchesPeInputPortMetricName(jobName, peId, portIndex, metricName);
-				if (matches) {
+	public MetricFilter findPeInputPortMetricFilter(String instanceId, String jobName, String peId, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_jobIndex.size() > 0)) {
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
+				result = filter.findPeInputPortMetricFilter(jobName, peId, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesPeOutputPortIndex(String instanceId, String jobName, String peId, Integer portIndex) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesPeOutputPortIndex(jobName, peId, portIndex);
 				if (matches) {
 					break;
@@ -195,23 +227,24 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesPeOutputPortMetricName(String instanceId, String jobName, String peId, Integer portIndex, String metricName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
-		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
-				matches = filter.matchesPeOutputPortMetricName(jobName, peId, portIndex, metricName);
-				if (matches) {
+	public MetricFilter findPeOutputPortMetricFilter(String instanceId, String jobName, String peId, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_jobIndex.size() > 0)) {
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
+				result = filter.findPeOutputPortMetricFilter(jobName, peId, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 	
 	public boolean matchesPeConnectionId(String instanceId, String jobName, String peId, String connectionId) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+		boolean matches = matchesInstanceId(instanceId) && (_jobIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
+			matches = false;
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
 				matches = filter.matchesPeConnectionId(jobName, peId, connectionId);
 				if (matches) {
 					break;
@@ -221,11 +254,29 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 	
-	public boolean matchesPeConnectionMetricName(String instanceId, String jobName, String peId, String peConnection, String metricName) {
-		boolean matches = matchesInstanceId(instanceId) && (_jobFilters.size() > 0);
+	public MetricFilter findPeConnectionMetricFilter(String instanceId, String jobName, String peId, String peConnection, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_jobIndex.size() > 0)) {
+			for(JobFilter filter : _jobIndex.getMatches(jobName)) {
+				result = filter.findPeConnectionMetricFilter(jobName, peId, peConnection, metricName);
+				if (result != null) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	public boolean hasResourceFilters(String instanceId) {
+		return matchesInstanceId(instanceId) && (_resourceIndex.size() > 0);
+	}
+
+	public boolean matchesResourceId(String instanceId, String resourceId) {
+		boolean matches = matchesInstanceId(instanceId) && (_resourceIndex.size() > 0);
 		if (matches) {
-			for(JobFilter filter : _jobFilters.values()) {
-				matches = filter.matchesPeConnectionMetricName(jobName, peId, peConnection, metricName);
+			matches = false;
+			for(ResourceFilter filter : _resourceIndex.getMatches(resourceId)) {
+				matches = filter.matchesResourceId(resourceId);
 				if (matches) {
 					break;
 				}
@@ -234,4 +285,17 @@ final class InstanceFilter extends PatternMatcher {
 		return matches;
 	}
 
+	public MetricFilter findResourceMetricFilter(String instanceId, String resourceId, String metricName) {
+		MetricFilter result = null;
+		if (matchesInstanceId(instanceId) && (_resourceIndex.size() > 0)) {
+			for(ResourceFilter filter : _resourceIndex.getMatches(resourceId)) {
+				result = filter.findResourceMetricFilter(resourceId, metricName);
+				if (result != null) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
 }
@@ -7,6 +7,7 @@
 
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -24,7 +25,11 @@ public class InstanceParser extends AbstractParser {
 	
 	private static final String JOBS = "jobs";
 
+	private static final String RESOURCES = "resources";
+
 	private JobParser _jobParser;
+
+	private ResourceParser _resourceParser;
 	
 	protected InstanceParser(OpType aType) {
 		_jobParser = new JobParser(aType);
@@ -57,6 +62,27 @@ public class InstanceParser extends AbstractParser {
 			}
 			
 		});
+
+		if (aType == OpType.METRICS_SOURCE) {
+			_resourceParser = new ResourceParser();
+
+			setValidationRule(RESOURCES, new IValidator() {
+
+				@Override
+				public boolean validate(String key, Object object) {
+					boolean result = true;
+					if (object instanceof JSONArtifact) {
+						result = _resourceParser.validate((JSONArtifact)object);
+					}
+					else {
+						result = false;
+						logger().error("filterDocument: The parsed object must be a JSONArtifact. Details: key=" + key + ", object=" + object);
+					}
+					return result;
+				}
+
+			});
+		}
 	}
 
 	@Override
@@ -70,10 +96,11 @@ public class InstanceParser extends AbstractParser {
 //		logger().error("Instance.JSON=" + json);
 		Set<String> patterns = buildPatternList(json.get(INSTANCE_ID_PATTERNS));
 		Set<JobFilter> filters = _jobParser.buildFilters((JSONArtifact)json.get(JOBS));
+		Set<ResourceFilter> resourceFilters = (_resourceParser != null) ? _resourceParser.<ResourceFilter>buildFilters((JSONArtifact)json.get(RESOURCES)) : Collections.<ResourceFilter>emptySet();
 		Set<InstanceFilter> result = new HashSet<>();
 		for (String pattern : patterns) {
 //			logger().error("create instance filter, pattern=" + pattern);
-			result.add(new InstanceFilter(pattern, filters));
+			result.add(new InstanceFilter(pattern, filters, resourceFilters));
 		}
 		return result;
 	}
@@ -7,6 +7,7 @@
 
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -29,6 +30,11 @@ final class JobFilter extends PatternMatcher {
 	 */
 	protected Map<String /* regular expression */, OperatorFilter> _operatorFilters = new HashMap<>();
 
+	/**
+	 * The compiled operator filters, which are matched in one pass.
+	 */
+	protected PatternIndex<OperatorFilter> _operatorIndex = new PatternIndex<>(Collections.<OperatorFilter>emptySet());
+
 	/**
 	 * A job has many PEs.
 	 */
@@ -47,6 +53,7 @@ final class JobFilter extends PatternMatcher {
 		for(PeFilter peFilter : peFilters) {
 			_peFilters.add(peFilter);
 		}
+		_operatorIndex = new PatternIndex<>(_operatorFilters.values());
 	}
 
 	public boolean matchesJobName(String jobName) {
@@ -55,9 +62,10 @@ final class JobFilter extends PatternMatcher {
 	}
 
 	public boolean matchesOperatorName(String jobName, String operatorName) {
-		boolean matches = matchesJobName(jobName) && (_operatorFilters.size() > 0);
+		boolean matches = matchesJobName(jobName) && (_operatorIndex.size() > 0);
 		if (matches) {
-			for(OperatorFilter filter : _operatorFilters.values()) {
+			matches = false;
+			for(OperatorFilter filter : _operatorIndex.getMatches(operatorName)) {
 				matches = filter.matchesOperatorName(operatorName);
 				if (matches) {
 					break;
@@ -67,23 +75,24 @@ final class JobFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorMetricName(String jobName, String operatorName, String metricName) {
-		boolean matches = matchesJobName(jobName) && (_operatorFilters.size() > 0);
-		if (matches) {
-			for(OperatorFilter filter : _operatorFilters.values()) {
-				matches = filter.matchesOperatorMetricName(operatorName, metricName);
-				if (matches) {
+	public MetricFilter findOperatorMetricFilter(String jobName, String operatorName, String metricName) {
+		MetricFilter result = null;
+		if (matchesJobName(jobName) && (_operatorIndex.size() > 0)) {
+			for(OperatorFilter filter : _operatorIndex.getMatches(operatorName)) {
+				result = filter.findOperatorMetricFilter(operatorName, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesOperatorInputPortIndex(String jobName, String operatorName, Integer portIndex) {
-		boolean matches = matchesJobName(jobName) && (_operatorFilters.size() > 0);
+		boolean matches = matchesJobName(jobName) && (_operatorIndex.size() > 0);
 		if (matches) {
-			for(OperatorFilter filter : _operatorFilters.values()) {
+			matches = false;
+			for(OperatorFilter filter : _operatorIndex.getMatches(operatorName)) {
 				matches = filter.matchesOperatorInputPortIndex(operatorName, portIndex);
 				if (matches) {
 					break;
@@ -93,23 +102,24 @@ final class JobFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorInputPortMetricName(String jobName, String operatorName, Integer portIndex, String metricName) {
-		boolean matches = matchesJobName(jobName) && (_operatorFilters.size() > 0);
-		if (matches) {
-			for(OperatorFilter filter : _operatorFilters.values()) {
-				matches = filter.matchesOperatorInputPortMetricName(operatorName, portIndex, metricName);
-				if (matches) {
+	public MetricFilter findOperatorInputPortMetricFilter(String jobName, String operatorName, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesJobName(jobName) && (_operatorIndex.size() > 0)) {
+			for(OperatorFilter filter : _operatorIndex.getMatches(operatorName)) {
+				result = filter.findOperatorInputPortMetricFilter(operatorName, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesOperatorOutputPortIndex(String jobName, String operatorName, Integer portIndex) {
-		boolean matches = matchesJobName(jobName) && (_operatorFilters.size() > 0);
+		boolean matches = matchesJobName(jobName) && (_operatorIndex.size() > 0);
 		if (matches) {
-			for(OperatorFilter filter : _operatorFilters.values()) {
+			matches = false;
+			for(OperatorFilter filter : _operatorIndex.getMatches(operatorName)) {
 				matches = filter.matchesOperatorOutputPortIndex(operatorName, portIndex);
 				if (matches) {
 					break;
@@ -119,17 +129,17 @@ final class JobFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorOutputPortMetricName(String jobName, String operatorName, Integer portIndex, String metricName) {
-		boolean matches = matchesJobName(jobName) && (_operatorFilters.size() > 0);
-		if (matches) {
-			for(OperatorFilter filter : _operatorFilters.values()) {
-				matches = filter.matchesOperatorOutputPortMetricName(operatorName, portIndex, metricName);
-				if (matches) {
+	public MetricFilter findOperatorOutputPortMetricFilter(String jobName, String operatorName, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesJobName(jobName) && (_operatorIndex.size() > 0)) {
+			for(OperatorFilter filter : _operatorIndex.getMatches(operatorName)) {
+				result = filter.findOperatorOutputPortMetricFilter(operatorName, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesPeId(String jobName, String peId) {
@@ -143,17 +153,17 @@ final class JobFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesPeMetricName(String jobName, String peId, String metricName) {
-		boolean matches = matchesPeId(jobName, peId);
-		if (matches) {
+	public MetricFilter findPeMetricFilter(String jobName, String peId, String metricName) {
+		MetricFilter result = null;
+		if (matchesPeId(jobName, peId)) {
 			for(PeFilter filter : _peFilters) {
-				matches = filter.matchesPeMetricName(peId, metricName);
-				if (matches) {
+				result = filter.findPeMetricFilter(peId, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesPeInputPortIndex(String jobName, String peId, Integer portIndex) {
@@ -169,17 +179,17 @@ final class JobFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesPeInputPortMetricName(String jobName, String peId, Integer portIndex, String metricName) {
-		boolean matches = matchesPeId(jobName, peId);
-		if (matches) {
+	public MetricFilter findPeInputPortMetricFilter(String jobName, String peId, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesPeId(jobName, peId)) {
 			for(PeFilter filter : _peFilters) {
-				matches = filter.matchesPeInputPortMetricName(peId, portIndex, metricName);
-				if (matches) {
+				result = filter.findPeInputPortMetricFilter(peId, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesPeOutputPortIndex(String jobName, String peId, Integer portIndex) {
@@ -195,17 +205,17 @@ final class JobFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesPeOutputPortMetricName(String jobName, String peId, Integer portIndex, String metricName) {
-		boolean matches = matchesPeId(jobName, peId);
-		if (matches) {
+	public MetricFilter findPeOutputPortMetricFilter(String jobName, String peId, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesPeId(jobName, peId)) {
 			for(PeFilter filter : _peFilters) {
-				matches = filter.matchesPeOutputPortMetricName(peId, portIndex, metricName);
-				if (matches) {
+				result = filter.findPeOutputPortMetricFilter(peId, portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 	
 	public boolean matchesPeConnectionId(String jobName, String peId, String connectionId) {
@@ -221,17 +231,17 @@ final class JobFilter extends PatternMatcher {
 		return matches;
 	}
 	
-	public boolean matchesPeConnectionMetricName(String jobName, String peId, String connectionId, String metricName) {
-		boolean matches = matchesPeId(jobName, peId);
-		if (matches) {
+	public MetricFilter findPeConnectionMetricFilter(String jobName, String peId, String connectionId, String metricName) {
+		MetricFilter result = null;
+		if (matchesPeId(jobName, peId)) {
 			for(PeFilter filter : _peFilters) {
-				matches = filter.matchesPeConnectionMetricName(peId, connectionId, metricName);
-				if (matches) {
+				result = filter.findPeConnectionMetricFilter(peId, connectionId, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 }
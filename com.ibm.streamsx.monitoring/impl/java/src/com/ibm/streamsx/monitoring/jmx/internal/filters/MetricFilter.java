@@ -11,6 +11,8 @@ import java.util.regex.PatternSyntaxException;
 
 import org.apache.log4j.Logger;
 
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
+
 final class MetricFilter extends PatternMatcher {
 
 	/**
@@ -18,8 +20,23 @@ final class MetricFilter extends PatternMatcher {
 	 */
 	private static Logger _trace = Logger.getLogger(MetricFilter.class.getName());
 
+	/**
+	 * The evaluator that implements the emit policy of the matching metrics,
+	 * or null if the operator's default evaluator is used.
+	 */
+	private final IMetricEvaluator _evaluator;
+
 	public MetricFilter(String regularExpression) throws PatternSyntaxException {
+		this(regularExpression, null);
+	}
+
+	public MetricFilter(String regularExpression, IMetricEvaluator evaluator) throws PatternSyntaxException {
 		super(regularExpression);
+		_evaluator = evaluator;
+	}
+
+	public IMetricEvaluator getEvaluator() {
+		return _evaluator;
 	}
 
 	public boolean matchesMetricName(String metricName) {
@@ -53,8 +53,8 @@ class NumberMatcher {
 	 */
 	protected boolean matches(Integer portIndex) {
 		boolean matches = (portIndex != null) && (_number.equals(EVERY_NUMBER) || portIndex.equals(_number));
-		if (_trace.isInfoEnabled()) {
-			_trace.info(String.format("matches(%s): %d -> %s", portIndex, _number, Boolean.toString(matches)));
+		if (_trace.isDebugEnabled()) {
+			_trace.debug(String.format("matches(%s): %d -> %s", portIndex, _number, Boolean.toString(matches)));
 		}
 		return matches;
 	}
@@ -7,6 +7,7 @@
 
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -26,6 +27,11 @@ final class OperatorFilter extends PatternMatcher {
 	 */
 	protected Map<String /* regular expression */, MetricFilter> _metricFilters = new HashMap<>();
 
+	/**
+	 * The compiled metric filters, which are matched in one pass.
+	 */
+	protected PatternIndex<MetricFilter> _metricIndex = new PatternIndex<>(Collections.<MetricFilter>emptySet());
+
 	/**
 	 * An operator has many input ports.
 	 */
@@ -47,6 +53,7 @@ final class OperatorFilter extends PatternMatcher {
 		for(PortFilter portFilter : outputPortFilters) {
 			_outputPortFilters.put(portFilter.getNumber(), portFilter);
 		}
+		_metricIndex = new PatternIndex<>(_metricFilters.values());
 	}
 	
 	public OperatorFilter(String regularExpression) throws PatternSyntaxException {
@@ -58,17 +65,12 @@ final class OperatorFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorMetricName(String operatorName, String metricName) {
-		boolean matches = matchesOperatorName(operatorName) && (_metricFilters.size() > 0);
-		if (matches) {
-			for(MetricFilter filter : _metricFilters.values()) {
-				matches = filter.matchesMetricName(metricName);
-				if (matches) {
-					break;
-				}
-			}
+	public MetricFilter findOperatorMetricFilter(String operatorName, String metricName) {
+		MetricFilter result = null;
+		if (matchesOperatorName(operatorName) && (_metricIndex.size() > 0)) {
+			result = _metricIndex.getFirstMatch(metricName);
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesOperatorInputPortIndex(String operatorName, Integer portIndex) {
@@ -84,17 +86,17 @@ final class OperatorFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorInputPortMetricName(String operatorName, Integer portIndex, String metricName) {
-		boolean matches = matchesOperatorName(operatorName) && (_inputPortFilters.size() > 0);
-		if (matches) {
+	public MetricFilter findOperatorInputPortMetricFilter(String operatorName, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesOperatorName(operatorName) && (_inputPortFilters.size() > 0)) {
 			for(PortFilter filter : _inputPortFilters.values()) {
-				matches = filter.matchesPortMetricName(portIndex, metricName);
-				if (matches) {
+				result = filter.findPortMetricFilter(portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesOperatorOutputPortIndex(String operatorName, Integer portIndex) {
@@ -110,17 +112,17 @@ final class OperatorFilter extends PatternMatcher {
 		return matches;
 	}
 
-	public boolean matchesOperatorOutputPortMetricName(String operatorName, Integer portIndex, String metricName) {
-		boolean matches = matchesOperatorName(operatorName) && (_outputPortFilters.size() > 0);
-		if (matches) {
+	public MetricFilter findOperatorOutputPortMetricFilter(String operatorName, Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesOperatorName(operatorName) && (_outputPortFilters.size() > 0)) {
 			for(PortFilter filter : _outputPortFilters.values()) {
-				matches = filter.matchesPortMetricName(portIndex, metricName);
-				if (matches) {
+				result = filter.findPortMetricFilter(portIndex, metricName);
+				if (result != null) {
 					break;
 				}
 			}
 		}
-		return matches;
+		return result;
 	}
 
 }
@@ -14,6 +14,7 @@ import org.apache.log4j.Logger;
 
 import com.ibm.json.java.JSONArtifact;
 import com.ibm.json.java.JSONObject;
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
 import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration.OpType;
 import com.ibm.streamsx.monitoring.jmx.internal.filters.OperatorFilter;
 
@@ -58,6 +59,15 @@ public class OperatorParser extends AbstractParser {
 				}
 				
 			});
+
+			setValidationRule(EMIT_POLICY, new IValidator() {
+	
+				@Override
+				public boolean validate(String key, Object object) {
+					return verifyEmitPolicy(key, object);
+				}
+				
+			});
 	
 			setValidationRule(INPUT_PORTS, new IValidator() {
 	
@@ -109,10 +119,11 @@ public class OperatorParser extends AbstractParser {
 			Set<String> metrics = buildPatternList(json.get(METRIC_NAME_PATTERNS));
 			Set<PortFilter> inputPortFilters = _portParser.buildFilters((JSONArtifact)json.get(INPUT_PORTS));
 			Set<PortFilter> outputPortFilters = _portParser.buildFilters((JSONArtifact)json.get(OUTPUT_PORTS));
+			IMetricEvaluator evaluator = buildEmitPolicy(json.get(EMIT_POLICY));
 			Set<MetricFilter> metricFilters = new HashSet<>();
 			for (String pattern : metrics) {
 	//			logger().error("create metric filter, pattern=" + pattern);
-				metricFilters.add(new MetricFilter(pattern));
+				metricFilters.add(new MetricFilter(pattern, evaluator));
 			}
 			Set<OperatorFilter> result = new HashSet<>();
 			for (String pattern : patterns) {
@@ -0,0 +1,205 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal.filters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The compiled filters of one level of the filter tree, for example, all
+ * job filters of an instance filter. Instead of evaluating the regular
+ * expression of each filter, a name is matched in one pass:
+ * <ul>
+ * <li>Literal expressions, like <code>myJob</code>, are looked up in a hash
+ * map.</li>
+ * <li>Prefix expressions, like <code>myPrefix.*</code>, are looked up in a
+ * trie while walking the characters of the name.</li>
+ * <li>The remaining expressions are combined into one alternation, which
+ * decides with one evaluation whether any of them matches. Only if it
+ * matches, the individual expressions are evaluated to find the filters
+ * whose sub-filters must be evaluated.</li>
+ * </ul>
+ * <p>
+ * The index is immutable after construction, so concurrent threads can
+ * match names without locking.
+ * </p>
+ */
+final class PatternIndex<T extends PatternMatcher> {
+
+	/**
+	 * A node of the prefix trie. The filters of a node are those whose
+	 * prefix ends at this node.
+	 */
+	private static final class Node<T> {
+
+		Map<Character, Node<T>> children = null;
+
+		List<T> filters = null;
+	}
+
+	private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+	private final Map<String /* literal */, List<T>> _literals = new HashMap<>();
+
+	private final Node<T> _prefixes = new Node<>();
+
+	private final List<T> _expressions = new ArrayList<>();
+
+	/**
+	 * The alternation of all remaining expressions, or null if there are
+	 * none, or if they cannot be combined.
+	 */
+	private final CompiledPattern _combinedExpression;
+
+	private final int _size;
+
+	public PatternIndex(Collection<T> filters) {
+		_size = filters.size();
+		for (T filter : filters) {
+			if (filter.getLiteral() != null) {
+				List<T> list = _literals.get(filter.getLiteral());
+				if (list == null) {
+					list = new ArrayList<>(1);
+					_literals.put(filter.getLiteral(), list);
+				}
+				list.add(filter);
+			}
+			else if (filter.getPrefix() != null) {
+				Node<T> node = _prefixes;
+				for (int i = 0; i < filter.getPrefix().length(); i++) {
+					if (node.children == null) {
+						node.children = new HashMap<>();
+					}
+					Character c = Character.valueOf(filter.getPrefix().charAt(i));
+					Node<T> child = node.children.get(c);
+					if (child == null) {
+						child = new Node<>();
+						node.children.put(c, child);
+					}
+					node = child;
+				}
+				if (node.filters == null) {
+					node.filters = new ArrayList<>(1);
+				}
+				node.filters.add(filter);
+			}
+			else {
+				_expressions.add(filter);
+			}
+		}
+		_combinedExpression = combine(_expressions);
+	}
+
+	/**
+	 * Combine the expressions into one alternation. Expressions with back
+	 * references are not combined because the group numbers change, and
+	 * expressions that declare the same named group cannot be combined
+	 * because the alternation does not compile.
+	 */
+	private static <T extends PatternMatcher> CompiledPattern combine(List<T> expressions) {
+		if (expressions.size() < 2) {
+			return null;
+		}
+		StringBuilder builder = new StringBuilder();
+		for (T filter : expressions) {
+			String regularExpression = filter.getRegularExpression();
+			if (BACK_REFERENCE.matcher(regularExpression).find()) {
+				return null;
+			}
+			if (builder.length() > 0) {
+				builder.append('|');
+			}
+			builder.append("(?:").append(regularExpression).append(')');
+		}
+		try {
+			return new CompiledPattern(builder.toString());
+		}
+		catch (PatternSyntaxException e) {
+			return null;
+		}
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Get the first filter that matches the given name. Literal expressions
+	 * are preferred to prefix expressions, and prefix expressions to the
+	 * remaining expressions.
+	 *
+	 * @return
+	 * The filter, or null if no filter matches.
+	 */
+	public T getFirstMatch(String value) {
+		if (value == null) {
+			return null;
+		}
+		List<T> literals = _literals.get(value);
+		if (literals != null) {
+			return literals.get(0);
+		}
+		int lastLineTerminator = PatternMatcher.lastLineTerminator(value);
+		Node<T> node = _prefixes;
+		for (int i = 0; node != null; i++) {
+			if ((node.filters != null) && (lastLineTerminator < i)) {
+				return node.filters.get(0);
+			}
+			if ((i == value.length()) || (node.children == null)) {
+				break;
+			}
+			node = node.children.get(Character.valueOf(value.charAt(i)));
+		}
+		if ((_combinedExpression != null) && !_combinedExpression.matches(value)) {
+			return null;
+		}
+		for (T filter : _expressions) {
+			if (filter.matches(value)) {
+				return filter;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the filters that match the given name.
+	 */
+	public List<T> getMatches(String value) {
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		List<T> result = _literals.get(value);
+		result = (result != null) ? new ArrayList<>(result) : new ArrayList<T>();
+		int lastLineTerminator = PatternMatcher.lastLineTerminator(value);
+		Node<T> node = _prefixes;
+		for (int i = 0; node != null; i++) {
+			if ((node.filters != null) && (lastLineTerminator < i)) {
+				result.addAll(node.filters);
+			}
+			if ((i == value.length()) || (node.children == null)) {
+				break;
+			}
+			node = node.children.get(Character.valueOf(value.charAt(i)));
+		}
+		if ((_expressions.size() > 0) && ((_combinedExpression == null) || _combinedExpression.matches(value))) {
+			for (T filter : _expressions) {
+				if (filter.matches(value)) {
+					result.add(filter);
+				}
+			}
+		}
+		return result;
+	}
+
+}
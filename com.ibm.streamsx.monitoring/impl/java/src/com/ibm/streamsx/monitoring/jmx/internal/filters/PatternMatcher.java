@@ -7,14 +7,14 @@
 
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.log4j.Logger;
 
 /**
- * The 
+ * The base class of the filters that match names with a regular
+ * expression. A PatternMatcher is immutable, so the filter tree can be
+ * evaluated by concurrent threads without locking.
  */
 class PatternMatcher {
 
@@ -26,17 +26,24 @@ class PatternMatcher {
 	/**
 	 * 
 	 */
-	private String _regularExpression = null;
+	private final String _regularExpression;
 	
 	/**
 	 * 
 	 */
-	private Pattern _pattern = null;
-	
+	private final CompiledPattern _pattern;
+
 	/**
-	 * 
+	 * The name that the regular expression matches if it contains no
+	 * meta characters, else null.
 	 */
-	private Matcher _matcher = null;
+	private final String _literal;
+
+	/**
+	 * The prefix if the regular expression is a literal followed by
+	 * <code>.*</code>, else null.
+	 */
+	private final String _prefix;
 	
 	/**
 	 * Construct a filter.
@@ -49,8 +56,60 @@ class PatternMatcher {
 	 */
 	protected PatternMatcher(String regularExpression) throws PatternSyntaxException {
 		_regularExpression = regularExpression;
-		_pattern = Pattern.compile(regularExpression);
-		_matcher = _pattern.matcher("");
+		_pattern = new CompiledPattern(regularExpression);
+		_literal = toLiteral(regularExpression, regularExpression.length());
+		_prefix = ((_literal == null) && regularExpression.endsWith(".*")) ? toLiteral(regularExpression, regularExpression.length() - 2) : null;
+	}
+
+	/**
+	 * Convert the first characters of a regular expression into the name
+	 * that they match.
+	 * 
+	 * @return
+	 * The name, or null if the characters contain meta characters or
+	 * escape sequences other than an escaped punctuation character.
+	 */
+	private static String toLiteral(String regularExpression, int end) {
+		StringBuilder literal = new StringBuilder(end);
+		for (int i = 0; i < end; i++) {
+			char c = regularExpression.charAt(i);
+			if (c == '\\') {
+				i++;
+				if ((i == end) || Character.isLetterOrDigit(regularExpression.charAt(i))) {
+					return null;
+				}
+				literal.append(regularExpression.charAt(i));
+			}
+			else if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+				return null;
+			}
+			else {
+				literal.append(c);
+			}
+		}
+		return literal.toString();
+	}
+
+	/**
+	 * Get the index of the last line terminator in a name, or -1. A
+	 * <code>.*</code> does not match line terminators.
+	 */
+	static int lastLineTerminator(String value) {
+		for (int i = value.length() - 1; i >= 0; i--) {
+			char c = value.charAt(i);
+			if ((c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028') || (c == '\u2029')) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	protected String getLiteral() {
+		return _literal;
+	}
+
+	protected String getPrefix() {
+		return _prefix;
 	}
 
 	/**
@@ -63,12 +122,25 @@ class PatternMatcher {
 	}
 
 	/**
-	 * 
+	 * Literal and prefix expressions are matched without the regular
+	 * expression.
 	 */
 	protected boolean matches(String value) {
-		boolean matches = (value != null) && _matcher.reset(value).matches();
-		if (_trace.isInfoEnabled()) {
-			_trace.info(String.format("matches(%s): %s -> %s", value, _regularExpression, Boolean.toString(matches)));
+		boolean matches;
+		if (value == null) {
+			matches = false;
+		}
+		else if (_literal != null) {
+			matches = _literal.equals(value);
+		}
+		else if (_prefix != null) {
+			matches = value.startsWith(_prefix) && (lastLineTerminator(value) < _prefix.length());
+		}
+		else {
+			matches = _pattern.matches(value);
+		}
+		if (_trace.isDebugEnabled()) {
+			_trace.debug(String.format("matches(%s): %s -> %s", value, _regularExpression, Boolean.toString(matches)));
 		}
 		return matches;
 	}
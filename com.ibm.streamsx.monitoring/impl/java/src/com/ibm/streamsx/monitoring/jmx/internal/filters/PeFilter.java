@@ -8,6 +8,7 @@
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +28,11 @@ final class PeFilter {
 	 */
 	protected Map<String /* regular expression */, MetricFilter> _metricFilters = new HashMap<>();
 
+	/**
+	 * The compiled metric filters, which are matched in one pass.
+	 */
+	protected PatternIndex<MetricFilter> _metricIndex = new PatternIndex<>(Collections.<MetricFilter>emptySet());
+
 	/**
 	 * An operator has many input ports.
 	 */
@@ -42,6 +48,11 @@ final class PeFilter {
 	 */
 	protected Map<String /* connection id */, ConnectionFilter> _connectionFilters = new HashMap<>();
 
+	/**
+	 * The compiled connection filters, which are matched in one pass.
+	 */
+	protected PatternIndex<ConnectionFilter> _connectionIndex = new PatternIndex<>(Collections.<ConnectionFilter>emptySet());
+
 	public PeFilter() throws PatternSyntaxException {
 	}	
 	
@@ -58,17 +69,13 @@ final class PeFilter {
 		for(ConnectionFilter connectionFilter : connectionFilters) {
 			_connectionFilters.put(connectionFilter.getRegularExpression(), connectionFilter);
 		}
+		_metricIndex = new PatternIndex<>(_metricFilters.values());
+		_connectionIndex = new PatternIndex<>(_connectionFilters.values());
 	}
 
-	public boolean matchesPeMetricName(String peId, String metricName) {
-		boolean matches = false;
-		for(MetricFilter filter : _metricFilters.values()) {
-			matches = filter.matchesMetricName(metricName);
-			if (matches) {
-				break;
-			}
-		}
-		return matches;
+	public MetricFilter findPeMetricFilter(String peId, String metricName) {
+		MetricFilter result = _metricIndex.getFirstMatch(metricName);
+		return result;
 	}
 
 	public boolean matchesPeInputPortIndex(String peId, Integer portIndex) {
@@ -82,15 +89,15 @@ final class PeFilter {
 		return matches;
 	}
 
-	public boolean matchesPeInputPortMetricName(String peId, Integer portIndex, String metricName) {
-		boolean matches = false;
+	public MetricFilter findPeInputPortMetricFilter(String peId, Integer portIndex, String metricName) {
+		MetricFilter result = null;
 		for(PortFilter filter : _inputPortFilters.values()) {
-			matches = filter.matchesPortMetricName(portIndex, metricName);
-			if (matches) {
+			result = filter.findPortMetricFilter(portIndex, metricName);
+			if (result != null) {
 				break;
 			}
 		}
-		return matches;
+		return result;
 	}
 
 	public boolean matchesPeOutputPortIndex(String peId, Integer portIndex) {
@@ -104,20 +111,20 @@ final class PeFilter {
 		return matches;
 	}
 
-	public boolean matchesPeOutputPortMetricName(String peId, Integer portIndex, String metricName) {
-		boolean matches = false;
+	public MetricFilter findPeOutputPortMetricFilter(String peId, Integer portIndex, String metricName) {
+		MetricFilter result = null;
 		for(PortFilter filter : _outputPortFilters.values()) {
-			matches = filter.matchesPortMetricName(portIndex, metricName);
-			if (matches) {
+			result = filter.findPortMetricFilter(portIndex, metricName);
+			if (result != null) {
 				break;
 			}
 		}
-		return matches;
+		return result;
 	}
 	
 	public boolean matchesPeConnectionId(String peId, String connectionId) {
 		boolean matches = false;
-		for(ConnectionFilter filter : _connectionFilters.values()) {
+		for(ConnectionFilter filter : _connectionIndex.getMatches(connectionId)) {
 			matches = filter.matchesConnectionId(connectionId);
 			if (matches) {
 				break;
@@ -126,15 +133,15 @@ final class PeFilter {
 		return matches;
 	}
 	
-	public boolean matchesPeConnectionMetricName(String peId, String peConnection, String metricName) {
-		boolean matches = false;
-		for(ConnectionFilter filter : _connectionFilters.values()) {
-			matches = filter.matchesConnectionMetricName(peConnection, metricName);
-			if (matches) {
+	public MetricFilter findPeConnectionMetricFilter(String peId, String peConnection, String metricName) {
+		MetricFilter result = null;
+		for(ConnectionFilter filter : _connectionIndex.getMatches(peConnection)) {
+			result = filter.findConnectionMetricFilter(peConnection, metricName);
+			if (result != null) {
 				break;
 			}
 		}
-		return matches;
+		return result;
 	}
 
 }
@@ -14,6 +14,7 @@ import org.apache.log4j.Logger;
 
 import com.ibm.json.java.JSONArtifact;
 import com.ibm.json.java.JSONObject;
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
 import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration.OpType;
 import com.ibm.streamsx.monitoring.jmx.internal.filters.PeFilter;
 
@@ -49,6 +50,15 @@ public class PeParser extends AbstractParser {
 				}
 				
 			});
+
+			setValidationRule(EMIT_POLICY, new IValidator() {
+	
+				@Override
+				public boolean validate(String key, Object object) {
+					return verifyEmitPolicy(key, object);
+				}
+				
+			});
 	
 			setValidationRule(INPUT_PORTS, new IValidator() {
 	
@@ -118,10 +128,11 @@ public class PeParser extends AbstractParser {
 			Set<PortFilter> inputPortFilters = _portParser.buildFilters((JSONArtifact)json.get(INPUT_PORTS));
 			Set<PortFilter> outputPortFilters = _portParser.buildFilters((JSONArtifact)json.get(OUTPUT_PORTS));
 			Set<ConnectionFilter> connectionFilters = _connectionParser.buildFilters((JSONArtifact)json.get(CONNECTIONS));
+			IMetricEvaluator evaluator = buildEmitPolicy(json.get(EMIT_POLICY));
 			Set<MetricFilter> metricFilters = new HashSet<>();
 			for (String pattern : metrics) {
 	//			logger().error("create metric filter, pattern=" + pattern);
-				metricFilters.add(new MetricFilter(pattern));
+				metricFilters.add(new MetricFilter(pattern, evaluator));
 			}
 			Set<PeFilter> result = new HashSet<>();
 	//		logger().error("create PE filter");
@@ -7,6 +7,7 @@
 
 package com.ibm.streamsx.monitoring.jmx.internal.filters;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -26,11 +27,17 @@ final class PortFilter extends NumberMatcher {
 	 */
 	protected Map<String /* regular expression */, MetricFilter> _metricFilters = new HashMap<>();
 
+	/**
+	 * The compiled metric filters, which are matched in one pass.
+	 */
+	protected PatternIndex<MetricFilter> _metricIndex = new PatternIndex<>(Collections.<MetricFilter>emptySet());
+
 	public PortFilter(Long portIndex, Set<MetricFilter> metricFilters) throws PatternSyntaxException {
 		super(portIndex);
 		for(MetricFilter metricFilter : metricFilters) {
 			_metricFilters.put(metricFilter.getRegularExpression(), metricFilter);
 		}
+		_metricIndex = new PatternIndex<>(_metricFilters.values());
 	}
 
 	public boolean matchesPortIndex(Integer portIndex) {
@@ -38,17 +45,12 @@ final class PortFilter extends NumberMatcher {
 		return matches;
 	}
 
-	public boolean matchesPortMetricName(Integer portIndex, String metricName) {
-		boolean matches = matchesPortIndex(portIndex) && (_metricFilters.size() > 0);
-		if (matches) {
-			for(MetricFilter filter : _metricFilters.values()) {
-				matches = filter.matchesMetricName(metricName);
-				if (matches) {
-					break;
-				}
-			}
+	public MetricFilter findPortMetricFilter(Integer portIndex, String metricName) {
+		MetricFilter result = null;
+		if (matchesPortIndex(portIndex) && (_metricIndex.size() > 0)) {
+			result = _metricIndex.getFirstMatch(metricName);
 		}
-		return matches;
+		return result;
 	}
 
 }
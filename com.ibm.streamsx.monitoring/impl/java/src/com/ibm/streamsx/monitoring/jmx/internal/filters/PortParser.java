@@ -13,6 +13,7 @@ import java.util.Set;
 import org.apache.log4j.Logger;
 
 import com.ibm.json.java.JSONObject;
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
 
 public class PortParser extends AbstractParser {
 	
@@ -44,6 +45,15 @@ public class PortParser extends AbstractParser {
 			
 		});
 
+		setValidationRule(EMIT_POLICY, new IValidator() {
+
+			@Override
+			public boolean validate(String key, Object object) {
+				return verifyEmitPolicy(key, object);
+			}
+			
+		});
+
 	}
 
 	@Override
@@ -57,10 +67,11 @@ public class PortParser extends AbstractParser {
 //		logger().error("PortParser.JSON=" + json);
 		Set<Long> indexes = buildNumberList(json.get(PORT_INDEXES));
 		Set<String> metrics = buildPatternList(json.get(METRIC_NAME_PATTERNS));
+		IMetricEvaluator evaluator = buildEmitPolicy(json.get(EMIT_POLICY));
 		Set<MetricFilter> metricFilters = new HashSet<>();
 		for (String pattern : metrics) {
 //			logger().error("create metric filter, pattern=" + pattern);
-			metricFilters.add(new MetricFilter(pattern));
+			metricFilters.add(new MetricFilter(pattern, evaluator));
 		}
 		Set<PortFilter> result = new HashSet<>();
 		for (Long index : indexes) {
@@ -0,0 +1,56 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, 2017, International Business Machines Corporation    *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal.filters;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.log4j.Logger;
+
+final class ResourceFilter extends PatternMatcher {
+
+	/**
+	 * Logger for tracing.
+	 */
+	private static Logger _trace = Logger.getLogger(ResourceFilter.class.getName());
+
+	/**
+	 * A resource has many metrics.
+	 */
+	protected Map<String /* regular expression */, MetricFilter> _metricFilters = new HashMap<>();
+
+	/**
+	 * The compiled metric filters, which are matched in one pass.
+	 */
+	protected PatternIndex<MetricFilter> _metricIndex = new PatternIndex<>(Collections.<MetricFilter>emptySet());
+
+	public ResourceFilter(String resourceId, Set<MetricFilter> metricFilters) throws PatternSyntaxException {
+		super(resourceId);
+		for(MetricFilter metricFilter : metricFilters) {
+			_metricFilters.put(metricFilter.getRegularExpression(), metricFilter);
+		}
+		_metricIndex = new PatternIndex<>(_metricFilters.values());
+	}
+
+	public boolean matchesResourceId(String resourceId) {
+		boolean matches = matches(resourceId) && (_metricIndex.size() > 0);
+		return matches;
+	}
+
+	public MetricFilter findResourceMetricFilter(String resourceId, String metricName) {
+		MetricFilter result = null;
+		if (matchesResourceId(resourceId)) {
+			result = _metricIndex.getFirstMatch(metricName);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,82 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, 2017, International Business Machines Corporation    *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal.filters;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.ibm.json.java.JSONObject;
+import com.ibm.streamsx.monitoring.jmx.internal.IMetricEvaluator;
+
+public class ResourceParser extends AbstractParser {
+
+	private static Logger _logger = Logger.getLogger(ResourceParser.class.getName());
+
+	private static final String RESOURCE_ID_PATTERNS = "resourceIdPatterns";
+
+	private static final String METRIC_NAME_PATTERNS = "metricNamePatterns";
+
+	protected ResourceParser() {
+
+		setMandatoryItem(RESOURCE_ID_PATTERNS);
+		setMandatoryItem(METRIC_NAME_PATTERNS);
+
+		setValidationRule(RESOURCE_ID_PATTERNS, new IValidator() {
+
+			@Override
+			public boolean validate(String key, Object object) {
+				return verifyPatterns(key, object);
+			}
+
+		});
+
+		setValidationRule(METRIC_NAME_PATTERNS, new IValidator() {
+
+			@Override
+			public boolean validate(String key, Object object) {
+				return verifyPatterns(key, object);
+			}
+
+		});
+
+		setValidationRule(EMIT_POLICY, new IValidator() {
+
+			@Override
+			public boolean validate(String key, Object object) {
+				return verifyEmitPolicy(key, object);
+			}
+
+		});
+
+	}
+
+	@Override
+	protected Logger logger() {
+		return _logger;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected Set<ResourceFilter> buildFilters(JSONObject json) {
+		Set<String> patterns = buildPatternList(json.get(RESOURCE_ID_PATTERNS));
+		Set<String> metrics = buildPatternList(json.get(METRIC_NAME_PATTERNS));
+		IMetricEvaluator evaluator = buildEmitPolicy(json.get(EMIT_POLICY));
+		Set<MetricFilter> metricFilters = new HashSet<>();
+		for (String pattern : metrics) {
+			metricFilters.add(new MetricFilter(pattern, evaluator));
+		}
+		Set<ResourceFilter> result = new HashSet<>();
+		for (String pattern : patterns) {
+			result.add(new ResourceFilter(pattern, metricFilters));
+		}
+		return result;
+	}
+
+}
@@ -102,7 +102,9 @@ public class JobStatusSource extends AbstractJmxSource {
 			+ "job and their relations.\\n"
 			+ "\\n"
 			+ "The filter document is a JSON-encoded text file or JSON-encoded String that is "
-			+ "configured with the **filterDocument** parameter.\\n"
+			+ "configured with the **filterDocument** parameter. "
+			+ "If the document is a file, the operator applies changes of the file "
+			+ "without a restart.\\n"
 			+ "\\n"
 			+ "If the **applicationConfigurationName** parameter is specified, "
 			+ "the application configuration can override the **filterDocument** parameter value."
@@ -237,6 +239,7 @@ public class JobStatusSource extends AbstractJmxSource {
 								if (_operatorConfiguration.get_applicationConfigurationName() != null) {
 									detectAndProcessChangedFilterDocumentInApplicationConfiguration();
 								}
+								reconcileChangedFilters();
 							}
 						}
 						catch (Exception e) {
@@ -8,6 +8,7 @@
 package com.ibm.streamsx.monitoring.metrics;
 
 
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
@@ -21,11 +22,23 @@ import com.ibm.streams.operator.model.OutputPorts;
 import com.ibm.streams.operator.model.PrimitiveOperator;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.Metric.Kind;
+import com.ibm.streams.operator.model.CustomMetric;
 import com.ibm.streams.operator.state.ConsistentRegionContext;
 import com.ibm.streamsx.monitoring.messages.Messages;
 import com.ibm.streamsx.monitoring.jmx.AbstractJmxSource;
 import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration.OpType;
+import com.ibm.streamsx.monitoring.jmx.internal.ChannelAggregationMode;
+import com.ibm.streamsx.monitoring.jmx.internal.DiscoveryMode;
+import com.ibm.streamsx.monitoring.jmx.internal.InstanceScope;
+import com.ibm.streamsx.monitoring.jmx.internal.JmxConnectionPool;
 import com.ibm.streamsx.monitoring.jmx.internal.EmitMetricTupleMode;
+import com.ibm.streamsx.monitoring.jmx.internal.MetricTupleBatchMode;
+import com.ibm.streamsx.monitoring.jmx.internal.MetricsRetrievalMode;
+import com.ibm.streamsx.monitoring.jmx.internal.ScanOverrunPolicy;
+import com.ibm.streamsx.monitoring.jmx.internal.ScanStatistics;
+import com.ibm.streamsx.monitoring.jmx.internal.filters.FilterDecisionCache;
 import com.ibm.streamsx.monitoring.jobs.JobStatusSource;
 
 /**
@@ -70,6 +83,13 @@ import com.ibm.streamsx.monitoring.jobs.JobStatusSource;
 			windowPunctuationOutputMode=WindowPunctuationOutputMode.Free,
 			description=AbstractJmxSource.DESC_OUTPUT_PORT_1
 			)
+	,
+	@OutputPortSet(
+			cardinality=1,
+			optional=true,
+			windowPunctuationOutputMode=WindowPunctuationOutputMode.Free,
+			description=MetricsSource.DESC_OUTPUT_PORT_2
+			)
 })
 @Icons(
 		location16 = "icons/MetricsSource_16.gif", 
@@ -104,11 +124,18 @@ public class MetricsSource extends AbstractJmxSource {
 			+ "The MetricsSource operator monitors filter-matching "
 			+ "instances, and jobs that are running while the application that "
 			+ "uses the MetricsSource operator, starts. Furthermore, the "
-			+ "operator gets notifications for created and deleted instances, "
-			+ "and submitted and cancelled jobs. Thererfore, the operator can "
+			+ "operator gets notifications for submitted and cancelled jobs. "
+			+ "Thererfore, the operator can "
 			+ "retrieve metrics from filter-matching jobs that are submitted "
 			+ "in the future.\\n"
 			+ "\\n"
+			+ "Per default, the operator monitors only the configured instance. If the "
+			+ "**instanceScope** parameter is set to **matching**, the operator monitors all "
+			+ "instances that are visible on its JMX connection and match the **instanceIdPatterns** "
+			+ "of the filter document, with one JMX connection. The instances are discovered "
+			+ "again every **checkPeriod** seconds and after a reconnect, so added and removed "
+			+ "instances are detected.\\n"
+			+ "\\n"
 			+ "+ Filter document\\n"
 			+ "\\n"
 			+ "The filter document specifies patterns for instance, "
@@ -118,7 +145,9 @@ public class MetricsSource extends AbstractJmxSource {
 			+ "match the specified filters, are monitored.\\n"
 			+ "\\n"
 			+ "The filter document is a JSON-encoded text file or JSON-encoded String that is "
-			+ "configured with the **filterDocument** parameter.\\n"
+			+ "configured with the **filterDocument** parameter. "
+			+ "If the document is a file, the operator applies changes of the file "
+			+ "without a restart.\\n"
 			+ "\\n"
 			+ "If the **applicationConfigurationName** parameter is specified, "
 			+ "the application configuration can override the **filterDocument** parameter value."
@@ -219,6 +248,68 @@ public class MetricsSource extends AbstractJmxSource {
 			+ "      }\\n"
 			+ "    ]\\n"
 			+ "\\n"
+			+ "+ Resource metrics\\n"
+			+ "\\n"
+			+ "An instance object can specify **resources**, which selects the metrics of the resources "
+			+ "(hosts) of the instance, for example, their CPU and memory utilization. Each resource object "
+			+ "specifies **resourceIdPatterns** and **metricNamePatterns**, and optionally an **emitPolicy**. "
+			+ "The metrics of all resources are retrieved with one request per scan cycle, and emitted "
+			+ "after the metrics of the jobs with the origin *Resource*. "
+			+ "The following example selects the metrics of all resources, and no job metrics:\\n"
+			+ "\\n"
+			+ "    [\\n"
+			+ "      {\\n"
+			+ "        \\\"instanceIdPatterns\\\":\\\".*\\\",\\n"
+			+ "        \\\"jobs\\\":[],\\n"
+			+ "        \\\"resources\\\":\\n"
+			+ "        [\\n"
+			+ "          {\\n"
+			+ "            \\\"resourceIdPatterns\\\":\\\".*\\\",\\n"
+			+ "            \\\"metricNamePatterns\\\":\\\".*\\\"\\n"
+			+ "          }\\n"
+			+ "        ]\\n"
+			+ "      }\\n"
+			+ "    ]\\n"
+			+ "\\n"
+			+ "+ Emit policies\\n"
+			+ "\\n"
+			+ "Each object that specifies **metricNamePatterns** can specify an **emitPolicy** "
+			+ "for the matching metrics, which overrides the **emitMetricTuple** parameter:\\n"
+			+ "\\n"
+			+ "* **deadband**: A tuple is emitted if the value changed by at least this absolute delta.\\n"
+			+ "* **percentChange**: A tuple is emitted if the value changed by at least this percentage of the last emitted value.\\n"
+			+ "* **heartbeatCycles**: An unchanged value is emitted after this number of scan cycles without a tuple.\\n"
+			+ "\\n"
+			+ "Specify either **deadband** or **percentChange**. If neither is specified, each changed value is emitted. "
+			+ "The following example emits a queue size if it changed by at least 10, and at least every 12 scan cycles:\\n"
+			+ "\\n"
+			+ "    \\\"metricNamePatterns\\\":\\\"queueSize\\\",\\n"
+			+ "    \\\"emitPolicy\\\": { \\\"deadband\\\":\\\"10\\\", \\\"heartbeatCycles\\\":\\\"12\\\" }\\n"
+			+ "\\n"
+			+ "Alternatively, an emit policy can select the metrics with the highest values:\\n"
+			+ "\\n"
+			+ "* **topK**: In each scan cycle, only the tuples of the metrics with the K highest values are emitted, "
+			+ "ordered by descending value, after the other tuples of the scan cycle. The values of all metrics "
+			+ "that match the JSON object, which specifies the emit policy, are compared, independent of whether "
+			+ "they changed. If the object specifies several **metricNamePatterns**, their metrics compete for "
+			+ "the same K tuples. Specify the patterns in separate objects to select K tuples per pattern.\\n"
+			+ "* **topKPerJob**: If true, the K highest values are selected per job, and emitted after the "
+			+ "other tuples of the job. The default is false.\\n"
+			+ "\\n"
+			+ "Specify **topK** without **deadband**, **percentChange**, and **heartbeatCycles**. "
+			+ "The following example emits the five highest congestion factors of each job:\\n"
+			+ "\\n"
+			+ "    \\\"metricNamePatterns\\\":\\\"congestionFactor\\\",\\n"
+			+ "    \\\"emitPolicy\\\": { \\\"topK\\\":\\\"5\\\", \\\"topKPerJob\\\":true }\\n"
+			+ "\\n"
+			+ "+ Parallel regions\\n"
+			+ "\\n"
+			+ "If the MetricsSource operator runs in a parallel region, each channel "
+			+ "monitors a disjoint subset of the filter-matching jobs. The jobs are "
+			+ "assigned to the channels by hashing the job id, so the assignment is "
+			+ "stable, and if the parallel width changes, only a minimal set of jobs "
+			+ "is assigned to another channel.\\n"
+			+ "\\n"
 			;
 	
 	protected static final String DESC_OUTPUT_PORT = 
@@ -228,7 +319,40 @@ public class MetricsSource extends AbstractJmxSource {
 			+ "[type:com.ibm.streamsx.monitoring.metrics::Notification|Notification] "
 			+ "tuple type, or any subset of the attributes specified for this "
 			+ "type. After each scan cycle, the operator emits a WindowMarker "
-			+ "to this port."
+			+ "to this port.\\n"
+			+ "\\n"
+			+ "Additionally, the output type can contain an optional **float64 metricRate** "
+			+ "attribute. For counter metrics, the operator sets it to the per-second rate "
+			+ "since the previous scan cycle. For other metrics, for the first value of a "
+			+ "counter, and after a counter is reset, for example, because the PE restarted, "
+			+ "the attribute is set to NaN.\\n"
+			+ "\\n"
+			+ "To reduce the number of tuples, the operator can emit the metric tuples in batches. "
+			+ "For this purpose, use an output type with a **notifications** attribute, which is a list "
+			+ "of the [type:com.ibm.streamsx.monitoring.metrics::Notification|Notification] "
+			+ "tuple type or of a subset of its attributes, for example, the "
+			+ "[type:com.ibm.streamsx.monitoring.metrics::NotificationBatch|NotificationBatch] "
+			+ "tuple type. The **batchMetricTuples** parameter specifies whether a batch is emitted "
+			+ "for each job or for each scan cycle. No tuple is emitted for an empty batch.\\n"
+			+ "\\n"
+			+ "Additionally, the output type can contain an optional **int64 seriesId** attribute, "
+			+ "which identifies the metric as long as it is monitored. Together with the dictionary "
+			+ "entries that the operator emits to the optional third output port, you can use a "
+			+ "compact output type like the "
+			+ "[type:com.ibm.streamsx.monitoring.metrics::CompactNotification|CompactNotification] "
+			+ "tuple type, which omits the identity attributes of the metric."
+			;
+
+	protected static final String DESC_OUTPUT_PORT_2 = 
+			"The MetricsSource operator emits a dictionary entry to this optional output port "
+			+ "when a metric tuple is emitted for a new series, which is identified by the "
+			+ "**seriesId** attribute, and when the identity attributes of a series change, "
+			+ "for example, the **resource** attribute after a PE is relocated. The dictionary "
+			+ "entry is emitted before the metric tuple. You can use the "
+			+ "[type:com.ibm.streamsx.monitoring.metrics::SeriesDictionaryEntry|SeriesDictionaryEntry] "
+			+ "tuple type, or any subset of the attributes specified for this type. "
+			+ "The series ids of metrics that are not monitored anymore are not reused. "
+			+ "To use this port, the second output port must also be specified."
 			;
 	
 	private static final String DESC_PARAM_FILTER_DOCUMENT = 
@@ -242,11 +366,61 @@ public class MetricsSource extends AbstractJmxSource {
 	
 	private static final String DESC_PARAM_SCAN_PERIOD = 
 			"Specifies the period after which a new metrics scan is "
-			+ "initiated. The default is 5.0 seconds.";
+			+ "initiated. The scan cycles start at a fixed rate, which means "
+			+ "that the period is measured from the start of a scan cycle to "
+			+ "the start of the next scan cycle. The default is 5.0 seconds.";
+
+	private static final String DESC_PARAM_SCAN_OVERRUN_POLICY =
+			"Specifies how the scan schedule continues if a scan cycle takes longer "
+			+ "than the scan period. Each of these overruns increments the **nScanOverruns** "
+			+ "metric. Supported policies are the following string values:\\n"
+			+ "\\n"
+			+ "* **skip** (default)\\n"
+			+ "\\n"
+			+ "  The missed scan cycles are skipped. The next scan cycle starts at the next "
+			+ "regular start time, so the scan cycles stay aligned to the original schedule.\\n"
+			+ "\\n"
+			+ "* **coalesce**\\n"
+			+ "\\n"
+			+ "  The missed scan cycles are coalesced into one scan cycle that starts "
+			+ "immediately. The schedule is realigned to the start of this scan cycle.\\n"
+			+ "\\n"
+			+ "* **backToBack**\\n"
+			+ "\\n"
+			+ "  The missed scan cycles are run back-to-back until the schedule is caught up. "
+			+ "The schedule falls at most one scan period behind, so a long scan cycle "
+			+ "is followed by at most one additional scan cycle without delay.";
+
+	private static final String DESC_PARAM_SCAN_THREADS = 
+			"Specifies the number of threads that capture the metrics of the "
+			+ "monitored jobs concurrently during a scan cycle. The metrics of "
+			+ "a job are captured by one thread. The tuples are submitted job "
+			+ "by job, ordered by the job id, before the WindowMarker that "
+			+ "completes the scan cycle is emitted. "
+			+ "The default is 1, which means that the jobs are scanned sequentially.";
+
+	private static final String DESC_PARAM_JMX_CONNECTIONS = 
+			"Specifies the number of JMX connections that are used to retrieve "
+			+ "the metrics. The MXBean proxies of the monitored jobs, operators, "
+			+ "PEs, ports, and connections are spread across the connections, so "
+			+ "concurrent scans (see **scanThreads**) do not share one connection. "
+			+ "If an additional connection breaks, it is reconnected without "
+			+ "affecting the other connections. "
+			+ "The default is 1, which means that one connection is used.";
+
+	private static final String DESC_PARAM_PLACEMENT_REFRESH_PERIOD = 
+			"Specifies the period after which the cached channel, PE, and "
+			+ "resource of the monitored operators and PEs are retrieved again. "
+			+ "These attributes are cached because they change only if a PE is "
+			+ "restarted or relocated. The cache is additionally invalidated "
+			+ "if a PE change or an operator connection change is notified. "
+			+ "If the value is 0.0, the attributes are retrieved during each scan cycle. "
+			+ "The default is 60.0 seconds.";
 
 	private static final String DESC_PARAM_CHECK_PERIOD = 
 			"Specifies the period after which is checked if the application configuration is updated, for example to update the filter document during runtime."
-			+ "The default is 5.0 seconds.";	
+			+ " If the **instanceScope** parameter is set to **matching**, the instances are "
+			+ "discovered with the same period. The default is 5.0 seconds.";	
 	
 	private static final String DESC_PARAM_EMIT_METRIC_TUPLE =
 			"Specifies when to emit a tuple for a metric. Supported modes are the following string values:\\n"
@@ -257,7 +431,107 @@ public class MetricsSource extends AbstractJmxSource {
 			+ "\\n"
 			+ "* **onChangedValue** (default)\\n"
 			+ "\\n"
-			+ "  For each monitored metric a tuple is emitted during each scan cycle if the metric value changed.";
+			+ "  For each monitored metric a tuple is emitted during each scan cycle if the metric value changed.\\n"
+			+ "\\n"
+			+ "* **onSignificantChange**\\n"
+			+ "\\n"
+			+ "  The decision depends on the metric kind. For a counter metric a tuple is emitted if its "
+			+ "per-second rate changed by at least the **counterRateChange** percentage, or if the counter "
+			+ "was reset. For a gauge or time metric a tuple is emitted if its value changed by at least "
+			+ "the **gaugeDeadband** value.\\n"
+			+ "\\n"
+			+ "The **emitPolicy** of a metric in the filter document overrides this mode.";
+
+	private static final String DESC_PARAM_GAUGE_DEADBAND =
+			"Specifies the minimum absolute change of a gauge or time metric, for which a tuple is "
+			+ "emitted, if the **emitMetricTuple** parameter is set to **onSignificantChange**. The default is 1.";
+
+	private static final String DESC_PARAM_COUNTER_RATE_CHANGE =
+			"Specifies the minimum change in percent of the per-second rate of a counter metric, for which "
+			+ "a tuple is emitted, if the **emitMetricTuple** parameter is set to **onSignificantChange**. "
+			+ "The default is 10.0.";
+
+	private static final String DESC_PARAM_DISCOVERY_MODE =
+			"Specifies how the operators, PEs, and ports of the monitored jobs are discovered "
+			+ "when the operator starts. Supported modes are the following string values:\\n"
+			+ "\\n"
+			+ "* **perObject** (default)\\n"
+			+ "\\n"
+			+ "  The operators and PEs are retrieved from each job, and the ports are retrieved "
+			+ "from each operator and PE.\\n"
+			+ "\\n"
+			+ "* **bulk**\\n"
+			+ "\\n"
+			+ "  The operators and ports of all jobs are discovered with a few object name pattern "
+			+ "queries. The operator and PE notification listeners are registered during the first "
+			+ "scan cycle. This mode reduces the startup time for instances with many operators. "
+			+ "Jobs that are submitted later are discovered per object.";
+
+	private static final String DESC_PARAM_METRICS_RETRIEVAL_MODE =
+			"Specifies how the metrics are retrieved during a scan cycle. Supported modes are the following string values:\\n"
+			+ "\\n"
+			+ "* **perObject** (default)\\n"
+			+ "\\n"
+			+ "  The metrics are retrieved separately for each monitored operator, PE, port, and connection.\\n"
+			+ "\\n"
+			+ "* **jobSnapshot**\\n"
+			+ "\\n"
+			+ "  The metrics of all PEs, operators, ports, and connections of a job are retrieved with one "
+			+ "snapshot request per job and scan cycle, which reduces the number of remote calls. "
+			+ "If the snapshot cannot be retrieved or parsed, the metrics are retrieved per object.";
+
+	private static final String DESC_PARAM_CHANNEL_AGGREGATION =
+			"Specifies whether the operator and port metrics of the channels of parallel regions "
+			+ "are emitted per channel, or aggregated across the channels of the same logical "
+			+ "operator. Counter metrics are summed up, gauge metrics are aggregated to the "
+			+ "maximum value, and time metrics to the average value. An aggregated metric tuple "
+			+ "has the logical operator name in the **operatorName** attribute, the **channel** "
+			+ "attribute set to -1, an empty **resource**, and the **peId** 0. The aggregated "
+			+ "value is evaluated like the value of a single channel: The emit policy of the "
+			+ "filter document, or else the **emitMetricTuple** mode, decides whether the tuple "
+			+ "is emitted. Supported modes are the following string values:\\n"
+			+ "\\n"
+			+ "* **perChannel** (default)\\n"
+			+ "\\n"
+			+ "  The metrics are emitted per channel. No aggregated metric tuples are emitted.\\n"
+			+ "\\n"
+			+ "* **aggregated**\\n"
+			+ "\\n"
+			+ "  The aggregated metric tuples are emitted instead of the per-channel tuples.\\n"
+			+ "\\n"
+			+ "* **perChannelAndAggregated**\\n"
+			+ "\\n"
+			+ "  The aggregated metric tuples are emitted next to the per-channel tuples.";
+
+	private static final String DESC_PARAM_INSTANCE_SCOPE =
+			"Specifies which instances are monitored. Supported scopes are the following "
+			+ "string values:\\n"
+			+ "\\n"
+			+ "* **configured** (default)\\n"
+			+ "\\n"
+			+ "  Only the instance that is specified with the **instanceId** parameter, the "
+			+ "application configuration, or the instance of the operator, is monitored.\\n"
+			+ "\\n"
+			+ "* **matching**\\n"
+			+ "\\n"
+			+ "  Additionally, the other instances that are visible on the JMX connection, and "
+			+ "that match the **instanceIdPatterns** of the filter document, are monitored. The "
+			+ "instances are captured one after the other, and the jobs of each instance "
+			+ "concurrently if the **scanThreads** parameter is greater than 1. The operator "
+			+ "queries the instances every **checkPeriod** seconds and after a reconnect, "
+			+ "monitors added instances, and stops monitoring removed instances.";
+
+	private static final String DESC_PARAM_BATCH_METRIC_TUPLES =
+			"Specifies which metric tuples are emitted in one batch, if the output type has "
+			+ "a **notifications** attribute. Supported modes are the following string values:\\n"
+			+ "\\n"
+			+ "* **perJob**\\n"
+			+ "\\n"
+			+ "  A tuple is emitted for each job with the metric tuples of this job.\\n"
+			+ "\\n"
+			+ "* **perScan** (default)\\n"
+			+ "\\n"
+			+ "  A tuple is emitted for each scan cycle with the metric tuples of all jobs.";
 
 	// ------------------------------------------------------------------------
 	// Implementation.
@@ -275,6 +549,102 @@ public class MetricsSource extends AbstractJmxSource {
 	 */
 	private static Logger _trace = Logger.getLogger(MetricsSource.class.getName());
 
+	/*
+	 * Metrics that describe the last scan cycle.
+	 */
+	private Metric nJmxCalls;
+	private Metric nJobsVisited;
+	private Metric nOperatorsVisited;
+	private Metric nPortsVisited;
+	private Metric nPesVisited;
+	private Metric nConnectionsVisited;
+	private Metric nResourcesVisited;
+	private Metric nMetricsEvaluated;
+	private Metric nTuplesEmitted;
+
+	/*
+	 * Metrics that describe the filter decision cache.
+	 */
+	private Metric nFilterCacheHits;
+	private Metric nFilterCacheMisses;
+
+	/*
+	 * Metrics that describe the health of the JMX connection pool.
+	 */
+	private Metric nHealthyJMXConnections;
+	private Metric nPooledJMXConnectionFailures;
+
+	/**
+	 * The latency histogram of the retrieveMetrics() calls of the last scan
+	 * cycle. There is one metric per histogram bucket.
+	 */
+	private Metric[] nRetrieveMetricsLatency = null;
+
+	@CustomMetric(name="nJmxCalls", kind = Kind.GAUGE, description = "Number of JMX calls that are issued during the last scan cycle.")
+	public void set_nJmxCalls(Metric nJmxCalls) {
+		this.nJmxCalls = nJmxCalls;
+	}
+
+	@CustomMetric(name="nJobsVisited", kind = Kind.GAUGE, description = "Number of jobs that are visited during the last scan cycle.")
+	public void set_nJobsVisited(Metric nJobsVisited) {
+		this.nJobsVisited = nJobsVisited;
+	}
+
+	@CustomMetric(name="nOperatorsVisited", kind = Kind.GAUGE, description = "Number of operators that are visited during the last scan cycle.")
+	public void set_nOperatorsVisited(Metric nOperatorsVisited) {
+		this.nOperatorsVisited = nOperatorsVisited;
+	}
+
+	@CustomMetric(name="nPortsVisited", kind = Kind.GAUGE, description = "Number of operator and PE ports that are visited during the last scan cycle.")
+	public void set_nPortsVisited(Metric nPortsVisited) {
+		this.nPortsVisited = nPortsVisited;
+	}
+
+	@CustomMetric(name="nPesVisited", kind = Kind.GAUGE, description = "Number of PEs that are visited during the last scan cycle.")
+	public void set_nPesVisited(Metric nPesVisited) {
+		this.nPesVisited = nPesVisited;
+	}
+
+	@CustomMetric(name="nConnectionsVisited", kind = Kind.GAUGE, description = "Number of PE connections that are visited during the last scan cycle.")
+	public void set_nConnectionsVisited(Metric nConnectionsVisited) {
+		this.nConnectionsVisited = nConnectionsVisited;
+	}
+
+	@CustomMetric(name="nResourcesVisited", kind = Kind.GAUGE, description = "Number of resources that are visited during the last scan cycle.")
+	public void set_nResourcesVisited(Metric nResourcesVisited) {
+		this.nResourcesVisited = nResourcesVisited;
+	}
+
+	@CustomMetric(name="nMetricsEvaluated", kind = Kind.GAUGE, description = "Number of metrics that are evaluated during the last scan cycle.")
+	public void set_nMetricsEvaluated(Metric nMetricsEvaluated) {
+		this.nMetricsEvaluated = nMetricsEvaluated;
+	}
+
+	@CustomMetric(name="nTuplesEmitted", kind = Kind.GAUGE, description = "Number of metric tuples that are emitted for the last scan cycle.")
+	public void set_nTuplesEmitted(Metric nTuplesEmitted) {
+		this.nTuplesEmitted = nTuplesEmitted;
+	}
+
+	@CustomMetric(name="nFilterCacheHits", kind = Kind.GAUGE, description = "Number of metric filter decisions that are found in the cache since the filter document is loaded.")
+	public void set_nFilterCacheHits(Metric nFilterCacheHits) {
+		this.nFilterCacheHits = nFilterCacheHits;
+	}
+
+	@CustomMetric(name="nFilterCacheMisses", kind = Kind.GAUGE, description = "Number of metric filter decisions that are evaluated since the filter document is loaded.")
+	public void set_nFilterCacheMisses(Metric nFilterCacheMisses) {
+		this.nFilterCacheMisses = nFilterCacheMisses;
+	}
+
+	@CustomMetric(name="nHealthyJMXConnections", kind = Kind.GAUGE, description = "Number of JMX connections, including the primary connection, that are healthy after the last scan cycle.")
+	public void set_nHealthyJMXConnections(Metric nHealthyJMXConnections) {
+		this.nHealthyJMXConnections = nHealthyJMXConnections;
+	}
+
+	@CustomMetric(name="nPooledJMXConnectionFailures", kind = Kind.COUNTER, description = "Number of failures of the pooled JMX connections, after which the connection is established again.")
+	public void set_nPooledJMXConnectionFailures(Metric nPooledJMXConnectionFailures) {
+		this.nPooledJMXConnectionFailures = nPooledJMXConnectionFailures;
+	}
+
 	@Parameter(
 			optional=true,
 			description=MetricsSource.DESC_PARAM_FILTER_DOCUMENT
@@ -291,6 +661,38 @@ public class MetricsSource extends AbstractJmxSource {
 		_operatorConfiguration.set_scanPeriod(scanPeriod);
 	}
 
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_SCAN_OVERRUN_POLICY
+			)
+	public void setScanOverrunPolicy(String policy) {
+		_operatorConfiguration.set_scanOverrunPolicy(ScanOverrunPolicy.valueOf(policy));
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_SCAN_THREADS
+			)
+	public void setScanThreads(Integer scanThreads) {
+		_operatorConfiguration.set_scanThreads(scanThreads);
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_JMX_CONNECTIONS
+			)
+	public void setJmxConnections(Integer jmxConnections) {
+		_operatorConfiguration.set_jmxConnections(jmxConnections);
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_PLACEMENT_REFRESH_PERIOD
+			)
+	public void setPlacementRefreshPeriod(Double placementRefreshPeriod) {
+		_operatorConfiguration.set_placementRefreshPeriod(placementRefreshPeriod);
+	}
+
 	@Parameter(
 			optional=true,
 			description=MetricsSource.DESC_PARAM_CHECK_PERIOD
@@ -307,6 +709,62 @@ public class MetricsSource extends AbstractJmxSource {
 		_operatorConfiguration.set_emitMetricTuple(EmitMetricTupleMode.valueOf(mode));
 	}
 
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_CHANNEL_AGGREGATION
+			)
+	public void setChannelAggregation(String mode) {
+		_operatorConfiguration.set_channelAggregation(ChannelAggregationMode.valueOf(mode));
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_BATCH_METRIC_TUPLES
+			)
+	public void setBatchMetricTuples(String mode) {
+		_operatorConfiguration.set_batchMetricTuples(MetricTupleBatchMode.valueOf(mode));
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_GAUGE_DEADBAND
+			)
+	public void setGaugeDeadband(Long gaugeDeadband) {
+		_operatorConfiguration.set_gaugeDeadband(gaugeDeadband);
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_COUNTER_RATE_CHANGE
+			)
+	public void setCounterRateChange(Double counterRateChange) {
+		_operatorConfiguration.set_counterRateChange(counterRateChange);
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_DISCOVERY_MODE
+			)
+	public void setDiscoveryMode(String mode) {
+		_operatorConfiguration.set_discoveryMode(DiscoveryMode.valueOf(mode));
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_INSTANCE_SCOPE
+			)
+	public void setInstanceScope(String scope) {
+		_operatorConfiguration.set_instanceScope(InstanceScope.valueOf(scope));
+	}
+
+	@Parameter(
+			optional=true,
+			description=MetricsSource.DESC_PARAM_METRICS_RETRIEVAL_MODE
+			)
+	public void setMetricsRetrievalMode(String mode) {
+		_operatorConfiguration.set_metricsRetrievalMode(MetricsRetrievalMode.valueOf(mode));
+	}
+
 	@ContextCheck(compile = true)
 	public static void checkInConsistentRegion(OperatorContextChecker checker) {
 		//consistent region check
@@ -329,24 +787,71 @@ public class MetricsSource extends AbstractJmxSource {
 			throws Exception {
 		_trace.trace("Operator " + context.getName() + " initializing in PE: " + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId() );
 		_operatorConfiguration.set_OperatorType(OpType.METRICS_SOURCE);
+		if (_operatorConfiguration.get_scanThreads() < 1) {
+			throw new com.ibm.streams.operator.DataException("The " + context.getName() + " operator requires a scanThreads parameter value greater than 0.");
+		}
+		if (_operatorConfiguration.get_jmxConnections() < 1) {
+			throw new com.ibm.streams.operator.DataException("The " + context.getName() + " operator requires a jmxConnections parameter value greater than 0.");
+		}
+		if (_operatorConfiguration.get_scanPeriod() <= 0) {
+			throw new com.ibm.streams.operator.DataException("The " + context.getName() + " operator requires a scanPeriod parameter value greater than 0.");
+		}
+		if (_operatorConfiguration.get_gaugeDeadband() < 1) {
+			throw new com.ibm.streams.operator.DataException("The " + context.getName() + " operator requires a gaugeDeadband parameter value greater than 0.");
+		}
+		if (_operatorConfiguration.get_counterRateChange() <= 0) {
+			throw new com.ibm.streams.operator.DataException("The " + context.getName() + " operator requires a counterRateChange parameter value greater than 0.");
+		}
+		/*
+		 * If the operator runs in a parallel region, each channel monitors
+		 * a disjoint subset of the jobs. The channel must be known before
+		 * the jobs are registered during the initialization of the base
+		 * class.
+		 */
+		_operatorConfiguration.set_channel(context.getChannel());
+		_operatorConfiguration.set_maxChannels(context.getMaxChannels());
 		super.initialize(context);
+
+		/*
+		 * Create the metrics for the latency histogram of the retrieveMetrics()
+		 * calls. The number of buckets is defined by the scan statistics.
+		 */
+		nRetrieveMetricsLatency = new Metric[ScanStatistics.getRetrieveMetricsLatencyBucketCount()];
+		for (int i = 0; i < nRetrieveMetricsLatency.length; i++) {
+			nRetrieveMetricsLatency[i] = context.getMetrics().createCustomMetric(
+					ScanStatistics.getRetrieveMetricsLatencyBucketName(i),
+					"Number of metrics retrievals during the last scan cycle with a latency in the range that the metric name specifies.",
+					Kind.GAUGE);
+		}
+
+		/*
+		 * Create the worker threads that capture the job metrics concurrently.
+		 */
+		if (_operatorConfiguration.get_scanThreads() > 1) {
+			_operatorConfiguration.set_scanExecutor(Executors.newFixedThreadPool(_operatorConfiguration.get_scanThreads(), getOperatorContext().getThreadFactory()));
+		}
 		
 		/*
 		 * Enable scheduled service for checking application configuration updates
-		 * and for JMX connection health check
+		 * and for discovering the instances
 		 */				
-		if (_operatorConfiguration.get_applicationConfigurationName() != null) {
+		if ((_operatorConfiguration.get_applicationConfigurationName() != null) ||
+			(InstanceScope.matching == _operatorConfiguration.get_instanceScope())) {
 			java.util.concurrent.ScheduledExecutorService scheduler = getOperatorContext().getScheduledExecutorService();
 			scheduler.scheduleWithFixedDelay(
 					new Runnable() {
 						@Override
 						public void run() {
 							try {
-								detectAndProcessChangedFilterDocumentInApplicationConfiguration();
+								if (_operatorConfiguration.get_applicationConfigurationName() != null) {
+									detectAndProcessChangedFilterDocumentInApplicationConfiguration();
+								}
 							}
 							catch (Exception e) {
 								_trace.error("Error reading application configuration ", e);
-							}							
+							}
+							// The scan thread updates the instance handlers.
+							detectInstances();
 						}
 					}, 5000l, Double.valueOf(_operatorConfiguration.get_checkPeriod() * 1000.0).longValue(), TimeUnit.MILLISECONDS);		
 		}
@@ -401,33 +906,76 @@ public class MetricsSource extends AbstractJmxSource {
 	private void produceTuples() throws Exception  {
 		boolean quit = false;
 		boolean connected = true;
+		final long scanPeriod = Double.valueOf(_operatorConfiguration.get_scanPeriod() * 1000000000.0).longValue();
+		long nextScanStart = System.nanoTime();
 		while(!quit) {
-			
+			long scanStart = System.nanoTime();
+			_operatorConfiguration.get_scanStatistics().reset();
 			try {
 				if (!connected) {
 					_trace.warn("Reconnect");
 					setupJMXConnection();
 					connected = true;
-					scanInstance(); // create new InstanceHandler
+					reconnectInstanceHandler(); // keep the handlers and their metric state
 				}		
 
 				if (connected) {
-					_instanceHandler.healthCheck();				
-					_instanceHandler.captureMetrics();
+					reconcileChangedFilters();
+					captureInstanceMetrics();
 				}
 			}
 			catch (Exception e) {
 				_trace.error("JMX connection error ", e);
 				connected = false;
-				closeInstanceHandler();
-				setupFilters();
+				setDisconnected();
 			}
 			/*
-			 * Emit a window marker after each scan cycle.
+			 * Emit the remaining batched metric tuples and a window marker
+			 * after each scan cycle.
 			 */
+			_operatorConfiguration.get_tupleContainerMetricsSource().endOfScan();
 			_operatorConfiguration.get_tupleContainerMetricsSource().punctuate(Punctuation.WINDOW_MARKER);
 
-			Thread.sleep(Double.valueOf(_operatorConfiguration.get_scanPeriod() * 1000.0).longValue());
+			publishScanStatistics();
+
+			/*
+			 * Schedule the next scan cycle at a fixed rate, relative to the
+			 * start times of the scan cycles, so the scan duration does not
+			 * cause the schedule to drift.
+			 */
+			long scanEnd = System.nanoTime();
+			long scanDurationMs = TimeUnit.NANOSECONDS.toMillis(scanEnd - scanStart);
+			get_lastScanDurationMs().setValue(scanDurationMs);
+			if (scanDurationMs > get_maxScanDurationMs().getValue()) {
+				get_maxScanDurationMs().setValue(scanDurationMs);
+			}
+			if (scanEnd - scanStart > scanPeriod) {
+				get_nScanOverruns().increment();
+				if (_trace.isDebugEnabled()) {
+					_trace.debug("The scan cycle took " + scanDurationMs + " ms, which is longer than the scan period.");
+				}
+			}
+			nextScanStart += scanPeriod;
+			if (scanEnd - nextScanStart > 0) {
+				switch (_operatorConfiguration.get_scanOverrunPolicy()) {
+				case skip:
+					nextScanStart += ((scanEnd - nextScanStart) / scanPeriod + 1) * scanPeriod;
+					break;
+				case coalesce:
+					nextScanStart = scanEnd;
+					break;
+				case backToBack:
+					// Keep the schedule, but let it fall at most one period behind.
+					if (scanEnd - nextScanStart > scanPeriod) {
+						nextScanStart = scanEnd - scanPeriod;
+					}
+					break;
+				}
+			}
+			long delay = nextScanStart - System.nanoTime();
+			if (delay > 0) {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			}
 		}
 
 		/*
@@ -436,6 +984,33 @@ public class MetricsSource extends AbstractJmxSource {
 		_operatorConfiguration.get_tupleContainerMetricsSource().punctuate(Punctuation.FINAL_MARKER);
 	}
 
+	/**
+	 * Set the custom metrics that describe the last scan cycle.
+	 */
+	private void publishScanStatistics() {
+		ScanStatistics statistics = _operatorConfiguration.get_scanStatistics();
+		nJmxCalls.setValue(statistics.getJmxCalls());
+		nJobsVisited.setValue(statistics.getObjectsVisited(ScanStatistics.Level.job));
+		nOperatorsVisited.setValue(statistics.getObjectsVisited(ScanStatistics.Level.operator));
+		nPortsVisited.setValue(statistics.getObjectsVisited(ScanStatistics.Level.port));
+		nPesVisited.setValue(statistics.getObjectsVisited(ScanStatistics.Level.pe));
+		nConnectionsVisited.setValue(statistics.getObjectsVisited(ScanStatistics.Level.connection));
+		nResourcesVisited.setValue(statistics.getObjectsVisited(ScanStatistics.Level.resource));
+		nMetricsEvaluated.setValue(statistics.getMetricsEvaluated());
+		nTuplesEmitted.setValue(statistics.getTuplesEmitted());
+		for (int i = 0; i < nRetrieveMetricsLatency.length; i++) {
+			nRetrieveMetricsLatency[i].setValue(statistics.getRetrieveMetricsLatency(i));
+		}
+		FilterDecisionCache decisionCache = _operatorConfiguration.get_filters().getDecisionCache();
+		nFilterCacheHits.setValue(decisionCache.getHits());
+		nFilterCacheMisses.setValue(decisionCache.getMisses());
+		JmxConnectionPool pool = _operatorConfiguration.get_jmxConnectionPool();
+		if (pool != null) {
+			nHealthyJMXConnections.setValue(pool.getHealthyCount(1 == get_isConnected().getValue()));
+			nPooledJMXConnectionFailures.setValue(pool.getFailureCount());
+		}
+	}
+
 	/**
 	 * Shutdown this operator, which will interrupt the thread
 	 * executing the <code>produceTuples()</code> method.
@@ -452,6 +1027,12 @@ public class MetricsSource extends AbstractJmxSource {
 
 		// Close connections or release resources related to any external system or data store.
 		
+		if (_operatorConfiguration.get_scanExecutor() != null) {
+			_operatorConfiguration.get_scanExecutor().shutdownNow();
+		}
+		if (_operatorConfiguration.get_jmxConnectionPool() != null) {
+			_operatorConfiguration.get_jmxConnectionPool().close();
+		}
 		if (_operatorConfiguration.get_jmxConnector() != null) {
 			_operatorConfiguration.get_jmxConnector().close();
 		}
@@ -0,0 +1,286 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2016, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.monitoring.jmx.internal.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ibm.streamsx.monitoring.jmx.OperatorConfiguration.OpType;
+
+/**
+ * Stress test for the thread safety of the filter tree. The compiled
+ * patterns, the pattern indexes, and the filter decision cache are shared
+ * by the scan threads and the notification threads, so the match methods
+ * are called from many threads at once.
+ * <p>
+ * The test evaluates a set of queries sequentially with one filter tree,
+ * which gives the expected decisions. Then, many threads evaluate the same
+ * queries in random order, and each decision is compared with the expected
+ * one. Each iteration uses a new filter tree with an empty decision cache,
+ * so the threads run the pattern lookups concurrently instead of only
+ * reading cached decisions. The test exits with 1 if a decision differs, a
+ * thread fails, or the decision cache missed fewer lookups than expected.
+ * </p>
+ * <p>
+ * Usage: FiltersStressTest [threads] [iterations]
+ * </p>
+ */
+public class FiltersStressTest {
+
+	private static final String FILTER_DOCUMENT =
+			"["
+			+ "{"
+			+ "\"instanceIdPatterns\":[\"StreamsInstance\",\"test_.*\"],"
+			+ "\"jobs\":["
+			+ "  {"
+			+ "  \"jobNamePatterns\":[\"app::Main_\\\\d+\",\"literalJob\",\".*Monitor.*\"],"
+			+ "  \"operators\":["
+			+ "    {"
+			+ "    \"operatorNamePatterns\":[\"Source.*\",\"op_[0-9]+\",\"Sink\"],"
+			+ "    \"metricNamePatterns\":[\"nTuples.*\",\"queueSize\",\"custom_(a|b)\"],"
+			+ "    \"inputPorts\":[{\"portIndexes\":[\"0\",\"1\"],\"metricNamePatterns\":\"nTuplesProcessed\"}],"
+			+ "    \"outputPorts\":[{\"portIndexes\":\"*\",\"metricNamePatterns\":[\"nTuplesSubmitted\",\"nFinal.*\"]}]"
+			+ "    }"
+			+ "  ],"
+			+ "  \"pes\":["
+			+ "    {"
+			+ "    \"metricNamePatterns\":[\"nCpu.*\",\"nResidentMemoryConsumption\"],"
+			+ "    \"connections\":[{\"connectionIdPatterns\":\".*\",\"metricNamePatterns\":\"congestionFactor\"}]"
+			+ "    }"
+			+ "  ]"
+			+ "  }"
+			+ "],"
+			+ "\"resources\":[{\"resourceIdPatterns\":[\"host[0-9]+\",\"gateway\"],\"metricNamePatterns\":[\"cpuSpeed\",\"loadAverage\"]}]"
+			+ "}"
+			+ "]";
+
+	private static final String[] INSTANCES = { "StreamsInstance", "test_1", "other" };
+
+	private static final String[] JOBS = { "app::Main_1", "app::Main_x", "literalJob", "myMonitorJob", "foo" };
+
+	private static final String[] OPERATORS = { "Source1", "op_12", "Sink", "Other" };
+
+	private static final String[] METRICS = { "nTuplesProcessed", "nTuplesSubmitted", "nFinalPunctsSubmitted", "queueSize", "custom_a", "custom_c", "nCpuMilliseconds", "nResidentMemoryConsumption", "congestionFactor", "cpuSpeed", "loadAverage" };
+
+	private static final Integer[] PORTS = { 0, 1, 2 };
+
+	private static final String[] PE_IDS = { "1", "42" };
+
+	private static final String[] CONNECTIONS = { "o0p1i0p2", "o1p7i3p9" };
+
+	private static final String[] RESOURCES = { "host1", "hostX", "gateway" };
+
+	/**
+	 * A filter decision that the test evaluates.
+	 */
+	private static abstract class Query {
+
+		abstract boolean evaluate(Filters filters);
+
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threadCount = (args.length > 0) ? Integer.parseInt(args[0]) : 16;
+		int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+		List<Query> queries = buildQueries();
+
+		// The expected decisions are evaluated sequentially.
+		Filters sequential = setupFilters();
+		final boolean[] expected = new boolean[queries.size()];
+		int matchCount = 0;
+		for (int i = 0; i < queries.size(); i++) {
+			expected[i] = queries.get(i).evaluate(sequential);
+			if (expected[i]) {
+				matchCount++;
+			}
+		}
+		if ((matchCount == 0) || (matchCount == queries.size())) {
+			System.err.println("FAILED: The queries do not cover matching and non-matching decisions: matches=" + matchCount + ", queries=" + queries.size());
+			System.exit(1);
+		}
+
+		// Each iteration evaluates the decisions concurrently with a new filter tree.
+		final Filters[] concurrent = new Filters[iterations];
+		for (int n = 0; n < iterations; n++) {
+			concurrent[n] = setupFilters();
+		}
+		final AtomicInteger mismatches = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final CyclicBarrier barrier = new CyclicBarrier(threadCount + 1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final List<Integer> order = new ArrayList<>();
+			for (int i = 0; i < queries.size(); i++) {
+				order.add(i);
+			}
+			Collections.shuffle(order, new Random(t));
+			final List<Query> threadQueries = queries;
+			final int threadIterations = iterations;
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						for (int n = 0; n < threadIterations; n++) {
+							// All threads start each iteration with the empty cache of the new filter tree.
+							barrier.await();
+							for (Integer i : order) {
+								if (threadQueries.get(i).evaluate(concurrent[n]) != expected[i]) {
+									mismatches.incrementAndGet();
+								}
+							}
+						}
+					}
+					catch (Throwable e) {
+						failure.compareAndSet(null, e);
+						barrier.reset();
+					}
+				}
+
+			}, "FiltersStressTest-" + t);
+			threads.add(thread);
+			thread.start();
+		}
+		long startTime = System.nanoTime();
+		try {
+			for (int n = 0; n < iterations; n++) {
+				barrier.await();
+			}
+		}
+		catch (Exception e) {
+			failure.compareAndSet(null, e);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long durationMs = (System.nanoTime() - startTime) / 1000000;
+
+		long cacheHits = 0;
+		long cacheMisses = 0;
+		for (Filters filters : concurrent) {
+			cacheHits += filters.getDecisionCache().getHits();
+			cacheMisses += filters.getDecisionCache().getMisses();
+		}
+		// Each new filter tree misses at least the lookups that the sequential evaluation missed.
+		long expectedMisses = (long)iterations * sequential.getDecisionCache().getMisses();
+		long evaluations = (long)threadCount * iterations * queries.size();
+		System.out.println("threads=" + threadCount + ", iterations=" + iterations + ", queries=" + queries.size() + ", matches=" + matchCount
+				+ ", evaluations=" + evaluations + ", durationMs=" + durationMs
+				+ ", cacheHits=" + cacheHits + ", cacheMisses=" + cacheMisses + ", expectedMisses=" + expectedMisses);
+		if (failure.get() != null) {
+			System.err.println("FAILED: A thread failed.");
+			failure.get().printStackTrace();
+			System.exit(1);
+		}
+		if (mismatches.get() > 0) {
+			System.err.println("FAILED: mismatches=" + mismatches.get());
+			System.exit(1);
+		}
+		if ((expectedMisses == 0) || (cacheMisses < expectedMisses)) {
+			System.err.println("FAILED: The concurrent evaluations did not run the pattern lookups: cacheMisses=" + cacheMisses + ", expectedMisses=" + expectedMisses);
+			System.exit(1);
+		}
+		System.out.println("PASSED");
+	}
+
+	private static Filters setupFilters() throws IOException {
+		try (InputStream inputStream = new ByteArrayInputStream(FILTER_DOCUMENT.getBytes(StandardCharsets.UTF_8))) {
+			return Filters.setupFilters(inputStream, OpType.METRICS_SOURCE);
+		}
+	}
+
+	private static List<Query> buildQueries() {
+		List<Query> queries = new ArrayList<>();
+		for (final String instanceId : INSTANCES) {
+			for (final String resourceId : RESOURCES) {
+				queries.add(new Query() {
+					@Override
+					boolean evaluate(Filters filters) {
+						return filters.matchesResourceId(instanceId, resourceId);
+					}
+				});
+				for (final String metricName : METRICS) {
+					queries.add(new Query() {
+						@Override
+						boolean evaluate(Filters filters) {
+							return filters.matchesResourceMetricName(instanceId, resourceId, metricName);
+						}
+					});
+				}
+			}
+			for (final String jobName : JOBS) {
+				queries.add(new Query() {
+					@Override
+					boolean evaluate(Filters filters) {
+						return filters.matchesJobName(instanceId, jobName);
+					}
+				});
+				for (final String operatorName : OPERATORS) {
+					queries.add(new Query() {
+						@Override
+						boolean evaluate(Filters filters) {
+							return filters.matchesOperatorName(instanceId, jobName, operatorName);
+						}
+					});
+					for (final String metricName : METRICS) {
+						queries.add(new Query() {
+							@Override
+							boolean evaluate(Filters filters) {
+								return filters.matchesOperatorMetricName(instanceId, jobName, operatorName, metricName);
+							}
+						});
+						for (final Integer portIndex : PORTS) {
+							queries.add(new Query() {
+								@Override
+								boolean evaluate(Filters filters) {
+									return filters.matchesOperatorInputPortMetricName(instanceId, jobName, operatorName, portIndex, metricName);
+								}
+							});
+							queries.add(new Query() {
+								@Override
+								boolean evaluate(Filters filters) {
+									return filters.matchesOperatorOutputPortMetricName(instanceId, jobName, operatorName, portIndex, metricName);
+								}
+							});
+						}
+					}
+				}
+				for (final String peId : PE_IDS) {
+					for (final String metricName : METRICS) {
+						queries.add(new Query() {
+							@Override
+							boolean evaluate(Filters filters) {
+								return filters.matchesPeMetricName(instanceId, jobName, peId, metricName);
+							}
+						});
+						for (final String connectionId : CONNECTIONS) {
+							queries.add(new Query() {
+								@Override
+								boolean evaluate(Filters filters) {
+									return filters.matchesPeConnectionMetricName(instanceId, jobName, peId, connectionId, metricName);
+								}
+							});
+						}
+					}
+				}
+			}
+		}
+		return queries;
+	}
+
+}